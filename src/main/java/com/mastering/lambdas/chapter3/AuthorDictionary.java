@@ -0,0 +1,103 @@
+package com.mastering.lambdas.chapter3;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every distinct author name a small int id, so that books can hold their authors as an
+ * {@code int[]} and compare them without comparing strings. Ids are assigned in order of first
+ * use and never reused; names are never removed, so the dictionary grows with the number of
+ * distinct authors ever seen by the process.
+ */
+public final class AuthorDictionary {
+
+    private static final AuthorDictionary SHARED = new AuthorDictionary();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1024];
+    private int size;
+
+    /**
+     * The dictionary used by {@link Book}.
+     */
+    public static AuthorDictionary shared() {
+        return SHARED;
+    }
+
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : register(name);
+    }
+
+    public int[] ids(List<String> names) {
+        int[] result = new int[names.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = id(names.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * The canonical String for an id: every book by an author returns the same instance.
+     */
+    public String name(int id) {
+        String[] current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Unknown author id " + id);
+        }
+        return current[id];
+    }
+
+    /**
+     * An unmodifiable list view of the names of {@code ids}.
+     */
+    public List<String> names(int[] ids) {
+        return new Names(ids);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * The name is stored before the id is published in the map, and the volatile write of the
+     * array makes the stored name visible to any thread that later reads the array.
+     */
+    private synchronized int register(String name) {
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        int id = size++;
+        current[id] = name;
+        names = current;
+        ids.put(name, id);
+        return id;
+    }
+
+    private final class Names extends AbstractList<String> implements RandomAccess {
+        private final int[] ids;
+
+        Names(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public String get(int index) {
+            return name(ids[index]);
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+}
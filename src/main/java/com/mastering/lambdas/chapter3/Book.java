@@ -1,6 +1,6 @@
 package com.mastering.lambdas.chapter3;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
@@ -9,13 +9,19 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
-@AllArgsConstructor
+/**
+ * Authors are held as ids in the {@link AuthorDictionary#shared() shared author dictionary},
+ * so two books have equal authors exactly when their id arrays are equal. A book never changes
+ * after construction, so its hash code is computed once.
+ */
 @NoArgsConstructor
 @Getter
 public class Book {
     private String title;
 
-    private List<String> authors;
+    // the ids are the book's identity, so they are not handed out to be changed
+    @Getter(AccessLevel.PACKAGE)
+    private int[] authorIds;
 
     private int[] pageCounts;
     private Topic topic;
@@ -24,27 +30,63 @@ public class Book {
 
     private double height;
 
+    @Getter(AccessLevel.NONE)
+    private int hash;
+
+    public Book(String title, List<String> authors, int[] pageCounts, Topic topic, Year pubDate, double height) {
+        this.title = title;
+        this.authorIds = AuthorDictionary.shared().ids(authors);
+        this.pageCounts = pageCounts;
+        this.topic = topic;
+        this.pubDate = pubDate;
+        this.height = height;
+        this.hash = hash(title, authorIds, pubDate);
+    }
+
+    /**
+     * A book whose authors are already ids in the shared dictionary.
+     */
+    Book(String title, int[] authorIds, int[] pageCounts, Topic topic, Year pubDate, double height) {
+        this.title = title;
+        this.authorIds = authorIds;
+        this.pageCounts = pageCounts;
+        this.topic = topic;
+        this.pubDate = pubDate;
+        this.height = height;
+        this.hash = hash(title, authorIds, pubDate);
+    }
+
+    private static int hash(String title, int[] authorIds, Year pubDate) {
+        return (31 * Objects.hashCode(title) + Arrays.hashCode(authorIds)) * 31 + Objects.hashCode(pubDate);
+    }
+
+    public List<String> getAuthors() {
+        int[] ids = getAuthorIds();
+        return ids == null ? null : AuthorDictionary.shared().names(ids);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Book book)) return false;
-        return getTitle().equals(book.getTitle()) && getAuthors().equals(book.getAuthors()) && getPubDate().equals(book.getPubDate());
+        return hashCode() == book.hashCode() && Objects.equals(getTitle(), book.getTitle())
+                && Arrays.equals(getAuthorIds(), book.getAuthorIds()) && Objects.equals(getPubDate(), book.getPubDate());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getTitle(), getAuthors(), getPubDate());
+        return hash;
     }
 
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("Book{");
-        sb.append("title='").append(title).append('\'');
-        sb.append(", authors=").append(authors);
-        sb.append(", pageCounts=").append(Arrays.toString(pageCounts));
-        sb.append(", pubDate=").append(pubDate);
-        sb.append(", heightCms=").append(height);
-        sb.append(", topic=").append(topic);
+        sb.append("title='").append(getTitle()).append('\'');
+        sb.append(", authors=").append(getAuthors());
+        sb.append(", pageCounts=").append(Arrays.toString(getPageCounts()));
+        sb.append(", pubDate=").append(getPubDate());
+        sb.append(", heightCms=").append(getHeight());
+        sb.append(", topic=").append(getTopic());
         sb.append('}');
         return sb.toString();
     }
@@ -0,0 +1,86 @@
+package com.mastering.lambdas.chapter3;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * {@code distinct()} and {@code toSet()} over a library in which every book appears twice as
+ * separate but equal objects: Book, with author ids and a cached hash, against a copy of the
+ * earlier Book that hashes its title, author list and year on every call.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class BookHashBenchmark {
+
+    @Param({"1000000"})
+    public int N;
+
+    private List<Book> books;
+    private List<ListBook> listBooks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        books = new ArrayList<>(LibraryGenerator.generate(N / 2, 42));
+        books.addAll(LibraryGenerator.generate(N / 2, 42));
+        listBooks = books.stream()
+                .map(b -> new ListBook(b.getTitle(), List.copyOf(b.getAuthors()), b.getPubDate()))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public long distinctBooks() {
+        return books.stream().distinct().count();
+    }
+
+    @Benchmark
+    public long distinctListBooks() {
+        return listBooks.stream().distinct().count();
+    }
+
+    @Benchmark
+    public Set<Book> toSetBooks() {
+        return books.stream().collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public Set<ListBook> toSetListBooks() {
+        return listBooks.stream().collect(Collectors.toSet());
+    }
+
+    /**
+     * The identity of the earlier Book: authors as a list of strings, hash recomputed per call.
+     */
+    static final class ListBook {
+        private final String title;
+        private final List<String> authors;
+        private final Year pubDate;
+
+        ListBook(String title, List<String> authors, Year pubDate) {
+            this.title = title;
+            this.authors = authors;
+            this.pubDate = pubDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ListBook book)) return false;
+            return title.equals(book.title) && authors.equals(book.authors) && pubDate.equals(book.pubDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(title, authors, pubDate);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
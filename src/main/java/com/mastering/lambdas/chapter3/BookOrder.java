@@ -0,0 +1,55 @@
+package com.mastering.lambdas.chapter3;
+
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * An ordering of books that a {@link BookQuery} can see inside: ascending title order can be
+ * read from the title index instead of sorting, since the index lists equal titles in library
+ * order just as a stable sort would. Any other ordering is an opaque comparator with a
+ * description for {@link BookQuery#explain()}.
+ */
+public final class BookOrder implements Comparator<Book> {
+
+    private final String description;
+    private final Comparator<Book> comparator;
+    private final boolean titleAscending;
+
+    private BookOrder(String description, Comparator<Book> comparator, boolean titleAscending) {
+        this.description = description;
+        this.comparator = comparator;
+        this.titleAscending = titleAscending;
+    }
+
+    public static BookOrder title() {
+        return new BookOrder("title", Comparator.comparing(Book::getTitle), true);
+    }
+
+    public static BookOrder of(String description, Comparator<Book> comparator) {
+        return new BookOrder(description, Objects.requireNonNull(comparator), false);
+    }
+
+    @Override
+    public int compare(Book a, Book b) {
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * The reverse ordering. A stable sort keeps equal books in library order in both
+     * directions, so a reversed title order is not the title index walked backwards and is
+     * always sorted.
+     */
+    @Override
+    public BookOrder reversed() {
+        return new BookOrder(description + " descending", comparator.reversed(), false);
+    }
+
+    boolean isTitleAscending() {
+        return titleAscending;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
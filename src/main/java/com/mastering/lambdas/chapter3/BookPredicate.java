@@ -0,0 +1,76 @@
+package com.mastering.lambdas.chapter3;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A condition on books that a {@link BookQuery} can see inside: topic, author and title-prefix
+ * conditions can be answered from a {@link LibraryIndex}; any other condition is an opaque
+ * predicate with a description for {@link BookQuery#explain()}.
+ */
+public final class BookPredicate implements Predicate<Book> {
+
+    private enum Kind {TOPIC, AUTHOR, TITLE_PREFIX, OPAQUE}
+
+    private final Kind kind;
+    private final Object operand;
+    private final String description;
+    private final Predicate<Book> test;
+
+    private BookPredicate(Kind kind, Object operand, String description, Predicate<Book> test) {
+        this.kind = kind;
+        this.operand = operand;
+        this.description = description;
+        this.test = test;
+    }
+
+    public static BookPredicate topic(Topic topic) {
+        Objects.requireNonNull(topic);
+        return new BookPredicate(Kind.TOPIC, topic, "topic = " + topic, b -> b.getTopic() == topic);
+    }
+
+    public static BookPredicate author(String author) {
+        Objects.requireNonNull(author);
+        return new BookPredicate(Kind.AUTHOR, author, "author = " + author, b -> b.getAuthors().contains(author));
+    }
+
+    public static BookPredicate titleStartsWith(String prefix) {
+        Objects.requireNonNull(prefix);
+        return new BookPredicate(Kind.TITLE_PREFIX, prefix, "title starts with " + prefix,
+                b -> b.getTitle().startsWith(prefix));
+    }
+
+    /**
+     * Any other condition; the planner can only apply it as a filter.
+     */
+    public static BookPredicate of(String description, Predicate<Book> test) {
+        return new BookPredicate(Kind.OPAQUE, null, description, Objects.requireNonNull(test));
+    }
+
+    @Override
+    public boolean test(Book book) {
+        return test.test(book);
+    }
+
+    /**
+     * The ascending rows of the matching books, read from the index, or null if this condition
+     * cannot be answered by the index.
+     */
+    int[] rows(LibraryIndex index) {
+        return switch (kind) {
+            case TOPIC -> index.topicRows((Topic) operand);
+            case AUTHOR -> index.authorRows((String) operand);
+            case TITLE_PREFIX -> index.titlePrefixRows((String) operand);
+            case OPAQUE -> null;
+        };
+    }
+
+    boolean isIndexed() {
+        return kind != Kind.OPAQUE;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,352 @@
+package com.mastering.lambdas.chapter3;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A query over the books of a {@link LibraryIndex}: conditions, an ordering and a limit are
+ * collected first and turned into a plan only when a result is asked for, so that the plan
+ * can use what the query as a whole allows:
+ * <ul>
+ *     <li>topic, author and title-prefix conditions are answered from the index, several of
+ *     them by intersecting their posting lists, leaving only the other conditions as a filter;</li>
+ *     <li>all remaining conditions are fused into a single filter stage;</li>
+ *     <li>ascending title order is read from the title index instead of sorted, and a limit is
+ *     then pushed into the index walk;</li>
+ *     <li>any other ordering followed by a limit runs as a bounded {@link TopK} rather than a
+ *     full sort;</li>
+ *     <li>counts are answered from posting list lengths when nothing else needs checking, and
+ *     sums run on an {@code IntStream};</li>
+ *     <li>a plan expected to touch at least {@link #parallelThreshold(int) parallelThreshold}
+ *     rows runs in parallel.</li>
+ * </ul>
+ * Every rewrite keeps the results, and their order, exactly those of the plain sequential
+ * pipeline {@code filter...sorted...limit} over the library. {@link #explain()} shows the plan.
+ */
+public final class BookQuery {
+
+    /**
+     * The threshold every query starts with: a fixed default rather than a measured one, so that
+     * the same query gets the same plan on every run and machine. Where the machine matters, a
+     * threshold measured once by {@link #calibrateParallelThreshold(List)} can be passed to
+     * {@link #parallelThreshold(int)}.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 50_000;
+
+    private final LibraryIndex index;
+    private final List<BookPredicate> conditions = new ArrayList<>();
+    private BookOrder order;
+    private long limit = -1;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    private BookQuery(LibraryIndex index) {
+        this.index = index;
+    }
+
+    public static BookQuery from(LibraryIndex index) {
+        return new BookQuery(index);
+    }
+
+    public BookQuery where(BookPredicate condition) {
+        conditions.add(condition);
+        return this;
+    }
+
+    public BookQuery orderBy(BookOrder order) {
+        this.order = order;
+        return this;
+    }
+
+    public BookQuery limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(Long.toString(maxSize));
+        }
+        limit = limit < 0 ? maxSize : Math.min(limit, maxSize);
+        return this;
+    }
+
+    /**
+     * Plans expected to touch at least this many rows run in parallel; see
+     * {@link #calibrateParallelThreshold(List)}.
+     */
+    public BookQuery parallelThreshold(int rows) {
+        parallelThreshold = rows;
+        return this;
+    }
+
+    public Plan plan() {
+        return new Plan(limit);
+    }
+
+    public String explain() {
+        return plan().explain();
+    }
+
+    public Stream<Book> stream() {
+        return plan().stream();
+    }
+
+    public List<Book> toList() {
+        return stream().collect(Collectors.toList());
+    }
+
+    public Optional<Book> findFirst() {
+        return new Plan(limit < 0 ? 1 : Math.min(limit, 1)).stream().findFirst();
+    }
+
+    public long count() {
+        return plan().count();
+    }
+
+    public long sum(ToIntFunction<? super Book> mapper) {
+        return plan().stream().mapToLong(mapper::applyAsInt).sum();
+    }
+
+    public <R> Projection<R> select(Function<? super Book, ? extends R> mapper) {
+        return new Projection<>(plan(), mapper);
+    }
+
+    public <K, D> Map<K, D> groupBy(Function<? super Book, ? extends K> classifier,
+                                    Collector<? super Book, ?, D> downstream) {
+        return plan().stream().collect(Collectors.groupingBy(classifier, downstream));
+    }
+
+    /**
+     * Groups by topic. With no ordering, limit or opaque condition, each group is read from the
+     * topic index (intersected with any other indexed conditions) and collected on its own,
+     * so no book is classified at all.
+     */
+    public <D> Map<Topic, D> groupByTopic(Collector<? super Book, ?, D> downstream) {
+        Plan plan = plan();
+        if (!plan.residual.isEmpty() || order != null || limit >= 0) {
+            return plan.stream().collect(Collectors.groupingBy(Book::getTopic, () -> new EnumMap<>(Topic.class), downstream));
+        }
+        Map<Topic, D> groups = new EnumMap<>(Topic.class);
+        for (Topic topic : Topic.values()) {
+            int[] rows = index.topicRows(topic);
+            if (plan.rows != null) {
+                rows = LibraryIndex.intersect(rows, plan.rows);
+            }
+            if (rows.length > 0) {
+                groups.put(topic, plan.parallel(index.books(rows), rows.length).collect(downstream));
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * The smallest library prefix, doubling from 1024 rows, on which a parallel filter-and-count
+     * beats the sequential one (best of three runs each, after a warm-up pass over the whole
+     * sample), or {@code Integer.MAX_VALUE} if it never does, or if the common pool has fewer
+     * than two threads, as on a single-core machine.
+     */
+    public static int calibrateParallelThreshold(List<Book> sample) {
+        if (ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return Integer.MAX_VALUE;
+        }
+        Predicate<Book> work = b -> b.getPageCounts().length > 1 || b.getTitle().isEmpty();
+        for (int warmUp = 0; warmUp < 5; warmUp++) {
+            sample.stream().filter(work).count();
+            sample.parallelStream().filter(work).count();
+        }
+        for (int n = 1024; n <= sample.size(); n *= 2) {
+            List<Book> prefix = sample.subList(0, n);
+            long sequential = Long.MAX_VALUE, parallel = Long.MAX_VALUE;
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                prefix.stream().filter(work).count();
+                long middle = System.nanoTime();
+                prefix.parallelStream().filter(work).count();
+                long end = System.nanoTime();
+                sequential = Math.min(sequential, middle - start);
+                parallel = Math.min(parallel, end - middle);
+            }
+            if (parallel < sequential) {
+                return n;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * The physical plan of a query: a source of rows, one fused filter, then a title-index
+     * walk, a bounded top-k, or a sort followed by a limit. It keeps the query's ordering and
+     * thresholds as they were when it was made.
+     */
+    public final class Plan {
+        private final BookOrder order;
+        private final long limit;
+        private final int parallelThreshold;
+        private final int[] rows;
+        private final String source;
+        private final List<BookPredicate> residual = new ArrayList<>();
+        private final boolean titleIndexScan;
+        private final boolean topK;
+        private final long estimatedRows;
+        private final boolean parallel;
+
+        private Plan(long limit) {
+            this.order = BookQuery.this.order;
+            this.limit = limit;
+            this.parallelThreshold = BookQuery.this.parallelThreshold;
+            List<BookPredicate> indexed = new ArrayList<>();
+            for (BookPredicate condition : conditions) {
+                (condition.isIndexed() ? indexed : residual).add(condition);
+            }
+            if (!indexed.isEmpty()) {
+                rows = LibraryIndex.intersect(indexed.stream().map(p -> p.rows(index)).toArray(int[][]::new));
+                source = "IndexLookup " + indexed.stream().map(Object::toString).collect(Collectors.joining(" and "))
+                        + " (" + rows.length + " rows)";
+                estimatedRows = rows.length;
+            } else {
+                rows = null;
+                estimatedRows = index.size();
+                source = order != null && order.isTitleAscending()
+                        ? "TitleIndexScan (" + estimatedRows + " rows)"
+                        : "Scan library (" + estimatedRows + " rows)";
+            }
+            titleIndexScan = rows == null && order != null && order.isTitleAscending();
+            topK = order != null && !titleIndexScan && limit >= 0 && limit <= Integer.MAX_VALUE;
+            // a title-index walk is an ordered iterator that stops at the limit: nothing to split
+            parallel = !titleIndexScan && estimatedRows >= parallelThreshold;
+        }
+
+        public boolean isParallel() {
+            return parallel;
+        }
+
+        public Stream<Book> stream() {
+            Stream<Book> books;
+            if (titleIndexScan) {
+                if (residual.isEmpty() && limit >= 0 && limit <= Integer.MAX_VALUE) {
+                    return limit == 0
+                            ? Stream.empty()
+                            : index.titlePage(LibraryIndex.TitleCursor.START, (int) limit).getBooks().stream();
+                }
+                books = filtered(index.byTitleAfter(LibraryIndex.TitleCursor.START));
+            } else if (rows != null) {
+                books = filtered(parallel(index.books(rows), rows.length));
+            } else {
+                books = filtered(parallel(IntStream.range(0, index.size()).mapToObj(index::book), index.size()));
+            }
+            if (topK) {
+                return books.collect(TopK.smallest((int) limit, order)).stream();
+            }
+            if (order != null && !titleIndexScan) {
+                books = books.sorted(order);
+            }
+            return limit >= 0 ? books.limit(limit) : books;
+        }
+
+        long count() {
+            if (residual.isEmpty()) {
+                long matching = rows != null ? rows.length : index.size();
+                return limit >= 0 ? Math.min(matching, limit) : matching;
+            }
+            return stream().count();
+        }
+
+        private Stream<Book> parallel(Stream<Book> books, long size) {
+            return parallel && size >= parallelThreshold ? books.parallel() : books;
+        }
+
+        private Stream<Book> filtered(Stream<Book> books) {
+            if (residual.isEmpty()) {
+                return books;
+            }
+            BookPredicate[] tests = residual.toArray(new BookPredicate[0]);
+            return books.filter(b -> {
+                for (BookPredicate test : tests) {
+                    if (!test.test(b)) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+        }
+
+        /**
+         * One operator per line, the last applied first, each indented under the one it
+         * consumes, followed by the execution mode.
+         */
+        public String explain() {
+            return explain(List.of());
+        }
+
+        private String explain(List<String> above) {
+            List<String> operators = new ArrayList<>(above);
+            if (topK) {
+                operators.add("TopK " + limit + " by " + order);
+            } else {
+                if (limit >= 0) {
+                    operators.add(titleIndexScan ? "Limit " + limit + " (pushed into title index walk)" : "Limit " + limit);
+                }
+                if (order != null && !titleIndexScan) {
+                    operators.add("Sort by " + order);
+                }
+            }
+            if (!residual.isEmpty()) {
+                operators.add("Filter " + residual.stream().map(Object::toString).collect(Collectors.joining(" and ")));
+            }
+            operators.add(source);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < operators.size(); i++) {
+                sb.append("  ".repeat(i)).append(operators.get(i)).append('\n');
+            }
+            if (titleIndexScan) {
+                sb.append("sequential: ordered title index walk");
+            } else {
+                sb.append(parallel ? "parallel: " : "sequential: ").append(estimatedRows)
+                        .append(parallel ? " rows >= " : " rows < ").append("threshold ").append(parallelThreshold);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return explain();
+        }
+    }
+
+    /**
+     * A query whose books are mapped to another value.
+     */
+    public static final class Projection<R> {
+        private final Plan plan;
+        private final Function<? super Book, ? extends R> mapper;
+
+        private Projection(Plan plan, Function<? super Book, ? extends R> mapper) {
+            this.plan = plan;
+            this.mapper = mapper;
+        }
+
+        public Stream<R> stream() {
+            return plan.stream().map(mapper);
+        }
+
+        public List<R> toList() {
+            return stream().collect(Collectors.toList());
+        }
+
+        public String explain() {
+            return plan.explain(List.of("Project"));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BookQuery where " + conditions + (order == null ? "" : " order by " + order)
+                + (limit < 0 ? "" : " limit " + limit);
+    }
+}
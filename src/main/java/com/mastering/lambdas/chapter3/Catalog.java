@@ -0,0 +1,89 @@
+package com.mastering.lambdas.chapter3;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * A changing library. Each book is stored under an id assigned when it is added; ids increase,
+ * so iterating by id gives the books in the order they were added, like the List of
+ * {@link LibraryInit}.
+ * <p>
+ * Writes are serialized and every write is announced to the subscribed {@link CatalogListener}s
+ * before the write returns. Reads never lock.
+ */
+public class Catalog {
+
+    private final Map<Long, Book> books = new ConcurrentSkipListMap<>();
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private long nextId;
+    private volatile int size;
+
+    public Catalog() {
+    }
+
+    public Catalog(Collection<Book> library) {
+        library.forEach(this::add);
+    }
+
+    /**
+     * Subscribes a listener, first replaying the current contents to it as additions so that
+     * a view attached to a populated catalog starts out complete.
+     */
+    public synchronized void subscribe(CatalogListener listener) {
+        books.forEach(listener::added);
+        listeners.add(listener);
+    }
+
+    public synchronized void unsubscribe(CatalogListener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized long add(Book book) {
+        long id = nextId++;
+        books.put(id, book);
+        size++;
+        listeners.forEach(l -> l.added(id, book));
+        return id;
+    }
+
+    public synchronized boolean remove(long id) {
+        Book removed = books.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        size--;
+        listeners.forEach(l -> l.removed(id, removed));
+        return true;
+    }
+
+    public synchronized boolean update(long id, Book book) {
+        Book previous = books.get(id);
+        if (previous == null) {
+            return false;
+        }
+        books.put(id, book);
+        listeners.forEach(l -> l.updated(id, previous, book));
+        return true;
+    }
+
+    public Optional<Book> get(long id) {
+        return Optional.ofNullable(books.get(id));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The books in the order they were added. Like the iterators of the concurrent
+     * collections, the stream is weakly consistent with respect to concurrent writes.
+     */
+    public Stream<Book> books() {
+        return books.values().stream();
+    }
+}
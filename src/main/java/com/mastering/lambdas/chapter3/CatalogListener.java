@@ -0,0 +1,22 @@
+package com.mastering.lambdas.chapter3;
+
+/**
+ * Receives the changes made to a {@link Catalog}. The catalog delivers events one at a time,
+ * in the order the changes were made, so an implementation may update its own state without
+ * further synchronization between callbacks.
+ */
+public interface CatalogListener {
+
+    void added(long id, Book book);
+
+    void removed(long id, Book book);
+
+    /**
+     * The book stored under {@code id} was replaced. By default this is a removal followed by
+     * an addition under the same id.
+     */
+    default void updated(long id, Book previous, Book book) {
+        removed(id, previous);
+        added(id, book);
+    }
+}
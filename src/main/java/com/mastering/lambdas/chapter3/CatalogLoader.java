@@ -0,0 +1,832 @@
+package com.mastering.lambdas.chapter3;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Loads a catalog export into a {@code List<Book>} or a {@link LibraryTable}, parsing the file
+ * in parallel.
+ * <p>
+ * The file is cut into chunks of roughly {@code chunkSize} bytes, each boundary moved forward
+ * to just after a newline so that no line is split. Every chunk is memory-mapped on its own
+ * (so files larger than 2GB are fine) and parsed straight from its bytes by a separate task;
+ * numbers are parsed without creating Strings, and author names are interned so that the
+ * many books by one author share one String. The chunk results are concatenated in file order.
+ * <p>
+ * Two formats are understood. CSV has the columns
+ * {@code title,authors,pageCounts,topic,pubDate,height}, with the authors and the page counts
+ * separated by {@code ;} and fields optionally quoted with {@code "} (a header line at
+ * the start of the file is skipped). Within a quoted field, {@code \\}, {@code \n}, {@code \r}
+ * and {@code \;} stand for a backslash, a line break, a carriage return and a semicolon that
+ * does not separate two authors, so that every row is one line, as the chunks require. JSON
+ * lines holds one object per line with the keys {@code title}, {@code authors} (array of
+ * strings), {@code pageCounts} (array of ints), {@code topic}, {@code pubDate} and
+ * {@code height}; other keys are ignored.
+ */
+public class CatalogLoader {
+
+    public enum Format {
+        CSV, JSON_LINES;
+
+        public static Format of(Path path) {
+            String name = path.getFileName().toString();
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") ? JSON_LINES : CSV;
+        }
+    }
+
+    /**
+     * Receives the fields of one catalog row.
+     */
+    @FunctionalInterface
+    interface RowSink {
+        void accept(String title, String[] authors, int[] pageCounts, Topic topic, int pubYear, double height);
+    }
+
+    private static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+    private static final byte[] CSV_HEADER = "title,".getBytes(StandardCharsets.US_ASCII);
+    private static final Topic[] TOPICS = Topic.values();
+    private static final byte[][] TOPIC_NAMES = IntStream.range(0, TOPICS.length)
+            .mapToObj(i -> TOPICS[i].name().getBytes(StandardCharsets.US_ASCII))
+            .toArray(byte[][]::new);
+    private static final AtomicReferenceArray<Year> YEARS = new AtomicReferenceArray<>(4096);
+
+    private final Format format;
+    private final int chunkSize;
+    private final ConcurrentMap<String, String> authors = new ConcurrentHashMap<>();
+
+    public CatalogLoader(Format format) {
+        this(format, DEFAULT_CHUNK_SIZE);
+    }
+
+    public CatalogLoader(Format format, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.format = format;
+        this.chunkSize = chunkSize;
+    }
+
+    public static List<Book> loadBooks(Path path) {
+        return new CatalogLoader(Format.of(path)).load(path);
+    }
+
+    public static LibraryTable loadTable(Path path) {
+        return new CatalogLoader(Format.of(path)).toTable(path);
+    }
+
+    public List<Book> load(Path path) {
+        List<List<Book>> chunks = parse(path, ArrayList::new,
+                list -> (t, a, p, topic, y, h) -> list.add(new Book(t, List.of(a), p, topic, year(y), h)));
+        List<Book> library = new ArrayList<>(chunks.stream().mapToInt(List::size).sum());
+        chunks.forEach(library::addAll);
+        return library;
+    }
+
+    public LibraryTable toTable(Path path) {
+        List<LibraryTable.Builder> chunks = parse(path, LibraryTable::builder, builder -> builder::add);
+        return LibraryTable.concat(chunks.stream().map(LibraryTable.Builder::build).collect(Collectors.toList()));
+    }
+
+    /**
+     * Parses every chunk of the file into its own result, created by {@code results} and fed
+     * through the sink that {@code sinkFor} derives from it, and returns the results in file order.
+     * Each worker thread keeps one author cache for the whole file.
+     */
+    <R> List<R> parse(Path path, Supplier<R> results, Function<R, RowSink> sinkFor) {
+        Map<Thread, AuthorCache> caches = new ConcurrentHashMap<>();
+        try (FileChannel fc = FileChannel.open(path)) {
+            long[] bounds = chunkBounds(fc);
+            return IntStream.range(0, bounds.length - 1)
+                    .parallel()
+                    .mapToObj(i -> {
+                        R result = results.get();
+                        AuthorCache cache = caches.computeIfAbsent(Thread.currentThread(), t -> new AuthorCache());
+                        parseChunk(fc, bounds[i], bounds[i + 1], cache, sinkFor.apply(result));
+                        return result;
+                    })
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Chunk boundaries: 0, then each multiple of the chunk size moved forward to just after
+     * the next newline, then the file size. Enough chunks are made to keep every worker busy.
+     */
+    private long[] chunkBounds(FileChannel fc) throws IOException {
+        long size = fc.size();
+        long target = Math.max(1, Math.min(chunkSize,
+                size / (ForkJoinPool.getCommonPoolParallelism() * 4L) + 1));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long pos = target;
+        while (pos < size) {
+            long newline = -1;
+            for (long scan = pos; newline < 0 && scan < size; scan += probe.limit()) {
+                probe.clear();
+                int read = fc.read(probe, scan);
+                if (read <= 0) {
+                    break;
+                }
+                probe.flip();
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = scan + i;
+                        break;
+                    }
+                }
+            }
+            if (newline < 0) {
+                break;
+            }
+            bounds.add(newline + 1);
+            pos = newline + 1 + target;
+        }
+        if (bounds.get(bounds.size() - 1) < size) {
+            bounds.add(size);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private void parseChunk(FileChannel fc, long start, long end, AuthorCache cache, RowSink sink) {
+        byte[] bytes = new byte[Math.toIntExact(end - start)];
+        try {
+            MappedByteBuffer mapped = fc.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            mapped.get(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int pos = 0;
+        if (format == Format.CSV && start == 0 && startsWith(bytes, 0, bytes.length, CSV_HEADER)) {
+            while (pos < bytes.length && bytes[pos] != '\n') {
+                pos++;
+            }
+            pos++;
+        }
+        while (pos < bytes.length) {
+            int lineEnd = pos;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > pos && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > pos) {
+                try {
+                    if (format == Format.CSV) {
+                        new CsvLine(bytes, pos, contentEnd, cache).parse(sink);
+                    } else {
+                        new JsonLine(bytes, pos, contentEnd, cache).parse(sink);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Malformed catalog line at byte offset " + (start + pos) + ": "
+                            + new String(bytes, pos, contentEnd - pos, StandardCharsets.UTF_8), e);
+                }
+            }
+            pos = lineEnd + 1;
+        }
+    }
+
+    private String intern(String author) {
+        String previous = authors.putIfAbsent(author, author);
+        return previous == null ? author : previous;
+    }
+
+    private static Year year(int year) {
+        if (year < 0 || year >= YEARS.length()) {
+            return Year.of(year);
+        }
+        Year cached = YEARS.get(year);
+        if (cached == null) {
+            cached = Year.of(year);
+            YEARS.set(year, cached);
+        }
+        return cached;
+    }
+
+    private static boolean startsWith(byte[] bytes, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Topic topic(byte[] bytes, int from, int to) {
+        for (int t = 0; t < TOPIC_NAMES.length; t++) {
+            if (to - from == TOPIC_NAMES[t].length && startsWith(bytes, from, to, TOPIC_NAMES[t])) {
+                return TOPICS[t];
+            }
+        }
+        throw new IllegalArgumentException("Unknown topic " + new String(bytes, from, to - from, StandardCharsets.UTF_8));
+    }
+
+    private static int parseInt(byte[] bytes, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("empty number");
+        }
+        boolean negative = bytes[from] == '-';
+        int i = negative || bytes[from] == '+' ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException("no digits");
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+            }
+            value = Math.addExact(Math.multiplyExact(value, 10), digit);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Plain decimals with at most 15 significant digits, like the heights in a catalog, are
+     * computed exactly as Double.parseDouble would: both the digits and the power of ten are
+     * exact doubles, and one correctly rounded division gives the correctly rounded result.
+     * Anything else goes through Double.parseDouble.
+     */
+    private static double parseDouble(byte[] bytes, int from, int to) {
+        long digits = 0;
+        int digitCount = 0, fractionDigits = 0;
+        boolean negative = from < to && bytes[from] == '-';
+        boolean point = false;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9' && digitCount < 15) {
+                digits = digits * 10 + (b - '0');
+                digitCount++;
+                if (point) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+            }
+        }
+        if (digitCount == 0) {
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+        }
+        double value = digits / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    private static int[] parseInts(byte[] bytes, int from, int to, byte separator) {
+        int count = 1;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == separator) {
+                count++;
+            }
+        }
+        int[] values = new int[count];
+        int n = 0, start = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || bytes[i] == separator) {
+                values[n++] = parseInt(bytes, start, i);
+                start = i + 1;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * One CSV line. Fields are read left to right; a quoted field may contain commas, doubled
+     * quotes and backslash escapes.
+     */
+    private final class CsvLine {
+        private final byte[] bytes;
+        private final int end;
+        private final AuthorCache cache;
+        private int pos;
+        private int fieldStart, fieldEnd;
+        private boolean escaped;
+
+        CsvLine(byte[] bytes, int from, int to, AuthorCache cache) {
+            this.bytes = bytes;
+            this.pos = from;
+            this.end = to;
+            this.cache = cache;
+        }
+
+        void parse(RowSink sink) {
+            nextField();
+            String title = string();
+            nextField();
+            String[] bookAuthors = authorList();
+            nextField();
+            int[] pageCounts = parseInts(bytes, fieldStart, fieldEnd, (byte) ';');
+            nextField();
+            Topic topic = topic(bytes, fieldStart, fieldEnd);
+            nextField();
+            int pubYear = parseInt(bytes, fieldStart, fieldEnd);
+            nextField();
+            double height = parseDouble(bytes, fieldStart, fieldEnd);
+            sink.accept(title, bookAuthors, pageCounts, topic, pubYear, height);
+        }
+
+        private void nextField() {
+            if (pos > end) {
+                throw new IllegalArgumentException("missing field");
+            }
+            escaped = false;
+            if (pos < end && bytes[pos] == '"') {
+                fieldStart = ++pos;
+                while (true) {
+                    if (pos >= end) {
+                        throw new IllegalArgumentException("unterminated quote");
+                    }
+                    if (bytes[pos] == '"') {
+                        if (pos + 1 < end && bytes[pos + 1] == '"') {
+                            escaped = true;
+                            pos += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    if (bytes[pos] == '\\' && pos + 1 < end && isEscape(bytes[pos + 1])) {
+                        escaped = true;
+                        pos += 2;
+                        continue;
+                    }
+                    pos++;
+                }
+                fieldEnd = pos++;
+            } else {
+                fieldStart = pos;
+                while (pos < end && bytes[pos] != ',') {
+                    pos++;
+                }
+                fieldEnd = pos;
+            }
+            pos++; // past the comma
+        }
+
+        private String string() {
+            return escaped
+                    ? decode((char) 0).get(0)
+                    : new String(bytes, fieldStart, fieldEnd - fieldStart, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * The field with its doubled quotes and escapes undone, split at the semicolons that are
+         * not escaped if {@code separator} is one.
+         */
+        private List<String> decode(char separator) {
+            String raw = new String(bytes, fieldStart, fieldEnd - fieldStart, StandardCharsets.UTF_8);
+            List<String> values = new ArrayList<>(4);
+            StringBuilder sb = new StringBuilder(raw.length());
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+                if (c == '"') {
+                    sb.append('"');
+                    i++;
+                } else if (c == '\\' && i + 1 < raw.length() && isEscape(raw.charAt(i + 1))) {
+                    char e = raw.charAt(++i);
+                    sb.append(e == 'n' ? '\n' : e == 'r' ? '\r' : e);
+                } else if (c == separator) {
+                    values.add(sb.toString());
+                    sb.setLength(0);
+                } else {
+                    sb.append(c);
+                }
+            }
+            values.add(sb.toString());
+            return values;
+        }
+
+        private String[] authorList() {
+            if (fieldStart == fieldEnd) {
+                return new String[0];
+            }
+            if (escaped) {
+                return decode(';').stream().map(CatalogLoader.this::intern).toArray(String[]::new);
+            }
+            int count = 1;
+            for (int i = fieldStart; i < fieldEnd; i++) {
+                if (bytes[i] == ';') {
+                    count++;
+                }
+            }
+            String[] names = new String[count];
+            int n = 0, start = fieldStart;
+            for (int i = fieldStart; i <= fieldEnd; i++) {
+                if (i == fieldEnd || bytes[i] == ';') {
+                    names[n++] = cache.get(bytes, start, i);
+                    start = i + 1;
+                }
+            }
+            return names;
+        }
+    }
+
+    /**
+     * One JSON object on one line. Only the subset of JSON that a flat catalog record needs is
+     * parsed into values; any other member is skipped.
+     */
+    private final class JsonLine {
+        private final byte[] bytes;
+        private final int end;
+        private final AuthorCache cache;
+        private int pos;
+
+        JsonLine(byte[] bytes, int from, int to, AuthorCache cache) {
+            this.bytes = bytes;
+            this.pos = from;
+            this.end = to;
+            this.cache = cache;
+        }
+
+        void parse(RowSink sink) {
+            String title = null;
+            String[] bookAuthors = new String[0];
+            int[] pageCounts = new int[0];
+            Topic topic = null;
+            int pubYear = 0;
+            double height = 0;
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                throw new IllegalArgumentException("empty record");
+            }
+            do {
+                String key = string();
+                expect(':');
+                skipWhitespace();
+                switch (key) {
+                    case "title" -> title = string();
+                    case "authors" -> bookAuthors = authorArray();
+                    case "pageCounts" -> pageCounts = intArray();
+                    case "topic" -> {
+                        int from = pos + 1;
+                        skipString();
+                        topic = topic(bytes, from, pos - 1);
+                    }
+                    case "pubDate" -> {
+                        int from = pos;
+                        pubYear = parseInt(bytes, from, numberEnd());
+                    }
+                    case "height" -> {
+                        int from = pos;
+                        height = parseDouble(bytes, from, numberEnd());
+                    }
+                    default -> skipValue();
+                }
+                skipWhitespace();
+            } while (consume(','));
+            expect('}');
+            if (title == null || topic == null) {
+                throw new IllegalArgumentException("title and topic are required");
+            }
+            sink.accept(title, bookAuthors, pageCounts, topic, pubYear, height);
+        }
+
+        private byte peek() {
+            if (pos >= end) {
+                throw new IllegalArgumentException("unexpected end of line");
+            }
+            return bytes[pos];
+        }
+
+        private void skipWhitespace() {
+            while (pos < end && (bytes[pos] == ' ' || bytes[pos] == '\t')) {
+                pos++;
+            }
+        }
+
+        private void expect(char c) {
+            skipWhitespace();
+            if (peek() != c) {
+                throw new IllegalArgumentException("expected '" + c + "' at column " + pos);
+            }
+            pos++;
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (pos < end && bytes[pos] == c) {
+                pos++;
+                skipWhitespace();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Moves past a number (or literal) and returns the position just after it.
+         */
+        private int numberEnd() {
+            while (pos < end && bytes[pos] != ',' && bytes[pos] != '}' && bytes[pos] != ']'
+                    && bytes[pos] != ' ') {
+                pos++;
+            }
+            return pos;
+        }
+
+        private void skipString() {
+            expect('"');
+            while (peek() != '"') {
+                pos += bytes[pos] == '\\' ? 2 : 1;
+            }
+            pos++;
+        }
+
+        private String string() {
+            return string(false);
+        }
+
+        private String string(boolean author) {
+            skipWhitespace();
+            int from = pos + 1;
+            boolean escaped = false;
+            expect('"');
+            while (peek() != '"') {
+                if (bytes[pos] == '\\') {
+                    escaped = true;
+                    pos++;
+                }
+                pos++;
+            }
+            int to = pos++;
+            if (author && !escaped) {
+                return cache.get(bytes, from, to);
+            }
+            String raw = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+            String value = escaped ? unescape(raw) : raw;
+            return author ? intern(value) : value;
+        }
+
+        private String[] authorArray() {
+            List<String> names = new ArrayList<>(4);
+            expect('[');
+            skipWhitespace();
+            if (!consume(']')) {
+                do {
+                    names.add(string(true));
+                } while (consume(','));
+                expect(']');
+            }
+            return names.toArray(new String[0]);
+        }
+
+        private int[] intArray() {
+            expect('[');
+            if (consume(']')) {
+                return new int[0];
+            }
+            IntList values = new IntList(4);
+            do {
+                int from = pos;
+                values.add(parseInt(bytes, from, numberEnd()));
+            } while (consume(','));
+            expect(']');
+            return values.toArray();
+        }
+
+        private void skipValue() {
+            byte b = peek();
+            if (b == '"') {
+                skipString();
+                return;
+            }
+            if (b == '{' || b == '[') {
+                int depth = 0;
+                do {
+                    b = peek();
+                    if (b == '"') {
+                        skipString();
+                        continue;
+                    }
+                    if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                    pos++;
+                } while (depth > 0);
+                return;
+            }
+            numberEnd();
+        }
+    }
+
+    /**
+     * A thread-confined table from the UTF-8 bytes of an author name to its interned String. An
+     * author already seen by the thread then costs a hash and a byte comparison, rather than
+     * decoding a new String and looking it up in the shared map.
+     */
+    private final class AuthorCache {
+        private byte[][] keys = new byte[1024][];
+        private String[] values = new String[1024];
+        private int size;
+
+        String get(byte[] bytes, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int mask = keys.length - 1;
+            for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+                byte[] key = keys[slot];
+                if (key == null) {
+                    String value = intern(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+                    keys[slot] = Arrays.copyOfRange(bytes, from, to);
+                    values[slot] = value;
+                    if (++size * 2 > keys.length) {
+                        grow();
+                    }
+                    return value;
+                }
+                if (Arrays.equals(key, 0, key.length, bytes, from, to)) {
+                    return values[slot];
+                }
+            }
+        }
+
+        private void grow() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = spread(Arrays.hashCode(oldKeys[i])) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    private static String unescape(String raw) {
+        StringBuilder sb = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = raw.charAt(++i);
+            switch (e) {
+                case 'n' -> sb.append('\n');
+                case 't' -> sb.append('\t');
+                case 'r' -> sb.append('\r');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    sb.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                    i += 4;
+                }
+                default -> sb.append(e);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes books in the CSV format read by this loader, with a header line.
+     */
+    public static void writeCsv(Collection<Book> library, Path path) {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("title,authors,pageCounts,topic,pubDate,height\n");
+            for (Book b : library) {
+                out.write(csvField(b.getTitle()));
+                out.write(',');
+                out.write(csvList(b.getAuthors()));
+                out.write(',');
+                out.write(IntStream.of(b.getPageCounts()).mapToObj(Integer::toString).collect(Collectors.joining(";")));
+                out.write(',');
+                out.write(b.getTopic().name());
+                out.write(',');
+                out.write(Integer.toString(b.getPubDate().getValue()));
+                out.write(',');
+                out.write(Double.toString(b.getHeight()));
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes books in the JSON-lines format read by this loader.
+     */
+    public static void writeJsonLines(Collection<Book> library, Path path) {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (Book b : library) {
+                out.write("{\"title\":");
+                out.write(jsonString(b.getTitle()));
+                out.write(",\"authors\":[");
+                out.write(b.getAuthors().stream().map(CatalogLoader::jsonString).collect(Collectors.joining(",")));
+                out.write("],\"pageCounts\":[");
+                out.write(IntStream.of(b.getPageCounts()).mapToObj(Integer::toString).collect(Collectors.joining(",")));
+                out.write("],\"topic\":\"");
+                out.write(b.getTopic().name());
+                out.write("\",\"pubDate\":");
+                out.write(Integer.toString(b.getPubDate().getValue()));
+                out.write(",\"height\":");
+                out.write(Double.toString(b.getHeight()));
+                out.write("}\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isEscape(int b) {
+        return b == '\\' || b == 'n' || b == 'r' || b == ';';
+    }
+
+    private static String csvField(String s) {
+        return csvQuote(csvEscape(s, false));
+    }
+
+    private static String csvList(List<String> values) {
+        return csvQuote(values.stream().map(v -> csvEscape(v, true)).collect(Collectors.joining(";")));
+    }
+
+    /**
+     * Escapes what would otherwise end the line or, in a list, split a value; the result has a
+     * backslash wherever it differs, so it is then quoted.
+     */
+    private static String csvEscape(String s, boolean inList) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case ';' -> sb.append(inList ? "\\;" : ";");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String csvQuote(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\\') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,100 @@
+package com.mastering.lambdas.chapter3;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Loads a generated CSV catalog with a plain {@code BufferedReader.lines()} parse and with
+ * the chunked, memory-mapped, parallel CatalogLoader.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-Xmx8g"})
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class CatalogLoaderBenchmark {
+
+    @Param({"5000000"})
+    public int N;
+
+    private Path catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        catalog = Files.createTempFile("catalog", ".csv");
+        CatalogLoader.writeCsv(LibraryGenerator.generate(N), catalog);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(catalog);
+    }
+
+    @Benchmark
+    public List<Book> bufferedReaderLines() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(catalog)) {
+            return reader.lines()
+                    .skip(1)
+                    .map(CatalogLoaderBenchmark::parseLine)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Benchmark
+    public List<Book> mappedParallelBooks() {
+        return CatalogLoader.loadBooks(catalog);
+    }
+
+    @Benchmark
+    public LibraryTable mappedParallelTable() {
+        return CatalogLoader.loadTable(catalog);
+    }
+
+    private static Book parseLine(String line) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return new Book(fields.get(0),
+                List.of(fields.get(1).split(";")),
+                Arrays.stream(fields.get(2).split(";")).mapToInt(Integer::parseInt).toArray(),
+                Topic.valueOf(fields.get(3)),
+                Year.of(Integer.parseInt(fields.get(4))),
+                Double.parseDouble(fields.get(5)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
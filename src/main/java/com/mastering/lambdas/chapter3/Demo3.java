@@ -17,6 +17,7 @@ public class Demo3 {
 
     private List<Integer> intList;
     private List<Book> library = new ArrayList<>();
+    private LibraryIndex libraryIndex;
     private Stream<Book> computingBooks;
     private Stream<String> bookTitles;
     private Stream<Book> booksSortedByTitle;
@@ -40,6 +41,8 @@ public class Demo3 {
     public Demo3() {
         library = new LibraryInit().getLibrary();
 
+        libraryIndex = new LibraryIndex(library);
+
         intList = Arrays.asList(1, 2, 3, 4, 5);
 
         computingBooks = computingBooks();
@@ -84,12 +87,13 @@ public class Demo3 {
 
 
     /**
-     * A stream yielding the first 100 books in alphabetical order of title:
+     * A stream yielding the first 100 books in alphabetical order of title. The bounded-heap
+     * collector keeps only 100 books at a time instead of sorting the whole library:
      */
     private Stream<Book> readingList() {
         readingList = library.stream()
-                .sorted(Comparator.comparing(Book::getTitle))
-                .limit(100);
+                .collect(TopK.smallest(100, Comparator.comparing(Book::getTitle)))
+                .stream();
         return readingList;
     }
 
@@ -114,11 +118,10 @@ public class Demo3 {
     }
 
     /**
-     * A stream that contains only computing books:
+     * A stream that contains only computing books, read from the topic index:
      */
     private Stream<Book> computingBooks() {
-        computingBooks = library.stream()
-                .filter(b -> b.getTopic() == Topic.COMPUTING);
+        computingBooks = libraryIndex.byTopic(Topic.COMPUTING);
         return computingBooks;
     }
 
@@ -154,12 +157,14 @@ public class Demo3 {
     }
 
     /**
-     * A stream with the rest:
+     * A stream with the rest, continuing from the cursor after the first page of the title
+     * index rather than sorting and skipping:
      */
     private Stream<Book> remainderList() {
-        remainderList = library.stream()
-                .sorted(Comparator.comparing(Book::getTitle))
-                .skip(100);
+        LibraryIndex.TitlePage firstPage = libraryIndex.titlePage(LibraryIndex.TitleCursor.START, 100);
+        remainderList = firstPage.getNext()
+                .map(libraryIndex::byTitleAfter)
+                .orElseGet(Stream::empty);
         return remainderList;
     }
 
@@ -213,11 +218,10 @@ public class Demo3 {
     }
 
     /**
-     * Get all medicine books written by multiple authors:
+     * Get all medicine books written by multiple authors, starting from the topic index:
      */
     private List<Book> multipleAuthoredHistories() {
-        multipleAuthoredHistories = library.stream()
-                .filter(b -> b.getTopic() == Topic.MEDICINE)
+        multipleAuthoredHistories = libraryIndex.byTopic(Topic.MEDICINE)
                 .peek(b -> System.out.println(b.getTitle()))
                 .filter(b -> b.getAuthors().size() > 1)
                 .collect(Collectors.toList());
@@ -291,11 +295,10 @@ public class Demo3 {
     }
 
     /**
-     * Find any book which has "Sethi" as one of its authors:
+     * Find any book which has "Sethi" as one of its authors, read from the author index:
      */
     private Optional<Book> anyBook() {
-        Optional<Book> anyBook = library.stream()
-                .filter(b -> b.getAuthors().contains("Sethi"))
+        Optional<Book> anyBook = libraryIndex.byAuthor("Sethi")
                 .findAny();
         return anyBook;
     }
@@ -494,6 +497,24 @@ public class Demo3 {
 
         System.out.println();
 
+        System.out.println("Print the same aggregates computed over the columnar LibraryTable, without boxing:");
+        LibraryTable table = LibraryTable.of(library);
+        System.out.println("Overall page count: " + table.pages());
+        System.out.println("Summary Statistics: " + table.pageCountStatistics());
+        System.out.println("Within shelf height: " + table.withinShelfHeight());
+        System.out.println("Earliest-published book: " + table.oldest().orElseGet(Book::new));
+
+        System.out.println();
+
+        System.out.println("Print the multiple-authored medicine books again, through a planned query, and its plan:");
+        BookQuery medicineQuery = BookQuery.from(demo3.getLibraryIndex())
+                .where(BookPredicate.topic(Topic.MEDICINE))
+                .where(BookPredicate.of("more than one author", b -> b.getAuthors().size() > 1));
+        medicineQuery.toList().forEach(System.out::println);
+        System.out.println(medicineQuery.explain());
+
+        System.out.println();
+
         OptionalInt maxVolumesPages = library.stream()
                 .mapToInt(b -> IntStream.of(b.getPageCounts()).sum())
                 .max();
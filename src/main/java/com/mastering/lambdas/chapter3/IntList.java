@@ -0,0 +1,64 @@
+package com.mastering.lambdas.chapter3;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A growable array of ints, used where a List&lt;Integer&gt; would box every element.
+ */
+public final class IntList {
+
+    private int[] elements;
+    private int size;
+
+    public IntList() {
+        this(8);
+    }
+
+    public IntList(int capacity) {
+        elements = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = value;
+    }
+
+    public void addAll(IntList other) {
+        if (size + other.size > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(size * 2, size + other.size));
+        }
+        System.arraycopy(other.elements, 0, elements, size, other.size);
+        size += other.size;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
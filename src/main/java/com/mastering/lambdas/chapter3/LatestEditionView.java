@@ -0,0 +1,100 @@
+package com.mastering.lambdas.chapter3;
+
+import java.time.Year;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The title-to-latest-publication-date mapping of {@code Demo3.titleToPubDateLatest()}, kept
+ * up to date from catalog events instead of being recomputed with {@code toMap}.
+ * <p>
+ * Each title maps to the sorted publication years of all its editions, so that removing the
+ * latest edition falls back to the one before it. A change costs O(log n) in the number of
+ * titles plus a copy of the (small) edition array; the array is replaced rather than
+ * modified, so readers never see it half-updated and never lock.
+ */
+public class LatestEditionView implements CatalogListener {
+
+    private final ConcurrentNavigableMap<String, int[]> editionsByTitle = new ConcurrentSkipListMap<>();
+
+    @Override
+    public void added(long id, Book book) {
+        int year = book.getPubDate().getValue();
+        editionsByTitle.merge(book.getTitle(), new int[]{year}, (years, single) -> {
+            int[] grown = Arrays.copyOf(years, years.length + 1);
+            grown[years.length] = year;
+            Arrays.sort(grown);
+            return grown;
+        });
+    }
+
+    @Override
+    public void removed(long id, Book book) {
+        editionsByTitle.computeIfPresent(book.getTitle(), (title, years) -> without(years, book.getPubDate().getValue()));
+    }
+
+    /**
+     * An edition that keeps its title has its year swapped in one step, so that a title with a
+     * single edition never seems to be missing. A retitled edition is added under its new title
+     * before it is removed from the old one.
+     */
+    @Override
+    public void updated(long id, Book previous, Book book) {
+        if (!previous.getTitle().equals(book.getTitle())) {
+            added(id, book);
+            removed(id, previous);
+            return;
+        }
+        int year = book.getPubDate().getValue();
+        editionsByTitle.compute(book.getTitle(), (title, years) -> {
+            int[] kept = years == null ? null : without(years, previous.getPubDate().getValue());
+            if (kept == null) {
+                return new int[]{year};
+            }
+            int[] grown = Arrays.copyOf(kept, kept.length + 1);
+            grown[kept.length] = year;
+            Arrays.sort(grown);
+            return grown;
+        });
+    }
+
+    /**
+     * The years without one occurrence of {@code year}, or null if none would be left.
+     */
+    private static int[] without(int[] years, int year) {
+        int at = Arrays.binarySearch(years, year);
+        if (at < 0) {
+            return years;
+        }
+        if (years.length == 1) {
+            return null;
+        }
+        int[] shrunk = new int[years.length - 1];
+        System.arraycopy(years, 0, shrunk, 0, at);
+        System.arraycopy(years, at + 1, shrunk, at, years.length - at - 1);
+        return shrunk;
+    }
+
+    /**
+     * The publication date of the latest edition of a title, in O(log n):
+     */
+    public Optional<Year> latestPubDate(String title) {
+        int[] years = editionsByTitle.get(title);
+        return years == null ? Optional.empty() : Optional.of(Year.of(years[years.length - 1]));
+    }
+
+    /**
+     * Map each book title to the publication date of its latest edition, ordered by title.
+     * The copy is weakly consistent: it reflects every change completed before the call and
+     * possibly some made during it.
+     */
+    public SortedMap<String, Year> titleToPubDateLatest() {
+        SortedMap<String, Year> titleToPubDateLatest = new TreeMap<>();
+        editionsByTitle.forEach((title, years) -> titleToPubDateLatest.put(title, Year.of(years[years.length - 1])));
+        return titleToPubDateLatest;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mastering.lambdas.chapter3;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates large, reproducible libraries for the benchmarks. The four books of
+ * {@link LibraryInit} are far too few to measure anything.
+ */
+public final class LibraryGenerator {
+
+    private static final String[] WORDS = {
+            "Principles", "Fundamentals", "Compilers", "History", "Rings", "Lord", "Voss", "Image",
+            "Techniques", "Tools", "Modern", "Introduction", "Theory", "Practice", "Java", "Streams",
+            "Lambdas", "Concurrency", "Patterns", "Medicine", "Empire", "War", "Peace", "Science"};
+    private static final Topic[] TOPICS = Topic.values();
+
+    private LibraryGenerator() {
+    }
+
+    public static List<Book> generate(int size) {
+        return generate(size, 42L);
+    }
+
+    /**
+     * Books with one to four authors drawn from a pool that grows with the library, one to
+     * three volumes, and titles of three words so that some titles repeat across editions.
+     */
+    public static List<Book> generate(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int authorPool = Math.max(16, size / 4);
+        List<Book> library = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " "
+                    + random.nextInt(Math.max(1, size / 2));
+            List<String> authors = new ArrayList<>();
+            for (int a = random.nextInt(1, 5); a > 0; a--) {
+                authors.add("Author" + random.nextInt(authorPool));
+            }
+            int[] pageCounts = new int[random.nextInt(1, 4)];
+            for (int v = 0; v < pageCounts.length; v++) {
+                pageCounts[v] = random.nextInt(50, 1200);
+            }
+            library.add(new Book(title,
+                    List.copyOf(authors),
+                    pageCounts,
+                    TOPICS[random.nextInt(TOPICS.length)],
+                    Year.of(random.nextInt(1900, 2025)),
+                    random.nextInt(150, 300) / 10.0));
+        }
+        return library;
+    }
+}
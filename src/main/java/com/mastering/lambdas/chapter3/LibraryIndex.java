@@ -0,0 +1,311 @@
+package com.mastering.lambdas.chapter3;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Secondary indexes over a library, so that the filter-by-topic, filter-by-author and
+ * title-prefix queries of Demo3 become lookups instead of a scan of every book.
+ * <p>
+ * Books are identified by their row, the position at which they were added. Every index maps
+ * a key to a posting list of rows; rows are appended in increasing order, so each posting
+ * list is sorted and two of them can be intersected with a merge. The indexes are kept up to
+ * date by {@link #add(Book)}. Not thread-safe: concurrent readers need external synchronization
+ * with the writer.
+ */
+public class LibraryIndex {
+
+    private final List<Book> books = new ArrayList<>();
+    private final EnumMap<Topic, IntList> byTopic = new EnumMap<>(Topic.class);
+    private final Map<String, IntList> byAuthor = new HashMap<>();
+    private final NavigableMap<String, IntList> byTitle = new TreeMap<>();
+
+    public LibraryIndex() {
+    }
+
+    public LibraryIndex(Collection<Book> library) {
+        library.forEach(this::add);
+    }
+
+    /**
+     * Adds a book to the library and to every index, returning its row.
+     */
+    public int add(Book b) {
+        int row = books.size();
+        books.add(b);
+        byTopic.computeIfAbsent(b.getTopic(), t -> new IntList()).add(row);
+        // a book may list the same author twice ("Li", "Fu", "Li"); post it only once
+        for (String author : new LinkedHashSet<>(b.getAuthors())) {
+            byAuthor.computeIfAbsent(author, a -> new IntList(2)).add(row);
+        }
+        byTitle.computeIfAbsent(b.getTitle(), t -> new IntList(1)).add(row);
+        return row;
+    }
+
+    public int size() {
+        return books.size();
+    }
+
+    public Book book(int row) {
+        return books.get(row);
+    }
+
+    public Stream<Book> books(int[] rows) {
+        return Arrays.stream(rows).mapToObj(books::get);
+    }
+
+    /**
+     * The rows of the books on a topic, in ascending order.
+     */
+    public int[] topicRows(Topic topic) {
+        IntList rows = byTopic.get(topic);
+        return rows == null ? new int[0] : rows.toArray();
+    }
+
+    /**
+     * The rows of the books having the given author, in ascending order.
+     */
+    public int[] authorRows(String author) {
+        IntList rows = byAuthor.get(author);
+        return rows == null ? new int[0] : rows.toArray();
+    }
+
+    /**
+     * The rows of the books whose title starts with the prefix, in ascending order.
+     */
+    public int[] titlePrefixRows(String prefix) {
+        Collection<IntList> matches = titleRange(prefix).values();
+        if (matches.size() == 1) {
+            return matches.iterator().next().toArray();
+        }
+        return matches.stream()
+                .flatMapToInt(IntList::stream)
+                .sorted()
+                .toArray();
+    }
+
+    private SortedMap<String, IntList> titleRange(String prefix) {
+        if (prefix.isEmpty()) {
+            return byTitle;
+        }
+        // every title with the prefix sorts below the prefix with its last char incremented;
+        // a trailing MAX_VALUE cannot be, so it is dropped and the char before it incremented
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return byTitle.tailMap(prefix);
+        }
+        String upper = prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+        return byTitle.subMap(prefix, upper);
+    }
+
+    /**
+     * A stream that contains only the books on the topic, in library order:
+     */
+    public Stream<Book> byTopic(Topic topic) {
+        return books(topicRows(topic));
+    }
+
+    /**
+     * A stream of the books having the author, in library order:
+     */
+    public Stream<Book> byAuthor(String author) {
+        return books(authorRows(author));
+    }
+
+    /**
+     * A stream of the books whose title starts with the prefix, in library order:
+     */
+    public Stream<Book> byTitlePrefix(String prefix) {
+        return books(titlePrefixRows(prefix));
+    }
+
+    /**
+     * The books on the topic that have the author, found by intersecting the two posting lists:
+     */
+    public Stream<Book> byTopicAndAuthor(Topic topic, String author) {
+        return books(intersect(topicRows(topic), authorRows(author)));
+    }
+
+    /**
+     * A page of at most {@code limit} books in title order (ties in library order), starting
+     * after the cursor. Costs O(log n + limit): the title index is entered at the cursor's
+     * title rather than sorted and skipped.
+     */
+    public TitlePage titlePage(TitleCursor after, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        List<Book> page = new ArrayList<>(Math.min(limit, 1024));
+        TitleCursor last = after;
+        Iterator<TitleCursor> cursors = cursorsAfter(after);
+        while (page.size() < limit && cursors.hasNext()) {
+            last = cursors.next();
+            page.add(books.get(last.row));
+        }
+        return new TitlePage(page, page.size() == limit ? last : null);
+    }
+
+    /**
+     * All the books in title order (ties in library order) after the cursor, read lazily from
+     * the title index:
+     */
+    public Stream<Book> byTitleAfter(TitleCursor after) {
+        Iterable<TitleCursor> cursors = () -> cursorsAfter(after);
+        return StreamSupport.stream(cursors.spliterator(), false)
+                .map(c -> books.get(c.row));
+    }
+
+    private Iterator<TitleCursor> cursorsAfter(TitleCursor after) {
+        Iterator<Map.Entry<String, IntList>> titles = after.title == null
+                ? byTitle.entrySet().iterator()
+                : byTitle.tailMap(after.title, true).entrySet().iterator();
+        return new Iterator<>() {
+            private String title;
+            private IntList rows;
+            private int next;
+
+            {
+                if (titles.hasNext()) {
+                    Map.Entry<String, IntList> first = titles.next();
+                    title = first.getKey();
+                    rows = first.getValue();
+                    if (title.equals(after.title)) {
+                        // skip the rows of this title at or before the cursor; rows are ascending
+                        while (next < rows.size() && rows.get(next) <= after.row) {
+                            next++;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (rows != null && next == rows.size()) {
+                    if (titles.hasNext()) {
+                        Map.Entry<String, IntList> entry = titles.next();
+                        title = entry.getKey();
+                        rows = entry.getValue();
+                        next = 0;
+                    } else {
+                        rows = null;
+                    }
+                }
+                return rows != null;
+            }
+
+            @Override
+            public TitleCursor next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new TitleCursor(title, rows.get(next++));
+            }
+        };
+    }
+
+    /**
+     * Intersects posting lists, shortest first, so that the work done is bounded by the
+     * length of the most selective one.
+     */
+    public static int[] intersect(int[]... postings) {
+        if (postings.length == 0) {
+            return new int[0];
+        }
+        int[][] bySize = postings.clone();
+        Arrays.sort(bySize, Comparator.comparingInt(p -> p.length));
+        int[] result = bySize[0];
+        for (int i = 1; i < bySize.length && result.length > 0; i++) {
+            result = intersectSorted(result, bySize[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Intersects two sorted posting lists. When one list is much shorter than the other,
+     * its elements are looked up in the longer by binary search rather than by merging.
+     */
+    private static int[] intersectSorted(int[] shorter, int[] longer) {
+        int[] result = new int[Math.min(shorter.length, longer.length)];
+        int n = 0;
+        if ((long) shorter.length * 32 < longer.length) {
+            int from = 0;
+            for (int row : shorter) {
+                int found = Arrays.binarySearch(longer, from, longer.length, row);
+                if (found >= 0) {
+                    result[n++] = row;
+                    from = found + 1;
+                } else {
+                    from = -found - 1;
+                }
+            }
+        } else {
+            int i = 0, j = 0;
+            while (i < shorter.length && j < longer.length) {
+                if (shorter[i] < longer[j]) {
+                    i++;
+                } else if (shorter[i] > longer[j]) {
+                    j++;
+                } else {
+                    result[n++] = shorter[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * A position in title order: the title and row of the last book returned.
+     * {@link #START} is the position before the first book.
+     */
+    public static final class TitleCursor {
+        public static final TitleCursor START = new TitleCursor(null, -1);
+
+        private final String title;
+        private final int row;
+
+        public TitleCursor(String title, int row) {
+            this.title = title;
+            this.row = row;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        @Override
+        public String toString() {
+            return "TitleCursor{title='" + title + "', row=" + row + '}';
+        }
+    }
+
+    public static final class TitlePage {
+        private final List<Book> books;
+        private final TitleCursor next;
+
+        TitlePage(List<Book> books, TitleCursor next) {
+            this.books = Collections.unmodifiableList(books);
+            this.next = next;
+        }
+
+        public List<Book> getBooks() {
+            return books;
+        }
+
+        /**
+         * The cursor to pass for the following page, or empty if this page was the last.
+         */
+        public Optional<TitleCursor> getNext() {
+            return Optional.ofNullable(next);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.mastering.lambdas.chapter3;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the Demo3 filter queries answered by a full scan with the same queries answered
+ * from a LibraryIndex.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class LibraryIndexBenchmark {
+
+    @Param({"1000000", "5000000"})
+    public int N;
+
+    private List<Book> library;
+    private LibraryIndex index;
+    private String author;
+    private String titlePrefix;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryGenerator.generate(N);
+        index = new LibraryIndex(library);
+        Book probe = library.get(N / 2);
+        author = probe.getAuthors().get(0);
+        titlePrefix = probe.getTitle().substring(0, probe.getTitle().lastIndexOf(' ') + 2);
+    }
+
+    @Benchmark
+    public List<Book> topicScan() {
+        return library.stream()
+                .filter(b -> b.getTopic() == Topic.COMPUTING)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Book> topicIndex() {
+        return index.byTopic(Topic.COMPUTING).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Optional<Book> authorScan() {
+        return library.stream()
+                .filter(b -> b.getAuthors().contains(author))
+                .findAny();
+    }
+
+    @Benchmark
+    public Optional<Book> authorIndex() {
+        return index.byAuthor(author).findAny();
+    }
+
+    @Benchmark
+    public List<Book> titlePrefixScan() {
+        return library.stream()
+                .filter(b -> b.getTitle().startsWith(titlePrefix))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Book> titlePrefixIndex() {
+        return index.byTitlePrefix(titlePrefix).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Book> topicAndAuthorScan() {
+        return library.stream()
+                .filter(b -> b.getTopic() == Topic.COMPUTING)
+                .filter(b -> b.getAuthors().contains(author))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Book> topicAndAuthorIndex() {
+        return index.byTopicAndAuthor(Topic.COMPUTING, author).collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,316 @@
+package com.mastering.lambdas.chapter3;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Year;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+
+/**
+ * A library saved in a compact binary file, which is memory-mapped when opened and decoded one
+ * book at a time as books are asked for, so a restart costs mapping the file rather than parsing
+ * the whole catalog again.
+ * <p>
+ * Layout (all integers big-endian):
+ * <pre>
+ * header        magic, version, book count, string count, string table offset,
+ *               record table offset, file length, CRC32 of the header before it and of
+ *               everything after the header
+ * string table  int offset of each dictionary string
+ * record table  int offset of each record
+ * strings       varint length, UTF-8 bytes; titles and authors share one dictionary
+ * records       varint title id, varint author count, varint author ids,
+ *               varint volume count, zigzag varint page counts,
+ *               byte topic ordinal, short year, double height
+ * </pre>
+ * The whole file is one mapping, so a snapshot is limited to 2GB. Decoded dictionary strings
+ * are cached, so books by the same author share one String, as they do in memory.
+ */
+public final class LibrarySnapshot {
+
+    static final int MAGIC = 0x4C534E50;    // "LSNP"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 36;
+    static final int CRC_OFFSET = 32;
+
+    private static final Topic[] TOPICS = Topic.values();
+
+    private final ByteBuffer data;
+    private final int size;
+    private final int stringTable;
+    private final int recordTable;
+    private final String[] strings;
+
+    private LibrarySnapshot(ByteBuffer data, int size, int stringCount, int stringTable, int recordTable) {
+        this.data = data;
+        this.size = size;
+        this.stringTable = stringTable;
+        this.recordTable = recordTable;
+        this.strings = new String[stringCount];
+    }
+
+    /**
+     * Maps a snapshot and checks its header and checksum.
+     */
+    public static LibrarySnapshot open(Path path) {
+        return open(path, true);
+    }
+
+    /**
+     * Maps a snapshot and checks its header. Verifying the checksum reads the whole file once;
+     * without it only the pages of the books actually decoded are ever touched.
+     */
+    public static LibrarySnapshot open(Path path, boolean verifyChecksum) {
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = fc.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IllegalArgumentException(path + " is too short to be a library snapshot");
+            }
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(path + " is larger than 2GB");
+            }
+            ByteBuffer data = fc.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (data.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException(path + " is not a library snapshot");
+            }
+            if (data.getInt(4) != VERSION) {
+                throw new IllegalArgumentException(path + " has unsupported snapshot version " + data.getInt(4));
+            }
+            if (data.getLong(24) != fileSize) {
+                throw new IllegalArgumentException(path + " is truncated: expected " + data.getLong(24) + " bytes, found " + fileSize);
+            }
+            if (verifyChecksum && data.getInt(CRC_OFFSET) != checksum(data.slice(0, CRC_OFFSET),
+                    data.slice(HEADER_SIZE, (int) fileSize - HEADER_SIZE))) {
+                throw new IllegalArgumentException(path + " is corrupt: checksum mismatch");
+            }
+            int size = data.getInt(8), stringCount = data.getInt(12), stringTable = data.getInt(16), recordTable = data.getInt(20);
+            // even unverified, the tables must lie within the file, so that no lookup reads past it
+            if (size < 0 || stringCount < 0 || stringTable < HEADER_SIZE
+                    || recordTable < stringTable + 4L * stringCount || recordTable + 4L * size > fileSize) {
+                throw new IllegalArgumentException(path + " is corrupt: its tables do not fit in the file");
+            }
+            return new LibrarySnapshot(data, size, stringCount, stringTable, recordTable);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String title(int index) {
+        return string(new Decoder(recordOffset(index)).varint());
+    }
+
+    public Book book(int index) {
+        Decoder in = new Decoder(recordOffset(index));
+        String title = string(in.varint());
+        String[] authors = new String[in.varint()];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = string(in.varint());
+        }
+        int[] pageCounts = new int[in.varint()];
+        for (int i = 0; i < pageCounts.length; i++) {
+            int zigzag = in.varint();
+            pageCounts[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        Topic topic = TOPICS[data.get(in.pos)];
+        Year pubDate = Year.of(data.getShort(in.pos + 1));
+        double height = data.getDouble(in.pos + 3);
+        return new Book(title, List.of(authors), pageCounts, topic, pubDate, height);
+    }
+
+    /**
+     * A read-only list view that decodes each book when it is fetched.
+     */
+    public List<Book> books() {
+        return new Books();
+    }
+
+    private final class Books extends AbstractList<Book> implements RandomAccess {
+        @Override
+        public Book get(int index) {
+            return book(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private int recordOffset(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return data.getInt(recordTable + 4 * index);
+    }
+
+    /**
+     * Strings are immutable and safely published, so two threads decoding the same entry at
+     * once is harmless: one of the equal copies wins the slot.
+     */
+    private String string(int id) {
+        String s = strings[id];
+        if (s == null) {
+            Decoder in = new Decoder(data.getInt(stringTable + 4 * id));
+            int length = in.varint();
+            byte[] bytes = new byte[length];
+            data.get(in.pos, bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = s;
+        }
+        return s;
+    }
+
+    private final class Decoder {
+        int pos;
+
+        Decoder(int pos) {
+            this.pos = pos;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data.get(pos++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    private static int checksum(ByteBuffer... sections) {
+        CRC32 crc = new CRC32();
+        for (ByteBuffer section : sections) {
+            crc.update(section.duplicate());
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes books as a snapshot. Years must fit in a short.
+     */
+    public static void write(Collection<Book> library, Path path) {
+        Map<String, Integer> ids = new HashMap<>();
+        Output strings = new Output();
+        IntList stringOffsets = new IntList();
+        Output records = new Output();
+        IntList recordOffsets = new IntList();
+        for (Book b : library) {
+            int year = b.getPubDate().getValue();
+            if (year < Short.MIN_VALUE || year > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Year " + year + " of \"" + b.getTitle() + "\" does not fit in a snapshot");
+            }
+            recordOffsets.add(records.size);
+            records.varint(id(b.getTitle(), ids, strings, stringOffsets));
+            records.varint(b.getAuthors().size());
+            for (String author : b.getAuthors()) {
+                records.varint(id(author, ids, strings, stringOffsets));
+            }
+            records.varint(b.getPageCounts().length);
+            for (int pages : b.getPageCounts()) {
+                records.varint((pages << 1) ^ (pages >> 31));
+            }
+            records.ensure(11);
+            records.buffer[records.size++] = (byte) b.getTopic().ordinal();
+            ByteBuffer.wrap(records.buffer, records.size, 10).putShort((short) year).putDouble(b.getHeight());
+            records.size += 10;
+        }
+
+        int stringTable = HEADER_SIZE;
+        int recordTable = stringTable + 4 * stringOffsets.size();
+        long stringData = recordTable + 4L * recordOffsets.size();
+        long recordData = stringData + strings.size;
+        long fileSize = recordData + records.size;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Library is too large for a 2GB snapshot");
+        }
+        ByteBuffer tables = ByteBuffer.allocate(recordTable - stringTable + 4 * recordOffsets.size());
+        for (int i = 0; i < stringOffsets.size(); i++) {
+            tables.putInt((int) stringData + stringOffsets.get(i));
+        }
+        for (int i = 0; i < recordOffsets.size(); i++) {
+            tables.putInt((int) recordData + recordOffsets.get(i));
+        }
+        tables.flip();
+        ByteBuffer[] body = {tables, ByteBuffer.wrap(strings.buffer, 0, strings.size), ByteBuffer.wrap(records.buffer, 0, records.size)};
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(recordOffsets.size())
+                .putInt(stringOffsets.size())
+                .putInt(stringTable)
+                .putInt(recordTable)
+                .putLong(fileSize);
+        header.putInt(checksum(header.duplicate().flip(), body[0], body[1], body[2])).flip();
+
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                fc.write(header);
+            }
+            for (ByteBuffer section : body) {
+                while (section.hasRemaining()) {
+                    fc.write(section);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int id(String s, Map<String, Integer> ids, Output strings, IntList offsets) {
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = offsets.size();
+            ids.put(s, id);
+            offsets.add(strings.size);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            strings.varint(bytes.length);
+            strings.ensure(bytes.length);
+            System.arraycopy(bytes, 0, strings.buffer, strings.size, bytes.length);
+            strings.size += bytes.length;
+        }
+        return id;
+    }
+
+    private static final class Output {
+        byte[] buffer = new byte[4096];
+        int size;
+
+        void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                long capacity = Math.max((long) buffer.length * 2, (long) size + extra);
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("Library is too large for a 2GB snapshot");
+                }
+                buffer = Arrays.copyOf(buffer, (int) capacity);
+            }
+        }
+
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+    }
+}
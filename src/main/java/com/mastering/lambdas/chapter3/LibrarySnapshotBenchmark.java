@@ -0,0 +1,67 @@
+package com.mastering.lambdas.chapter3;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm restart of a large library: parsing the CSV export again against opening a binary
+ * snapshot, with and without checksum verification, and against decoding every book of it.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-Xmx8g"})
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class LibrarySnapshotBenchmark {
+
+    @Param({"5000000"})
+    public int N;
+
+    private Path csv;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<Book> library = LibraryGenerator.generate(N);
+        csv = Files.createTempFile("catalog", ".csv");
+        snapshot = Files.createTempFile("catalog", ".snap");
+        CatalogLoader.writeCsv(library, csv);
+        LibrarySnapshot.write(library, snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public List<Book> parseCsv() {
+        return CatalogLoader.loadBooks(csv);
+    }
+
+    @Benchmark
+    public Book openSnapshot() {
+        return LibrarySnapshot.open(snapshot, false).book(N / 2);
+    }
+
+    @Benchmark
+    public Book openVerifiedSnapshot() {
+        return LibrarySnapshot.open(snapshot).book(N / 2);
+    }
+
+    @Benchmark
+    public List<Book> decodeWholeSnapshot() {
+        return List.copyOf(LibrarySnapshot.open(snapshot, false).books());
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
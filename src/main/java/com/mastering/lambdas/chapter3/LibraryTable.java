@@ -0,0 +1,302 @@
+package com.mastering.lambdas.chapter3;
+
+import java.time.Year;
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A column-oriented ("struct of arrays") copy of a library. Every property of a Book is held
+ * in its own primitive array, indexed by row, so the aggregate queries of Demo3 walk
+ * contiguous memory instead of chasing one Book reference per element and boxing its fields.
+ * <p>
+ * The page counts of all books are stored in one flat array; the volumes of the book in row
+ * {@code r} are the elements {@code pageCounts[pageOffsets[r]] .. pageCounts[pageOffsets[r + 1] - 1]}.
+ */
+public final class LibraryTable {
+
+    private static final Topic[] TOPICS = Topic.values();
+
+    private final int size;
+    private final String[] titles;
+    private final String[][] authors;
+    private final int[] pubYears;
+    private final double[] heights;
+    private final byte[] topics;
+    private final int[] pageOffsets;
+    private final int[] pageCounts;
+
+    private LibraryTable(int size, String[] titles, String[][] authors, int[] pubYears, double[] heights,
+                         byte[] topics, int[] pageOffsets, int[] pageCounts) {
+        this.size = size;
+        this.titles = titles;
+        this.authors = authors;
+        this.pubYears = pubYears;
+        this.heights = heights;
+        this.topics = topics;
+        this.pageOffsets = pageOffsets;
+        this.pageCounts = pageCounts;
+    }
+
+    public static LibraryTable of(List<Book> library) {
+        Builder builder = new Builder(library.size());
+        library.forEach(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Joins tables end to end, as when a file was loaded in chunks.
+     */
+    public static LibraryTable concat(List<LibraryTable> tables) {
+        int size = 0, pages = 0;
+        for (LibraryTable t : tables) {
+            size += t.size;
+            pages += t.pageOffsets[t.size];
+        }
+        String[] titles = new String[size];
+        String[][] authors = new String[size][];
+        int[] pubYears = new int[size];
+        double[] heights = new double[size];
+        byte[] topics = new byte[size];
+        int[] pageOffsets = new int[size + 1];
+        int[] pageCounts = new int[pages];
+        int row = 0, page = 0;
+        for (LibraryTable t : tables) {
+            System.arraycopy(t.titles, 0, titles, row, t.size);
+            System.arraycopy(t.authors, 0, authors, row, t.size);
+            System.arraycopy(t.pubYears, 0, pubYears, row, t.size);
+            System.arraycopy(t.heights, 0, heights, row, t.size);
+            System.arraycopy(t.topics, 0, topics, row, t.size);
+            for (int r = 1; r <= t.size; r++) {
+                pageOffsets[row + r] = page + t.pageOffsets[r];
+            }
+            System.arraycopy(t.pageCounts, 0, pageCounts, page, t.pageOffsets[t.size]);
+            row += t.size;
+            page += t.pageOffsets[t.size];
+        }
+        return new LibraryTable(size, titles, authors, pubYears, heights, topics, pageOffsets, pageCounts);
+    }
+
+    public static Builder builder() {
+        return new Builder(16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String title(int row) {
+        return titles[row];
+    }
+
+    public List<String> authors(int row) {
+        return List.of(authors[row]);
+    }
+
+    public int authorCount(int row) {
+        return authors[row].length;
+    }
+
+    public Topic topic(int row) {
+        return TOPICS[topics[row]];
+    }
+
+    public int pubYear(int row) {
+        return pubYears[row];
+    }
+
+    public double height(int row) {
+        return heights[row];
+    }
+
+    public int volumeCount(int row) {
+        return pageOffsets[row + 1] - pageOffsets[row];
+    }
+
+    public IntStream pageCounts(int row) {
+        return Arrays.stream(pageCounts, pageOffsets[row], pageOffsets[row + 1]);
+    }
+
+    public int pageTotal(int row) {
+        int total = 0;
+        for (int i = pageOffsets[row], end = pageOffsets[row + 1]; i < end; i++) {
+            total += pageCounts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Rebuilds the Book stored in the given row. Only needed at the edge of a query, when the
+     * caller wants objects back; the aggregates below never call it.
+     */
+    public Book book(int row) {
+        return new Book(titles[row],
+                List.of(authors[row]),
+                Arrays.copyOfRange(pageCounts, pageOffsets[row], pageOffsets[row + 1]),
+                topic(row),
+                Year.of(pubYears[row]),
+                heights[row]);
+    }
+
+    public Stream<Book> books() {
+        return IntStream.range(0, size).mapToObj(this::book);
+    }
+
+    public IntStream pubYears() {
+        return Arrays.stream(pubYears, 0, size);
+    }
+
+    public DoubleStream heights() {
+        return Arrays.stream(heights, 0, size);
+    }
+
+    /**
+     * The page counts of every volume of every book, in row order.
+     */
+    public IntStream pageCounts() {
+        return Arrays.stream(pageCounts, 0, pageOffsets[size]);
+    }
+
+    /**
+     * The total page count of each book, in row order.
+     */
+    public IntStream pageTotals() {
+        return IntStream.range(0, size).map(this::pageTotal);
+    }
+
+    public IntStream rows(Topic topic) {
+        byte ordinal = (byte) topic.ordinal();
+        return IntStream.range(0, size).filter(row -> topics[row] == ordinal);
+    }
+
+    /**
+     * Calculate overall page count (see {@code Demo3.pages()}):
+     */
+    public int pages() {
+        int pages = 0;
+        for (int i = 0, end = pageOffsets[size]; i < end; i++) {
+            pages += pageCounts[i];
+        }
+        return pages;
+    }
+
+    /**
+     * The summary statistics of the page count of the books (see {@code Demo3.pageCountStatistics()}):
+     */
+    public IntSummaryStatistics pageCountStatistics() {
+        IntSummaryStatistics statistics = new IntSummaryStatistics();
+        for (int row = 0; row < size; row++) {
+            statistics.accept(pageTotal(row));
+        }
+        return statistics;
+    }
+
+    /**
+     * Check that all fiction books are less than 24cm high (see {@code Demo3.withinShelfHeight()}):
+     */
+    public boolean withinShelfHeight() {
+        byte fiction = (byte) Topic.FICTION.ordinal();
+        for (int row = 0; row < size; row++) {
+            if (topics[row] == fiction && !(heights[row] < 24)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The earliest-published book (see {@code Demo3.oldest()}). As with
+     * {@code Stream.min}, the first of several equally old books wins.
+     */
+    public Optional<Book> oldest() {
+        if (size == 0) {
+            return Optional.empty();
+        }
+        int oldest = 0;
+        for (int row = 1; row < size; row++) {
+            if (pubYears[row] < pubYears[oldest]) {
+                oldest = row;
+            }
+        }
+        return Optional.of(book(oldest));
+    }
+
+    public int totalAuthorships() {
+        int total = 0;
+        for (int row = 0; row < size; row++) {
+            total += authors[row].length;
+        }
+        return total;
+    }
+
+    /**
+     * Appends rows one at a time, growing the column arrays geometrically; {@link #build()}
+     * trims them to size.
+     */
+    public static final class Builder {
+        private int size;
+        private String[] titles;
+        private String[][] authors;
+        private int[] pubYears;
+        private double[] heights;
+        private byte[] topics;
+        private int[] pageOffsets;
+        private int[] pageCounts;
+
+        private Builder(int capacity) {
+            capacity = Math.max(capacity, 1);
+            titles = new String[capacity];
+            authors = new String[capacity][];
+            pubYears = new int[capacity];
+            heights = new double[capacity];
+            topics = new byte[capacity];
+            pageOffsets = new int[capacity + 1];
+            pageCounts = new int[capacity];
+        }
+
+        public Builder add(Book b) {
+            return add(b.getTitle(), b.getAuthors().toArray(new String[0]), b.getPageCounts(),
+                    b.getTopic(), b.getPubDate().getValue(), b.getHeight());
+        }
+
+        public Builder add(String title, String[] bookAuthors, int[] volumes, Topic topic, int pubYear, double height) {
+            if (size == titles.length) {
+                int capacity = size * 2;
+                titles = Arrays.copyOf(titles, capacity);
+                authors = Arrays.copyOf(authors, capacity);
+                pubYears = Arrays.copyOf(pubYears, capacity);
+                heights = Arrays.copyOf(heights, capacity);
+                topics = Arrays.copyOf(topics, capacity);
+                pageOffsets = Arrays.copyOf(pageOffsets, capacity + 1);
+            }
+            int pageStart = pageOffsets[size];
+            if (pageStart + volumes.length > pageCounts.length) {
+                pageCounts = Arrays.copyOf(pageCounts, Math.max(pageCounts.length * 2, pageStart + volumes.length));
+            }
+            System.arraycopy(volumes, 0, pageCounts, pageStart, volumes.length);
+            titles[size] = title;
+            authors[size] = bookAuthors;
+            pubYears[size] = pubYear;
+            heights[size] = height;
+            topics[size] = (byte) topic.ordinal();
+            pageOffsets[size + 1] = pageStart + volumes.length;
+            size++;
+            return this;
+        }
+
+        public LibraryTable build() {
+            return new LibraryTable(size,
+                    Arrays.copyOf(titles, size),
+                    Arrays.copyOf(authors, size),
+                    Arrays.copyOf(pubYears, size),
+                    Arrays.copyOf(heights, size),
+                    Arrays.copyOf(topics, size),
+                    Arrays.copyOf(pageOffsets, size + 1),
+                    Arrays.copyOf(pageCounts, pageOffsets[size]));
+        }
+    }
+}
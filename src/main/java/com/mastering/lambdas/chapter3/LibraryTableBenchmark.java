@@ -0,0 +1,80 @@
+package com.mastering.lambdas.chapter3;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the Demo3 aggregates over a List of Book objects and over the equivalent LibraryTable.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class LibraryTableBenchmark {
+
+    @Param({"100000", "10000000"})
+    public int N;
+
+    private List<Book> library;
+    private LibraryTable table;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryGenerator.generate(N);
+        table = LibraryTable.of(library);
+    }
+
+    @Benchmark
+    public int pagesObjects() {
+        return library.stream()
+                .flatMapToInt(b -> IntStream.of(b.getPageCounts()))
+                .sum();
+    }
+
+    @Benchmark
+    public int pagesTable() {
+        return table.pages();
+    }
+
+    @Benchmark
+    public IntSummaryStatistics pageCountStatisticsObjects() {
+        return library.stream()
+                .mapToInt(b -> IntStream.of(b.getPageCounts()).sum())
+                .summaryStatistics();
+    }
+
+    @Benchmark
+    public IntSummaryStatistics pageCountStatisticsTable() {
+        return table.pageCountStatistics();
+    }
+
+    @Benchmark
+    public boolean withinShelfHeightObjects() {
+        return library.stream()
+                .filter(b -> b.getTopic() == Topic.FICTION)
+                .allMatch(b -> b.getHeight() < 24);
+    }
+
+    @Benchmark
+    public boolean withinShelfHeightTable() {
+        return table.withinShelfHeight();
+    }
+
+    @Benchmark
+    public Optional<Book> oldestObjects() {
+        return library.stream()
+                .min(Comparator.comparing(Book::getPubDate));
+    }
+
+    @Benchmark
+    public Optional<Book> oldestTable() {
+        return table.oldest();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
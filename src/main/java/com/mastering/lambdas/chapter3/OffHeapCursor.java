@@ -0,0 +1,110 @@
+package com.mastering.lambdas.chapter3;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.List;
+
+/**
+ * A cursor over the records of an {@link OffHeapLibrary}, with the accessors of a {@link Book}:
+ * moving it to another row changes the book it shows. The height, topic, year, counts, single
+ * page counts and single authors are read without allocating; the title and the arrays are
+ * built on each call. It is deliberately not a {@code Book}, and has identity equality, so that
+ * it cannot be collected, sorted or hashed as one; {@link #toBook()} makes a heap copy that can.
+ */
+public final class OffHeapCursor {
+
+    private final OffHeapLibrary store;
+    private ByteBuffer segment;
+    private int base;
+
+    OffHeapCursor(OffHeapLibrary store) {
+        this.store = store;
+    }
+
+    public OffHeapCursor moveTo(int row) {
+        long record = store.record(row);
+        segment = store.segment((int) (record >>> 32));
+        base = (int) record;
+        return this;
+    }
+
+    public double getHeight() {
+        return segment.getDouble(base);
+    }
+
+    public Year getPubDate() {
+        return OffHeapLibrary.year(segment.getShort(base + 12));
+    }
+
+    public Topic getTopic() {
+        return OffHeapLibrary.topic(segment.get(base + 14));
+    }
+
+    public int authorCount() {
+        return segment.get(base + 15) & 0xFF;
+    }
+
+    public int volumeCount() {
+        return segment.getShort(base + 16) & 0xFFFF;
+    }
+
+    /**
+     * The canonical name of the author at {@code index}, as shared by every book.
+     */
+    public String author(int index) {
+        return AuthorDictionary.shared().name(authorId(index));
+    }
+
+    public int authorId(int index) {
+        return segment.getInt(base + OffHeapLibrary.HEADER_SIZE + 4 * index);
+    }
+
+    public int pageCount(int volume) {
+        return segment.getInt(base + OffHeapLibrary.HEADER_SIZE + 4 * (authorCount() + volume));
+    }
+
+    public int pageTotal() {
+        int total = 0;
+        int at = base + OffHeapLibrary.HEADER_SIZE + 4 * authorCount();
+        for (int v = volumeCount(); v > 0; v--, at += 4) {
+            total += segment.getInt(at);
+        }
+        return total;
+    }
+
+    public String getTitle() {
+        int length = segment.getInt(base + 8);
+        byte[] bytes = new byte[length];
+        segment.get(titleStart(), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int[] getAuthorIds() {
+        int[] ids = new int[authorCount()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = authorId(i);
+        }
+        return ids;
+    }
+
+    public List<String> getAuthors() {
+        return AuthorDictionary.shared().names(getAuthorIds());
+    }
+
+    public int[] getPageCounts() {
+        int[] pages = new int[volumeCount()];
+        for (int v = 0; v < pages.length; v++) {
+            pages[v] = pageCount(v);
+        }
+        return pages;
+    }
+
+    public Book toBook() {
+        return new Book(getTitle(), getAuthorIds(), getPageCounts(), getTopic(), getPubDate(), getHeight());
+    }
+
+    private int titleStart() {
+        return base + OffHeapLibrary.HEADER_SIZE + 4 * (authorCount() + volumeCount());
+    }
+}
@@ -0,0 +1,78 @@
+package com.mastering.lambdas.chapter3;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Holds a large generated library first as {@code Book} objects on the heap and then in an
+ * {@link OffHeapLibrary}, and for each reports the heap in use, the off-heap bytes, the time
+ * of full collections and of the young collections caused by a fixed amount of short-lived
+ * garbage, and the time of a page-count aggregate over the whole library.
+ * <p>
+ * Arguments, optional: the number of books (default 5000000). Run with a heap large enough for
+ * the on-heap library, e.g. {@code -Xmx8g}, and the same flags for every comparison.
+ */
+public class OffHeapFootprint {
+
+    private static final int FULL_GCS = 3;
+    private static final long GARBAGE_BYTES = 8L << 30;
+
+    static volatile long blackhole;
+    static volatile byte[] garbage;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+
+        List<Book> library = LibraryGenerator.generate(n);
+        report("heap    ", library, 0, () -> library.stream().mapToLong(b -> IntStream.of(b.getPageCounts()).sum()).sum());
+
+        OffHeapLibrary store = new OffHeapLibrary();
+        library.forEach(store::add);
+        // let the heap copy go before measuring the store on its own
+        library.clear();
+        report("off-heap", store, store.offHeapBytes(), () -> store.cursors().mapToLong(OffHeapCursor::pageTotal).sum());
+    }
+
+    private static void report(String label, Object live, long offHeapBytes, LongSupplier aggregate) {
+        System.gc();
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < FULL_GCS; i++) {
+            System.gc();
+        }
+        double fullGcMillis = (System.nanoTime() - start) / 1e6 / FULL_GCS;
+
+        long[] before = gcTotals();
+        for (long allocated = 0; allocated < GARBAGE_BYTES; allocated += 1 << 10) {
+            garbage = new byte[1 << 10];
+        }
+        long[] after = gcTotals();
+
+        blackhole = aggregate.getAsLong();
+        start = System.nanoTime();
+        long pages = aggregate.getAsLong();
+        double aggregateMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("%s heap used %,d MB, off-heap %,d MB, full GC %.0f ms, %d collections for %d GB of garbage taking %d ms, %,d pages in %.0f ms%n",
+                label, heapUsed >> 20, offHeapBytes >> 20, fullGcMillis, after[0] - before[0], GARBAGE_BYTES >> 30,
+                after[1] - before[1], pages, aggregateMillis);
+        Reference.reachabilityFence(live);
+    }
+
+    /**
+     * The number of collections and the milliseconds spent in them, over all collectors.
+     */
+    private static long[] gcTotals() {
+        long count = 0, millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+}
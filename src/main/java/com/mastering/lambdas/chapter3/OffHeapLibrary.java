@@ -0,0 +1,251 @@
+package com.mastering.lambdas.chapter3;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Books stored outside the Java heap, in direct ByteBuffers, so that a catalog of tens of
+ * millions of books adds a few hundred small objects to the heap rather than hundreds of
+ * millions, and garbage collections no longer have to trace it.
+ * <p>
+ * Records are appended to segments of {@code segmentSize} bytes; a record never spans two
+ * segments. Each record has a fixed 20-byte header followed by its variable sections:
+ * <pre>
+ *  0  double height
+ *  8  int    title length in bytes
+ * 12  short  publication year
+ * 14  byte   topic ordinal
+ * 15  byte   author count
+ * 16  short  volume count
+ * 18  short  unused
+ * 20  int[]  author ids in the {@link AuthorDictionary#shared() shared author dictionary}
+ *  .  int[]  page counts
+ *  .  byte[] UTF-8 title
+ * </pre>
+ * The start of every record is kept in an index that is itself off-heap, one long per book
+ * holding the segment number and the position in the segment.
+ * <p>
+ * A store is filled by one thread and may then be read by any number of threads. Direct
+ * buffers are released only when they are garbage collected, and count against
+ * {@code -XX:MaxDirectMemorySize}.
+ */
+public final class OffHeapLibrary {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    static final int HEADER_SIZE = 20;
+    private static final int INDEX_CHUNK = 1 << 20;
+    private static final Topic[] TOPICS = Topic.values();
+    private static final Year[] YEARS = new Year[1 << 16];
+
+    private final int segmentSize;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private final List<ByteBuffer> index = new ArrayList<>();
+    private ByteBuffer current;
+    private int size;
+
+    public OffHeapLibrary() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public OffHeapLibrary(int segmentSize) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("segmentSize must be at least 1024: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    public static OffHeapLibrary of(Collection<Book> library) {
+        OffHeapLibrary store = new OffHeapLibrary();
+        library.forEach(store::add);
+        return store;
+    }
+
+    /**
+     * Appends a book and returns its row.
+     */
+    public int add(Book b) {
+        int[] authorIds = b.getAuthorIds();
+        int[] pageCounts = b.getPageCounts();
+        byte[] title = b.getTitle().getBytes(StandardCharsets.UTF_8);
+        int year = b.getPubDate().getValue();
+        if (authorIds.length > 255 || pageCounts.length > 0xFFFF || year < Short.MIN_VALUE || year > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Book does not fit an off-heap record: " + b);
+        }
+        int length = HEADER_SIZE + 4 * (authorIds.length + pageCounts.length) + title.length;
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes is larger than a segment");
+        }
+        if (current == null || current.remaining() < length) {
+            current = ByteBuffer.allocateDirect(segmentSize);
+            segments.add(current);
+        }
+        int start = current.position();
+        current.putDouble(b.getHeight())
+                .putInt(title.length)
+                .putShort((short) year)
+                .put((byte) b.getTopic().ordinal())
+                .put((byte) authorIds.length)
+                .putShort((short) pageCounts.length)
+                .putShort((short) 0);
+        for (int id : authorIds) {
+            current.putInt(id);
+        }
+        for (int pages : pageCounts) {
+            current.putInt(pages);
+        }
+        current.put(title);
+
+        if (size % INDEX_CHUNK == 0) {
+            index.add(ByteBuffer.allocateDirect(8 * INDEX_CHUNK));
+        }
+        index.get(size / INDEX_CHUNK).putLong(8 * (size % INDEX_CHUNK), (long) (segments.size() - 1) << 32 | start);
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The off-heap bytes used: the filled part of every segment, and the index.
+     */
+    public long offHeapBytes() {
+        long bytes = 8L * INDEX_CHUNK * index.size();
+        for (ByteBuffer segment : segments) {
+            bytes += segment == current ? segment.position() : segment.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * A new cursor positioned on no book; move it with {@link OffHeapCursor#moveTo(int)}.
+     */
+    public OffHeapCursor cursor() {
+        return new OffHeapCursor(this);
+    }
+
+    /**
+     * A heap copy of the book in a row.
+     */
+    public Book book(int row) {
+        return cursor().moveTo(row).toBook();
+    }
+
+    /**
+     * The books, as heap copies.
+     */
+    public Stream<Book> stream() {
+        return cursors().map(OffHeapCursor::toBook);
+    }
+
+    public Stream<Book> parallelStream() {
+        return parallelCursors().map(OffHeapCursor::toBook);
+    }
+
+    /**
+     * The books as one cursor per spliterator, moved from record to record. Nothing is
+     * allocated per book, so this is the stream for aggregations; an operation that keeps
+     * elements must first map them with {@link OffHeapCursor#toBook()}.
+     */
+    public Stream<OffHeapCursor> cursors() {
+        return StreamSupport.stream(new RecordSpliterator(0, size), false);
+    }
+
+    public Stream<OffHeapCursor> parallelCursors() {
+        return StreamSupport.stream(new RecordSpliterator(0, size), true);
+    }
+
+    long record(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Index " + row + " out of bounds for length " + size);
+        }
+        return index.get(row / INDEX_CHUNK).getLong(8 * (row % INDEX_CHUNK));
+    }
+
+    ByteBuffer segment(int number) {
+        return segments.get(number);
+    }
+
+    static Topic topic(int ordinal) {
+        return TOPICS[ordinal];
+    }
+
+    /**
+     * Years are immutable, so a race to fill a slot only creates an equal duplicate.
+     */
+    static Year year(short value) {
+        Year year = YEARS[value & 0xFFFF];
+        if (year == null) {
+            year = Year.of(value);
+            YEARS[value & 0xFFFF] = year;
+        }
+        return year;
+    }
+
+    /**
+     * Splits by halving its range of rows; every spliterator moves its own cursor.
+     */
+    private final class RecordSpliterator implements Spliterator<OffHeapCursor> {
+        private int from;
+        private final int to;
+        private OffHeapCursor cursor;
+
+        RecordSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super OffHeapCursor> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(cursor().moveTo(from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super OffHeapCursor> action) {
+            OffHeapCursor book = cursor();
+            for (; from < to; from++) {
+                action.accept(book.moveTo(from));
+            }
+        }
+
+        private OffHeapCursor cursor() {
+            if (cursor == null) {
+                cursor = new OffHeapCursor(OffHeapLibrary.this);
+            }
+            return cursor;
+        }
+
+        @Override
+        public Spliterator<OffHeapCursor> trySplit() {
+            int mid = (from + to) >>> 1;
+            if (mid - from < 1024) {
+                return null;
+            }
+            RecordSpliterator prefix = new RecordSpliterator(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
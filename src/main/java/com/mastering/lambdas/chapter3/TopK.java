@@ -0,0 +1,110 @@
+package com.mastering.lambdas.chapter3;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collector;
+
+/**
+ * Collectors for the first k elements of a stream in some order, equivalent to
+ * {@code sorted(comparator).limit(k)} but without sorting the whole stream: each container
+ * keeps only its k best elements in a bounded heap, so collecting n elements costs
+ * O(n log k) time and O(k) space per container.
+ * <p>
+ * Like {@code sorted}, the result is stable: elements that compare equal keep their encounter
+ * order. Every container numbers the elements it sees, and the combiner renumbers the right
+ * container's elements to follow the left's, so the collector may be used on parallel streams.
+ */
+public final class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * The k smallest elements, in ascending order:
+     */
+    public static <T> Collector<T, ?, List<T>> smallest(int k, Comparator<? super T> comparator) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        return Collector.of(() -> new Heap<T>(k, comparator),
+                Heap::offer,
+                Heap::merge,
+                Heap::toSortedList);
+    }
+
+    /**
+     * The k largest elements, in descending order:
+     */
+    public static <T> Collector<T, ?, List<T>> largest(int k, Comparator<? super T> comparator) {
+        return smallest(k, comparator.reversed());
+    }
+
+    private static final class Ranked<T> {
+        final T value;
+        final long seq;
+
+        Ranked(T value, long seq) {
+            this.value = value;
+            this.seq = seq;
+        }
+    }
+
+    private static final class Heap<T> {
+        private final int k;
+        private final Comparator<? super T> comparator;
+        private final Comparator<Ranked<T>> order;
+        // the worst retained element is at the head, ready to be evicted
+        private final PriorityQueue<Ranked<T>> heap;
+        private long seen;
+
+        Heap(int k, Comparator<? super T> comparator) {
+            this.k = k;
+            this.comparator = comparator;
+            this.order = Comparator.<Ranked<T>, T>comparing(r -> r.value, comparator)
+                    .thenComparingLong(r -> r.seq);
+            this.heap = new PriorityQueue<>(Math.max(1, Math.min(k, 1024)), order.reversed());
+        }
+
+        void offer(T value) {
+            offer(value, seen++);
+        }
+
+        /**
+         * An offered element always carries a larger seq than every retained element equal to
+         * it, so it loses a tie with the worst retained element: only a strictly smaller value
+         * displaces it.
+         */
+        private void offer(T value, long seq) {
+            if (heap.size() < k) {
+                heap.add(new Ranked<>(value, seq));
+            } else if (k > 0 && comparator.compare(value, heap.peek().value) < 0) {
+                heap.poll();
+                heap.add(new Ranked<>(value, seq));
+            }
+        }
+
+        /**
+         * The right container's elements are offered in order, after every element the left
+         * container has seen, which keeps the invariant of {@link #offer(Object, long)}.
+         */
+        Heap<T> merge(Heap<T> right) {
+            List<Ranked<T>> ranked = new ArrayList<>(right.heap);
+            ranked.sort(order);
+            for (Ranked<T> r : ranked) {
+                offer(r.value, r.seq + seen);
+            }
+            seen += right.seen;
+            return this;
+        }
+
+        List<T> toSortedList() {
+            List<Ranked<T>> ranked = new ArrayList<>(heap);
+            ranked.sort(order);
+            List<T> result = new ArrayList<>(ranked.size());
+            ranked.forEach(r -> result.add(r.value));
+            return result;
+        }
+    }
+}
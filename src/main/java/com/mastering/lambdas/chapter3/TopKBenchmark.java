@@ -0,0 +1,72 @@
+package com.mastering.lambdas.chapter3;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * First page and a deep page of the library in title order: full sort against the bounded-heap
+ * collector and the keyset cursor over the title index.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class TopKBenchmark {
+
+    @Param({"1000000"})
+    public int N;
+
+    @Param({"100"})
+    public int K;
+
+    private List<Book> library;
+    private LibraryIndex index;
+    private LibraryIndex.TitleCursor middle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryGenerator.generate(N);
+        index = new LibraryIndex(library);
+        LibraryIndex.TitlePage page = index.titlePage(LibraryIndex.TitleCursor.START, N / 2);
+        middle = page.getNext().orElseThrow();
+    }
+
+    @Benchmark
+    public List<Book> firstPageSorted() {
+        return library.stream()
+                .sorted(Comparator.comparing(Book::getTitle))
+                .limit(K)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Book> firstPageTopK() {
+        return library.stream()
+                .collect(TopK.smallest(K, Comparator.comparing(Book::getTitle)));
+    }
+
+    @Benchmark
+    public List<Book> firstPageTopKParallel() {
+        return library.parallelStream()
+                .collect(TopK.smallest(K, Comparator.comparing(Book::getTitle)));
+    }
+
+    @Benchmark
+    public List<Book> middlePageSorted() {
+        return library.stream()
+                .sorted(Comparator.comparing(Book::getTitle))
+                .skip(N / 2)
+                .limit(K)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Book> middlePageCursor() {
+        return index.titlePage(middle, K).getBooks();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,97 @@
+package com.mastering.lambdas.chapter4;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Approximate frequencies in a {@code depth x width} table of counters (Cormode and
+ * Muthukrishnan). Every item adds to one counter in each row, chosen by a hash of its own per
+ * row, and its frequency is estimated by the smallest of its counters. The estimate is never
+ * below the true count, and with probability at least {@code 1 - e^-depth} exceeds it by at
+ * most {@code e / width} of the total: {@code 2^11} by 5 longs, 80 KB, keep the excess under
+ * 0.14% of the total with 99% confidence. Sketches of the same shape merge by adding tables.
+ */
+public final class CountMinSketch implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final int width;
+    private final int depth;
+    private final long[][] counters;
+    private long total;
+
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("width and depth must be positive: " + width + " x " + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[depth][width];
+    }
+
+    public void add(Object item) {
+        add(item, 1);
+    }
+
+    public void add(Object item, long times) {
+        long hash = HyperLogLog.hash(item);
+        for (int row = 0; row < depth; row++) {
+            counters[row][column(hash, row)] += times;
+        }
+        total += times;
+    }
+
+    public long estimate(Object item) {
+        long hash = HyperLogLog.hash(item);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row][column(hash, row)]);
+        }
+        return estimate;
+    }
+
+    public CountMinSketch merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge a " + other.depth + " x " + other.width
+                    + " sketch into a " + depth + " x " + width + " one");
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int column = 0; column < width; column++) {
+                counters[row][column] += other.counters[row][column];
+            }
+        }
+        total += other.total;
+        return this;
+    }
+
+    public long total() {
+        return total;
+    }
+
+    /**
+     * The excess over the true count that the estimates stay within, with probability
+     * {@code 1 - e^-depth}.
+     */
+    public double errorBound() {
+        return Math.E / width * total;
+    }
+
+    public int sizeInBytes() {
+        return 8 * width * depth;
+    }
+
+    @Override
+    public String toString() {
+        return "CountMinSketch{" + depth + " x " + width + ", total=" + total + '}';
+    }
+
+    /**
+     * Row {@code row} hashes with its own odd multiplier, the same in every sketch so that
+     * sketches can be merged.
+     */
+    private int column(long hash, int row) {
+        long h = HyperLogLog.mix(hash + (row + 1) * 0x9E3779B97F4A7C15L);
+        return (int) Math.floorMod(h, (long) width);
+    }
+}
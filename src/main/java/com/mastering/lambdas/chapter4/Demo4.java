@@ -2,7 +2,9 @@ package com.mastering.lambdas.chapter4;
 
 import com.mastering.lambdas.chapter1.Point;
 import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.Catalog;
 import com.mastering.lambdas.chapter3.Demo3;
+import com.mastering.lambdas.chapter3.LatestEditionView;
 import com.mastering.lambdas.chapter3.LibraryInit;
 import com.mastering.lambdas.chapter3.Topic;
 import lombok.Getter;
@@ -12,6 +14,7 @@ import java.math.BigInteger;
 import java.time.Year;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
@@ -59,10 +62,9 @@ public class Demo4 {
      */
     private Map<String, Year> titleToPubDate() {
         Map<String, Year> titleToPubDate = library.stream()
-                .collect(Collectors.toMap(Book::getTitle,
+                .collect(SortedArrayMap.toSortedArrayMap(Book::getTitle,
                         Book::getPubDate,
-                        BinaryOperator.maxBy(Comparator.naturalOrder()),
-                        TreeMap::new));
+                        BinaryOperator.maxBy(Comparator.naturalOrder())));
         return titleToPubDate;
     }
 
@@ -91,8 +93,8 @@ public class Demo4 {
      */
     private Map<Topic, Integer> volumeCountByTopic() {
         Map<Topic, Integer> volumeCountByTopic = library.stream()
-                .collect(groupingBy(Book::getTopic,
-                        Collectors.summingInt(b -> b.getPageCounts().length)));
+                .collect(EnumCollectors.summingIntBy(Topic.class, Book::getTopic,
+                        b -> b.getPageCounts().length));
         return volumeCountByTopic;
     }
 
@@ -101,7 +103,7 @@ public class Demo4 {
      */
     private Optional<Topic> mostPopularTopic() {
         Optional<Topic> mostPopularTopic = library.stream()
-                .collect(groupingBy(Book::getTopic, Collectors.counting()))
+                .collect(EnumCollectors.countingBy(Topic.class, Book::getTopic))
                 .entrySet().stream()
                 .max(Map.Entry.comparingByValue())
                 .map(Map.Entry::getKey);
@@ -165,6 +167,20 @@ public class Demo4 {
 
         System.out.println();
 
+        System.out.println("The same aggregates maintained incrementally as the catalog changes:");
+        Catalog catalog = new Catalog(library);
+        TopicAggregateView topicView = new TopicAggregateView();
+        LatestEditionView latestEditions = new LatestEditionView();
+        catalog.subscribe(topicView);
+        catalog.subscribe(latestEditions);
+        catalog.add(new Book("Voss", List.of("Patrick White"), new int[]{448}, Topic.FICTION, Year.of(1994), 19.8));
+        System.out.println(topicView.volumeCountByTopic());
+        topicView.mostPopularTopic().ifPresent(t -> System.out.println("Most popular topic: " + t));
+        System.out.println(topicView.concatenatedTitlesByTopic());
+        System.out.println(latestEditions.titleToPubDateLatest());
+
+        System.out.println();
+
         String concatenatedTitles = library.stream()
                 .map(Book::getTitle)
                 .collect(Collectors.joining("::"));
@@ -188,6 +204,12 @@ public class Demo4 {
                         TreeMap::new));
         System.out.println(titleToPubDate);
 
+        // the same in two sorted arrays, built by one sort instead of a tree insert per book
+        NavigableMap<String, Year> titleToPubDateArrays = library.stream()
+                .collect(SortedArrayMap.toSortedArrayMap(Book::getTitle, Book::getPubDate,
+                        (x, y) -> x.isAfter(y) ? x : y));
+        System.out.println(titleToPubDateArrays.headMap("M", false));
+
         System.out.println();
 
         NavigableSet<String> sortedTitles = library.stream()
@@ -202,6 +224,13 @@ public class Demo4 {
                 .collect(Collectors.toCollection(LinkedBlockingQueue::new));
         System.out.println(queueInPubDateOrder);
 
+        //collecting into the queue first holds the whole library before any worker starts;
+        //a QueueSink hands each book to the worker as soon as it is sorted, at most 2 ahead
+        CompletableFuture<Long> shelved = QueueSink.consumeOrdered(
+                library.stream().sorted(Comparator.comparing(Book::getPubDate)), 2, 1,
+                book -> System.out.println("Shelving " + book.getTitle() + " (" + book.getPubDate() + ")"));
+        System.out.println("Shelved " + shelved.join() + " books");
+
         System.out.println();
 
         Map<Topic, List<Book>> booksByTopic = library.stream()
@@ -233,27 +262,37 @@ public class Demo4 {
         System.out.println();
 
         Map<Topic, Integer> volumeCountByTopic = library.stream()
-                .collect(groupingBy(Book::getTopic,
-                        Collectors.summingInt(b -> b.getPageCounts().length)));
+                .collect(EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                        IntCollector.summing().from(b -> b.getPageCounts().length)));
         System.out.println(volumeCountByTopic);
 
         System.out.println();
 
         Map<Topic, Double> averageHeightByTopic = library.stream()
-                .collect(groupingBy(Book::getTopic,
-                        Collectors.averagingDouble(Book::getHeight)));
+                .collect(EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                        DoubleCollector.averaging().from(Book::getHeight)));
         System.out.println(averageHeightByTopic);
 
         System.out.println();
 
         Map<Topic, IntSummaryStatistics> volumeStats = library.stream()
-                .collect(groupingBy(Book::getTopic,
-                        Collectors.summarizingInt(b -> b.getPageCounts().length)));
+                .collect(EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                        IntCollector.summarizing().from(b -> b.getPageCounts().length)));
         System.out.println(volumeStats);
         System.out.println(volumeStats.get(Topic.COMPUTING));
 
         System.out.println();
 
+        // the same aggregations into arrays indexed by topic ordinal, without boxing
+        System.out.println(library.parallelStream()
+                .collect(EnumCollectors.countingBy(Topic.class, Book::getTopic)));
+        System.out.println(library.parallelStream()
+                .collect(EnumCollectors.averagingDoubleBy(Topic.class, Book::getTopic, Book::getHeight)));
+        System.out.println(library.parallelStream()
+                .collect(EnumCollectors.summarizingIntBy(Topic.class, Book::getTopic, b -> b.getPageCounts().length)));
+
+        System.out.println();
+
         Map<Topic, String> concatenatedTitlesByTopic = library.stream()
                 .collect(groupingBy(Book::getTopic,
                         Collectors.mapping(Book::getTitle, Collectors.joining(";"))));
@@ -261,6 +300,32 @@ public class Demo4 {
 
         System.out.println();
 
+        // the six aggregations above, in a single parallel pass
+        Report.Builder<Book> builder = Report.builder();
+        Report.Key<Map<Topic, Long>> distributionKey = builder.add("distributionByTopic",
+                EnumCollectors.countingBy(Topic.class, Book::getTopic));
+        Report.Key<Map<Topic, Optional<Book>>> mostAuthorsKey = builder.add("mostAuthorsByTopic",
+                EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                        Collectors.maxBy(Comparator.comparing(b -> b.getAuthors().size()))));
+        Report.Key<Map<Topic, Integer>> volumeCountKey = builder.add("volumeCountByTopic",
+                EnumCollectors.summingIntBy(Topic.class, Book::getTopic, b -> b.getPageCounts().length));
+        Report.Key<Map<Topic, Double>> averageHeightKey = builder.add("averageHeightByTopic",
+                EnumCollectors.averagingDoubleBy(Topic.class, Book::getTopic, Book::getHeight));
+        Report.Key<Map<Topic, IntSummaryStatistics>> volumeStatsKey = builder.add("volumeStats",
+                EnumCollectors.summarizingIntBy(Topic.class, Book::getTopic, b -> b.getPageCounts().length));
+        Report.Key<Map<Topic, String>> titlesKey = builder.add("concatenatedTitlesByTopic",
+                EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                        Collectors.mapping(Book::getTitle, Collectors.joining(";"))));
+        Report report = library.parallelStream().collect(builder.build());
+        System.out.println(report.get(distributionKey));
+        report.get(mostAuthorsKey).forEach((k, v) -> System.out.println(k + " : " + v));
+        System.out.println(report.get(volumeCountKey));
+        System.out.println(report.get(averageHeightKey));
+        System.out.println(report.get(volumeStatsKey).get(Topic.COMPUTING));
+        System.out.println(report.get(titlesKey));
+
+        System.out.println();
+
         Map<Topic, Long> bookCountByTopic = library.stream()
                 .collect(groupingBy(Book::getTopic, Collectors.counting()));
         System.out.println(bookCountByTopic);
@@ -286,18 +351,35 @@ public class Demo4 {
 
         System.out.println();
 
-        Optional<Set<Topic>> mostPopularTopics = library.stream()
-                .collect(groupingBy(Book::getTopic, Collectors.counting()))
-                .entrySet().stream()
-                .collect(groupingBy(Map.Entry::getValue,
-                        Collectors.mapping(Map.Entry::getKey, Collectors.toSet())))
-                .entrySet().stream()
-                .max(Map.Entry.comparingByKey())
-                .map(Map.Entry::getValue);
+        Set<Topic> mostPopularTopics = library.stream()
+                .collect(HeavyHitters.mostFrequent(Book::getTopic));
         System.out.println(mostPopularTopics);
 
         System.out.println();
 
+        // authors are too many to count exactly in general: 16 counters bound the error
+        HeavyHitters.Summary<String> prolificAuthors = library.parallelStream()
+                .flatMap(b -> b.getAuthors().stream())
+                .collect(HeavyHitters.summarizing(16));
+        System.out.println(prolificAuthors.top(3) + " within " + prolificAuthors.maxError());
+
+        System.out.println();
+
+        // dashboard figures from sketches in fixed memory, rather than from full sets
+        HyperLogLog distinctAuthors = library.parallelStream()
+                .flatMap(b -> b.getAuthors().stream())
+                .collect(Sketches.distinctCount(12));
+        QuantileSketch pageCounts = Sketches.intQuantiles().collect(library.parallelStream()
+                .flatMapToInt(b -> IntStream.of(b.getPageCounts())));
+        CountMinSketch titleFrequencies = library.parallelStream()
+                .map(Book::getTitle)
+                .collect(Sketches.frequencies(1 << 11, 5));
+        System.out.println("About " + distinctAuthors.estimate() + " authors; median volume "
+                + pageCounts.quantile(0.5) + " pages, p99 " + pageCounts.quantile(0.99)
+                + "; \"Voss\" at most " + titleFrequencies.estimate("Voss") + " times");
+
+        System.out.println();
+
         List<String> titles = library.stream()
                 .map(Book::getTitle)
                 .sorted(Comparator.naturalOrder())
@@ -380,6 +462,16 @@ public class Demo4 {
             new Point(2, 3), new Point(3, 4));
     Deque<Deque<Point>> displacementRecords = sortedPointList.stream()
             .collect(Collector.of(supplier, accumulator, combiner));
+
+    /**
+     * groupByProximity by the reusable segmenting collector, safe in parallel. The distance is
+     * measured between the points' coordinates, as {@code Point.distance} moves the point.
+     */
+    static SegmentCollectors.Segments<Point> segmentByProximity(List<Point> sortedPointList) {
+        return sortedPointList.parallelStream()
+                .collect(SegmentCollectors.segmentBy(
+                        (p, q) -> Math.hypot(q.getX() - p.getX(), q.getY() - p.getY()) > 10));
+    }
 }
 
 class DispRecord {
@@ -423,22 +515,38 @@ class DispRecord {
                         Arrays.stream(b.getPageCounts()).sum()));
             };
 
+    /**
+     * The records of the right-hand deque belong to it alone, so they are shifted in place
+     * rather than copied.
+     */
     BinaryOperator<Deque<DispRecord>> combiner =
             (left, right) -> {
                 if (left.isEmpty()) return right;
                 int newDisp = left.getLast().totalDisp();
-                List<DispRecord> displacedRecords = right.stream()
-                        .map(dr -> new DispRecord(
-                                dr.title, dr.disp + newDisp, dr.length))
-                        .collect(Collectors.toList());
-                left.addAll(displacedRecords);
+                for (DispRecord dr : right) {
+                    dr.disp += newDisp;
+                }
+                left.addAll(right);
                 return left;
             };
 
 
     Function<Deque<DispRecord>, Map<String, Integer>> finisher =
-            ddr -> ddr.parallelStream().collect(
-                    Collectors.toConcurrentMap(dr -> dr.title, dr -> dr.disp));
+            ddr -> ddr.stream().collect(
+                    Collectors.toMap(dr -> dr.title, dr -> dr.disp));
+
+    /**
+     * The displacement of every book in the library, computed without any records: the page
+     * totals are gathered in parallel and then exclusively scanned with {@code +}. Longs, since
+     * a large library has more pages than an int can count.
+     */
+    static long[] displacements(List<Book> library) {
+        long[] disps = library.parallelStream()
+                .mapToLong(b -> IntStream.of(b.getPageCounts()).sum())
+                .toArray();
+        PrefixScan.exclusive(disps, 0L, Long::sum);
+        return disps;
+    }
 
 
     private void initializeDispRecord() {
@@ -454,6 +562,10 @@ class DispRecord {
         DispRecord dispRecord = new DispRecord();
         List<Book> library = dispRecord.library;
 
+        System.out.println("Displacements by prefix scan: " + Arrays.toString(displacements(library)));
+        System.out.println("Points segmented by proximity: " + Demo4.segmentByProximity(List.of(
+                new Point(1, 2), new Point(2, 3), new Point(30, 4), new Point(35, 9), new Point(80, 0))));
+
         int sumResult = IntStream.of(1, 2, 3)
                 .sum();
 
@@ -523,8 +635,8 @@ class DispRecord {
         System.out.println();
 
         Map<Topic, Integer> volumesByTopic = library.stream()
-                .collect(groupingBy(Book::getTopic,
-                        Collectors.reducing(0, b -> b.getPageCounts().length, Integer::sum)));
+                .collect(EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                        IntCollector.reducing(0, Integer::sum).from(b -> b.getPageCounts().length)));
         System.out.println("Volumes by Topic: " + volumesByTopic);
 
         System.out.println();
@@ -0,0 +1,99 @@
+package com.mastering.lambdas.chapter4;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+
+/**
+ * The double counterpart of {@link IntCollector}. Sums are plain, without the compensation
+ * for rounding that {@code Collectors.summingDouble} applies, so their last bits may differ.
+ */
+public interface DoubleCollector<A, R> {
+
+    Supplier<A> supplier();
+
+    ObjDoubleConsumer<A> accumulator();
+
+    BiConsumer<A, A> combiner();
+
+    Function<A, R> finisher();
+
+    default <T> Collector<T, A, R> from(ToDoubleFunction<? super T> mapper) {
+        ObjDoubleConsumer<A> accumulator = accumulator();
+        BiConsumer<A, A> combiner = combiner();
+        return Collector.of(supplier(),
+                (a, t) -> accumulator.accept(a, mapper.applyAsDouble(t)),
+                (left, right) -> {
+                    combiner.accept(left, right);
+                    return left;
+                },
+                finisher());
+    }
+
+    default R collect(DoubleStream values) {
+        return finisher().apply(values.collect(supplier(), accumulator(), combiner()));
+    }
+
+    static <A, R> DoubleCollector<A, R> of(Supplier<A> supplier, ObjDoubleConsumer<A> accumulator,
+                                           BiConsumer<A, A> combiner, Function<A, R> finisher) {
+        return new DoubleCollector<>() {
+            @Override
+            public Supplier<A> supplier() {
+                return supplier;
+            }
+
+            @Override
+            public ObjDoubleConsumer<A> accumulator() {
+                return accumulator;
+            }
+
+            @Override
+            public BiConsumer<A, A> combiner() {
+                return combiner;
+            }
+
+            @Override
+            public Function<A, R> finisher() {
+                return finisher;
+            }
+        };
+    }
+
+    static DoubleCollector<double[], Double> summing() {
+        return of(() -> new double[1], (a, v) -> a[0] += v, (a, b) -> a[0] += b[0], a -> a[0]);
+    }
+
+    /**
+     * {@code a[0]} is the sum and {@code a[1]} the count.
+     */
+    static DoubleCollector<double[], Double> averaging() {
+        return of(() -> new double[2],
+                (a, v) -> {
+                    a[0] += v;
+                    a[1]++;
+                },
+                (a, b) -> {
+                    a[0] += b[0];
+                    a[1] += b[1];
+                },
+                a -> a[1] == 0 ? 0.0 : a[0] / a[1]);
+    }
+
+    static DoubleCollector<DoubleSummaryStatistics, DoubleSummaryStatistics> summarizing() {
+        return of(DoubleSummaryStatistics::new, DoubleSummaryStatistics::accept, DoubleSummaryStatistics::combine,
+                Function.identity());
+    }
+
+    static DoubleCollector<double[], Double> reducing(double identity, DoubleBinaryOperator op) {
+        return of(() -> new double[]{identity},
+                (a, v) -> a[0] = op.applyAsDouble(a[0], v),
+                (a, b) -> a[0] = op.applyAsDouble(a[0], b[0]),
+                a -> a[0]);
+    }
+}
@@ -0,0 +1,201 @@
+package com.mastering.lambdas.chapter4;
+
+import java.util.EnumMap;
+import java.util.IntSummaryStatistics;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * {@code groupingBy} for enum keys with primitive results: counting, summing, averaging and
+ * summarizing by, say, {@code Book::getTopic}.
+ * <p>
+ * Rather than a HashMap of boxed running totals, the state is a few arrays indexed by the
+ * ordinal of the key, so accumulating an element is an array update, and the combiner adds
+ * the arrays of two chunks element by element. The finisher builds an EnumMap holding, as
+ * {@code groupingBy} does, only the keys that some element was classified under.
+ */
+public final class EnumCollectors {
+
+    private EnumCollectors() {
+    }
+
+    public static <T, E extends Enum<E>> Collector<T, ?, Map<E, Long>> countingBy(
+            Class<E> type, Function<? super T, E> classifier) {
+        int keys = type.getEnumConstants().length;
+        return Collector.of(
+                () -> new Totals(keys, false, false),
+                (totals, t) -> totals.counts[ordinal(classifier, t)]++,
+                Totals::merge,
+                totals -> totals.toMap(type, key -> totals.counts[key]));
+    }
+
+    /**
+     * Sums in int arithmetic, overflowing as {@code Collectors.summingInt} does.
+     */
+    public static <T, E extends Enum<E>> Collector<T, ?, Map<E, Integer>> summingIntBy(
+            Class<E> type, Function<? super T, E> classifier, ToIntFunction<? super T> mapper) {
+        int keys = type.getEnumConstants().length;
+        return Collector.of(
+                () -> new Totals(keys, true, false),
+                (totals, t) -> {
+                    int key = ordinal(classifier, t);
+                    totals.counts[key]++;
+                    totals.sums[key] += mapper.applyAsInt(t);
+                },
+                Totals::merge,
+                totals -> totals.toMap(type, key -> (int) totals.sums[key]));
+    }
+
+    public static <T, E extends Enum<E>> Collector<T, ?, Map<E, Long>> summingLongBy(
+            Class<E> type, Function<? super T, E> classifier, ToLongFunction<? super T> mapper) {
+        int keys = type.getEnumConstants().length;
+        return Collector.of(
+                () -> new Totals(keys, true, false),
+                (totals, t) -> {
+                    int key = ordinal(classifier, t);
+                    totals.counts[key]++;
+                    totals.sums[key] += mapper.applyAsLong(t);
+                },
+                Totals::merge,
+                totals -> totals.toMap(type, key -> totals.sums[key]));
+    }
+
+    public static <T, E extends Enum<E>> Collector<T, ?, Map<E, Double>> summingDoubleBy(
+            Class<E> type, Function<? super T, E> classifier, ToDoubleFunction<? super T> mapper) {
+        int keys = type.getEnumConstants().length;
+        return Collector.of(
+                () -> new Totals(keys, false, true),
+                (totals, t) -> {
+                    int key = ordinal(classifier, t);
+                    totals.counts[key]++;
+                    totals.doubles[key] += mapper.applyAsDouble(t);
+                },
+                Totals::merge,
+                totals -> totals.toMap(type, key -> totals.doubles[key]));
+    }
+
+    /**
+     * Averages by a plain sum, so the last bits may differ from {@code Collectors.averagingDouble},
+     * which compensates for rounding.
+     */
+    public static <T, E extends Enum<E>> Collector<T, ?, Map<E, Double>> averagingDoubleBy(
+            Class<E> type, Function<? super T, E> classifier, ToDoubleFunction<? super T> mapper) {
+        int keys = type.getEnumConstants().length;
+        return Collector.of(
+                () -> new Totals(keys, false, true),
+                (totals, t) -> {
+                    int key = ordinal(classifier, t);
+                    totals.counts[key]++;
+                    totals.doubles[key] += mapper.applyAsDouble(t);
+                },
+                Totals::merge,
+                totals -> totals.toMap(type, key -> totals.doubles[key] / totals.counts[key]));
+    }
+
+    public static <T, E extends Enum<E>> Collector<T, ?, Map<E, IntSummaryStatistics>> summarizingIntBy(
+            Class<E> type, Function<? super T, E> classifier, ToIntFunction<? super T> mapper) {
+        return groupingBy(type, classifier, Collectors.summarizingInt(mapper));
+    }
+
+    /**
+     * {@code groupingBy} with a container of {@code downstream} per key, held in an array by
+     * ordinal, so that classifying an element looks nothing up and allocates nothing; with a
+     * primitive downstream such as {@link IntCollector#from}, nothing at all is allocated per
+     * element.
+     */
+    public static <T, E extends Enum<E>, A, D> Collector<T, ?, Map<E, D>> groupingBy(
+            Class<E> type, Function<? super T, E> classifier, Collector<? super T, A, D> downstream) {
+        int keys = type.getEnumConstants().length;
+        Supplier<A> supplier = downstream.supplier();
+        BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+        BinaryOperator<A> combiner = downstream.combiner();
+        Function<A, D> finisher = downstream.finisher();
+        return Collector.<T, Object[], Map<E, D>>of(
+                () -> new Object[keys],
+                (containers, t) -> {
+                    int key = ordinal(classifier, t);
+                    if (containers[key] == null) {
+                        containers[key] = supplier.get();
+                    }
+                    accumulator.accept(EnumCollectors.<A>container(containers, key), t);
+                },
+                (left, right) -> {
+                    for (int key = 0; key < keys; key++) {
+                        if (left[key] == null) {
+                            left[key] = right[key];
+                        } else if (right[key] != null) {
+                            left[key] = combiner.apply(container(left, key), container(right, key));
+                        }
+                    }
+                    return left;
+                },
+                containers -> {
+                    Map<E, D> map = new EnumMap<>(type);
+                    E[] constants = type.getEnumConstants();
+                    for (int key = 0; key < keys; key++) {
+                        if (containers[key] != null) {
+                            map.put(constants[key], finisher.apply(container(containers, key)));
+                        }
+                    }
+                    return map;
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A> A container(Object[] containers, int key) {
+        return (A) containers[key];
+    }
+
+    private static <T, E extends Enum<E>> int ordinal(Function<? super T, E> classifier, T t) {
+        return Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key").ordinal();
+    }
+
+    /**
+     * Per-key counts, which say which keys occur, and long or double sums.
+     */
+    private static final class Totals {
+        final long[] counts;
+        final long[] sums;
+        final double[] doubles;
+
+        Totals(int keys, boolean longSums, boolean doubleSums) {
+            counts = new long[keys];
+            sums = longSums ? new long[keys] : null;
+            doubles = doubleSums ? new double[keys] : null;
+        }
+
+        Totals merge(Totals other) {
+            for (int key = 0; key < counts.length; key++) {
+                counts[key] += other.counts[key];
+                if (sums != null) {
+                    sums[key] += other.sums[key];
+                }
+                if (doubles != null) {
+                    doubles[key] += other.doubles[key];
+                }
+            }
+            return this;
+        }
+
+        <E extends Enum<E>, R> Map<E, R> toMap(Class<E> type, IntFunction<R> value) {
+            Map<E, R> map = new EnumMap<>(type);
+            E[] constants = type.getEnumConstants();
+            for (int key = 0; key < counts.length; key++) {
+                if (counts[key] > 0) {
+                    map.put(constants[key], value.apply(key));
+                }
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import com.mastering.lambdas.chapter3.Topic;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * Demo4's topic aggregations by {@code groupingBy} with boxing downstream collectors, against
+ * the ordinal-indexed EnumCollectors, sequentially and in parallel.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class EnumCollectorsBenchmark {
+
+    @Param({"10000000"})
+    public int N;
+
+    private List<Book> library;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryGenerator.generate(N);
+    }
+
+    @Benchmark
+    public Map<Topic, Long> groupingByCounting() {
+        return library.stream().collect(groupingBy(Book::getTopic, Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<Topic, Long> countingBy() {
+        return library.stream().collect(EnumCollectors.countingBy(Topic.class, Book::getTopic));
+    }
+
+    @Benchmark
+    public Map<Topic, Long> groupingByCountingParallel() {
+        return library.parallelStream().collect(groupingBy(Book::getTopic, Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<Topic, Long> countingByParallel() {
+        return library.parallelStream().collect(EnumCollectors.countingBy(Topic.class, Book::getTopic));
+    }
+
+    @Benchmark
+    public Map<Topic, Integer> groupingBySummingInt() {
+        return library.stream().collect(groupingBy(Book::getTopic,
+                Collectors.summingInt(b -> b.getPageCounts().length)));
+    }
+
+    @Benchmark
+    public Map<Topic, Integer> summingIntBy() {
+        return library.stream().collect(EnumCollectors.summingIntBy(Topic.class, Book::getTopic,
+                b -> b.getPageCounts().length));
+    }
+
+    @Benchmark
+    public Map<Topic, Double> groupingByAveragingDouble() {
+        return library.stream().collect(groupingBy(Book::getTopic, Collectors.averagingDouble(Book::getHeight)));
+    }
+
+    @Benchmark
+    public Map<Topic, Double> averagingDoubleBy() {
+        return library.stream().collect(EnumCollectors.averagingDoubleBy(Topic.class, Book::getTopic, Book::getHeight));
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
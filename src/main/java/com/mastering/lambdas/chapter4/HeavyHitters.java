@@ -0,0 +1,210 @@
+package com.mastering.lambdas.chapter4;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Collectors for the most frequent elements of a stream.
+ * <p>
+ * {@link #mostFrequent(Function)} is exact: it counts every key and returns all the keys
+ * sharing the highest count, so it suits small key spaces such as topics.
+ * <p>
+ * For key spaces too large to count, such as authors or words, {@link #summarizing(int)}
+ * keeps at most {@code counters} counters, by the Misra-Gries algorithm (the counter-based
+ * cousin of Space-Saving), merged as in Agarwal et al., <i>Mergeable Summaries</i>, so that
+ * parallel chunks may be combined without weakening the bound. For a stream of {@code n}
+ * elements in which an item occurs {@code f} times, its counter {@code c} (0 if it has none)
+ * satisfies
+ * <pre>
+ *     c &lt;= f &lt;= c + maxError,   maxError = (n - sum of all counters) / (counters + 1) &lt;= n / (counters + 1)
+ * </pre>
+ * so every item occurring more than {@code n / (counters + 1)} times keeps a counter.
+ */
+public final class HeavyHitters {
+
+    private HeavyHitters() {
+    }
+
+    /**
+     * The keys with the highest count, several if tied, or none for an empty stream.
+     */
+    public static <T, K> Collector<T, ?, Set<K>> mostFrequent(Function<? super T, ? extends K> classifier) {
+        return Collector.<T, Map<K, long[]>, Set<K>>of(
+                HashMap::new,
+                (counts, t) -> counts.computeIfAbsent(
+                        Objects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key"),
+                        k -> new long[1])[0]++,
+                (left, right) -> {
+                    right.forEach((k, count) -> left.merge(k, count, (a, b) -> {
+                        a[0] += b[0];
+                        return a;
+                    }));
+                    return left;
+                },
+                counts -> {
+                    long max = counts.values().stream().mapToLong(c -> c[0]).max().orElse(0);
+                    Set<K> modes = new HashSet<>();
+                    counts.forEach((k, count) -> {
+                        if (count[0] == max) {
+                            modes.add(k);
+                        }
+                    });
+                    return modes;
+                },
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * A summary of the most frequent elements in at most {@code counters} counters.
+     */
+    public static <T> Collector<T, ?, Summary<T>> summarizing(int counters) {
+        if (counters < 1) {
+            throw new IllegalArgumentException("counters must be positive: " + counters);
+        }
+        return Collector.of(() -> new Summary<T>(counters),
+                Summary::offer,
+                Summary::merge,
+                Collector.Characteristics.IDENTITY_FINISH, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * The {@code k} items with the highest counters, highest first, from a summary of
+     * {@code counters} counters; a few times {@code k} counters make the order reliable.
+     */
+    public static <T> Collector<T, ?, List<Estimate<T>>> top(int k, int counters) {
+        if (k < 1 || counters < 1) {
+            throw new IllegalArgumentException("k and counters must be positive: " + k + ", " + counters);
+        }
+        return Collector.of(() -> new Summary<T>(counters),
+                Summary::offer,
+                Summary::merge,
+                summary -> summary.top(k),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * The bounds on the number of times an item occurred.
+     */
+    public record Estimate<T>(T item, long lowerBound, long upperBound) {
+    }
+
+    public static final class Summary<T> {
+        private final int capacity;
+        private final Map<T, long[]> counters = new HashMap<>();
+        private long total;
+        private long counted;
+
+        private Summary(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void offer(T item) {
+            total++;
+            long[] counter = counters.get(item);
+            if (counter != null) {
+                counter[0]++;
+                counted++;
+            } else if (counters.size() < capacity) {
+                counters.put(item, new long[]{1});
+                counted++;
+            } else {
+                // the item and one occurrence of every counted item are discarded together
+                counted -= counters.size();
+                for (Iterator<long[]> it = counters.values().iterator(); it.hasNext(); ) {
+                    if (--it.next()[0] == 0) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the counters, then, if more than {@code capacity} remain, subtracts the next
+         * largest from all of them, dropping those left at zero or below.
+         */
+        Summary<T> merge(Summary<T> other) {
+            other.counters.forEach((item, count) -> counters.merge(item, count, (a, b) -> {
+                a[0] += b[0];
+                return a;
+            }));
+            total += other.total;
+            counted += other.counted;
+            if (counters.size() > capacity) {
+                long[] counts = counters.values().stream().mapToLong(c -> c[0]).sorted().toArray();
+                long cut = counts[counts.length - capacity - 1];
+                for (Iterator<long[]> it = counters.values().iterator(); it.hasNext(); ) {
+                    long[] counter = it.next();
+                    long dropped = Math.min(counter[0], cut);
+                    counted -= dropped;
+                    counter[0] -= dropped;
+                    if (counter[0] == 0) {
+                        it.remove();
+                    }
+                }
+            }
+            return this;
+        }
+
+        public int capacity() {
+            return capacity;
+        }
+
+        /**
+         * The number of elements summarized.
+         */
+        public long total() {
+            return total;
+        }
+
+        /**
+         * How far any count may be underestimated; never more than {@code total / (capacity + 1)}.
+         */
+        public long maxError() {
+            return (total - counted) / (capacity + 1);
+        }
+
+        public Estimate<T> estimate(T item) {
+            long[] counter = counters.get(item);
+            long count = counter == null ? 0 : counter[0];
+            return new Estimate<>(item, count, count + maxError());
+        }
+
+        /**
+         * Every counted item, by descending count.
+         */
+        public List<Estimate<T>> estimates() {
+            return top(counters.size());
+        }
+
+        public List<Estimate<T>> top(int k) {
+            long error = maxError();
+            List<Estimate<T>> estimates = new ArrayList<>(counters.size());
+            counters.forEach((item, count) -> estimates.add(new Estimate<>(item, count[0], count[0] + error)));
+            estimates.sort(Comparator.comparingLong((Estimate<T> e) -> e.lowerBound()).reversed());
+            return estimates.size() > k ? new ArrayList<>(estimates.subList(0, k)) : estimates;
+        }
+
+        /**
+         * The items that may occur more than {@code fraction} of the time: a superset of those
+         * that do, when {@code fraction * total} is at least {@link #maxError()}.
+         */
+        public List<Estimate<T>> candidates(double fraction) {
+            double threshold = fraction * total;
+            return estimates().stream().filter(e -> e.upperBound() > threshold).toList();
+        }
+
+        @Override
+        public String toString() {
+            return estimates().toString();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.mastering.lambdas.chapter4;
+
+import java.util.IntSummaryStatistics;
+import java.util.OptionalInt;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+/**
+ * A collector of int values, accumulated into a primitive container such as an {@code int[]},
+ * so that no value is boxed. It collects an {@link IntStream} directly, or becomes an ordinary
+ * {@link Collector}, for use as a {@code groupingBy} or {@code partitioningBy} downstream,
+ * through {@link #from(ToIntFunction)}:
+ * <pre>{@code
+ * library.stream().collect(groupingBy(Book::getTopic,
+ *         IntCollector.summing().from(b -> b.getPageCounts().length)));
+ * }</pre>
+ * The combiner merges its second container into its first, as {@link IntStream#collect} expects.
+ */
+public interface IntCollector<A, R> {
+
+    Supplier<A> supplier();
+
+    ObjIntConsumer<A> accumulator();
+
+    BiConsumer<A, A> combiner();
+
+    Function<A, R> finisher();
+
+    /**
+     * Collects the int that {@code mapper} gives for every element.
+     */
+    default <T> Collector<T, A, R> from(ToIntFunction<? super T> mapper) {
+        ObjIntConsumer<A> accumulator = accumulator();
+        BiConsumer<A, A> combiner = combiner();
+        return Collector.of(supplier(),
+                (a, t) -> accumulator.accept(a, mapper.applyAsInt(t)),
+                (left, right) -> {
+                    combiner.accept(left, right);
+                    return left;
+                },
+                finisher());
+    }
+
+    default R collect(IntStream values) {
+        return finisher().apply(values.collect(supplier(), accumulator(), combiner()));
+    }
+
+    static <A, R> IntCollector<A, R> of(Supplier<A> supplier, ObjIntConsumer<A> accumulator,
+                                        BiConsumer<A, A> combiner, Function<A, R> finisher) {
+        return new IntCollector<>() {
+            @Override
+            public Supplier<A> supplier() {
+                return supplier;
+            }
+
+            @Override
+            public ObjIntConsumer<A> accumulator() {
+                return accumulator;
+            }
+
+            @Override
+            public BiConsumer<A, A> combiner() {
+                return combiner;
+            }
+
+            @Override
+            public Function<A, R> finisher() {
+                return finisher;
+            }
+        };
+    }
+
+    static IntCollector<long[], Long> counting() {
+        return of(() -> new long[1], (a, v) -> a[0]++, (a, b) -> a[0] += b[0], a -> a[0]);
+    }
+
+    /**
+     * Sums in int arithmetic, overflowing as {@code Collectors.summingInt} does.
+     */
+    static IntCollector<int[], Integer> summing() {
+        return of(() -> new int[1], (a, v) -> a[0] += v, (a, b) -> a[0] += b[0], a -> a[0]);
+    }
+
+    static IntCollector<long[], Double> averaging() {
+        return of(() -> new long[2],
+                (a, v) -> {
+                    a[0] += v;
+                    a[1]++;
+                },
+                (a, b) -> {
+                    a[0] += b[0];
+                    a[1] += b[1];
+                },
+                a -> a[1] == 0 ? 0.0 : (double) a[0] / a[1]);
+    }
+
+    static IntCollector<IntSummaryStatistics, IntSummaryStatistics> summarizing() {
+        return of(IntSummaryStatistics::new, IntSummaryStatistics::accept, IntSummaryStatistics::combine,
+                Function.identity());
+    }
+
+    /**
+     * Reduces with {@code op}, starting from {@code identity}, which must be an identity for it.
+     */
+    static IntCollector<int[], Integer> reducing(int identity, IntBinaryOperator op) {
+        return of(() -> new int[]{identity},
+                (a, v) -> a[0] = op.applyAsInt(a[0], v),
+                (a, b) -> a[0] = op.applyAsInt(a[0], b[0]),
+                a -> a[0]);
+    }
+
+    /**
+     * The largest value, if any: {@code a[1]} is 1 once a value has been seen.
+     */
+    static IntCollector<int[], OptionalInt> max() {
+        return of(() -> new int[2],
+                (a, v) -> {
+                    a[0] = a[1] == 0 ? v : Math.max(a[0], v);
+                    a[1] = 1;
+                },
+                (a, b) -> {
+                    if (b[1] != 0) {
+                        a[0] = a[1] == 0 ? b[0] : Math.max(a[0], b[0]);
+                        a[1] = 1;
+                    }
+                },
+                a -> a[1] == 0 ? OptionalInt.empty() : OptionalInt.of(a[0]));
+    }
+}
@@ -0,0 +1,95 @@
+package com.mastering.lambdas.chapter4;
+
+import java.util.LongSummaryStatistics;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.LongStream;
+
+/**
+ * The long counterpart of {@link IntCollector}.
+ */
+public interface LongCollector<A, R> {
+
+    Supplier<A> supplier();
+
+    ObjLongConsumer<A> accumulator();
+
+    BiConsumer<A, A> combiner();
+
+    Function<A, R> finisher();
+
+    default <T> Collector<T, A, R> from(ToLongFunction<? super T> mapper) {
+        ObjLongConsumer<A> accumulator = accumulator();
+        BiConsumer<A, A> combiner = combiner();
+        return Collector.of(supplier(),
+                (a, t) -> accumulator.accept(a, mapper.applyAsLong(t)),
+                (left, right) -> {
+                    combiner.accept(left, right);
+                    return left;
+                },
+                finisher());
+    }
+
+    default R collect(LongStream values) {
+        return finisher().apply(values.collect(supplier(), accumulator(), combiner()));
+    }
+
+    static <A, R> LongCollector<A, R> of(Supplier<A> supplier, ObjLongConsumer<A> accumulator,
+                                         BiConsumer<A, A> combiner, Function<A, R> finisher) {
+        return new LongCollector<>() {
+            @Override
+            public Supplier<A> supplier() {
+                return supplier;
+            }
+
+            @Override
+            public ObjLongConsumer<A> accumulator() {
+                return accumulator;
+            }
+
+            @Override
+            public BiConsumer<A, A> combiner() {
+                return combiner;
+            }
+
+            @Override
+            public Function<A, R> finisher() {
+                return finisher;
+            }
+        };
+    }
+
+    static LongCollector<long[], Long> summing() {
+        return of(() -> new long[1], (a, v) -> a[0] += v, (a, b) -> a[0] += b[0], a -> a[0]);
+    }
+
+    static LongCollector<long[], Double> averaging() {
+        return of(() -> new long[2],
+                (a, v) -> {
+                    a[0] += v;
+                    a[1]++;
+                },
+                (a, b) -> {
+                    a[0] += b[0];
+                    a[1] += b[1];
+                },
+                a -> a[1] == 0 ? 0.0 : (double) a[0] / a[1]);
+    }
+
+    static LongCollector<LongSummaryStatistics, LongSummaryStatistics> summarizing() {
+        return of(LongSummaryStatistics::new, LongSummaryStatistics::accept, LongSummaryStatistics::combine,
+                Function.identity());
+    }
+
+    static LongCollector<long[], Long> reducing(long identity, LongBinaryOperator op) {
+        return of(() -> new long[]{identity},
+                (a, v) -> a[0] = op.applyAsLong(a[0], v),
+                (a, b) -> a[0] = op.applyAsLong(a[0], b[0]),
+                a -> a[0]);
+    }
+}
@@ -0,0 +1,241 @@
+package com.mastering.lambdas.chapter4;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel prefix scans, in place, over int, long, double and object arrays, for any
+ * associative operator; the operator need not be commutative.
+ * <p>
+ * An inclusive scan replaces {@code a[i]} with {@code a[0] op ... op a[i]}; an exclusive scan
+ * replaces it with {@code identity op a[0] op ... op a[i-1]}, so {@code a[0]} becomes the
+ * identity. An exclusive scan of lengths with {@code +} gives displacements, as in
+ * {@link DispRecord}.
+ * <p>
+ * The array is cut into a few blocks per worker. The up-sweep reduces every block in parallel,
+ * reading without writing; the block totals are then scanned sequentially, which is cheap as
+ * there are only a few dozen; and the down-sweep scans every block in place in parallel,
+ * starting from the total of all blocks before it. Each element is read twice and written
+ * once, and nothing is allocated per element. Arrays too small to share out are scanned by
+ * a plain loop.
+ */
+public final class PrefixScan {
+
+    static final int MIN_BLOCK = 1 << 14;
+
+    private PrefixScan() {
+    }
+
+    public static void inclusive(int[] a, IntBinaryOperator op) {
+        scan(a, false, 0, op, blocks(a.length));
+    }
+
+    public static void exclusive(int[] a, int identity, IntBinaryOperator op) {
+        scan(a, true, identity, op, blocks(a.length));
+    }
+
+    public static void inclusive(long[] a, LongBinaryOperator op) {
+        scan(a, false, 0, op, blocks(a.length));
+    }
+
+    public static void exclusive(long[] a, long identity, LongBinaryOperator op) {
+        scan(a, true, identity, op, blocks(a.length));
+    }
+
+    public static void inclusive(double[] a, DoubleBinaryOperator op) {
+        scan(a, false, 0, op, blocks(a.length));
+    }
+
+    public static void exclusive(double[] a, double identity, DoubleBinaryOperator op) {
+        scan(a, true, identity, op, blocks(a.length));
+    }
+
+    public static <T> void inclusive(T[] a, BinaryOperator<T> op) {
+        scan(a, false, null, op, blocks(a.length));
+    }
+
+    public static <T> void exclusive(T[] a, T identity, BinaryOperator<T> op) {
+        scan(a, true, identity, op, blocks(a.length));
+    }
+
+    /**
+     * About four blocks per worker, none smaller than {@link #MIN_BLOCK}; one block means a
+     * sequential scan.
+     */
+    static int blocks(int length) {
+        int workers = ForkJoinPool.getCommonPoolParallelism();
+        return workers < 2 ? 1 : Math.max(1, Math.min(workers * 4, length / MIN_BLOCK));
+    }
+
+    private static int start(int length, int blocks, int block) {
+        return (int) ((long) length * block / blocks);
+    }
+
+    static void scan(int[] a, boolean exclusive, int identity, IntBinaryOperator op, int requestedBlocks) {
+        int n = a.length;
+        if (n == 0) {
+            return;
+        }
+        int blocks = Math.min(requestedBlocks, n);
+        // up-sweep: the total of every block but the last, which no later block needs
+        int[] totals = new int[blocks];
+        IntStream.range(0, blocks - 1).parallel().forEach(b -> {
+            int from = start(n, blocks, b), to = start(n, blocks, b + 1);
+            int acc = a[from];
+            for (int i = from + 1; i < to; i++) {
+                acc = op.applyAsInt(acc, a[i]);
+            }
+            totals[b] = acc;
+        });
+        // carries[b]: the total of the blocks before b, combined with the identity if exclusive
+        int[] carries = new int[blocks];
+        carries[0] = identity;
+        for (int b = 1; b < blocks; b++) {
+            carries[b] = b == 1 && !exclusive ? totals[0] : op.applyAsInt(carries[b - 1], totals[b - 1]);
+        }
+        // down-sweep
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            int from = start(n, blocks, b), to = start(n, blocks, b + 1);
+            if (exclusive) {
+                int acc = carries[b];
+                for (int i = from; i < to; i++) {
+                    int next = op.applyAsInt(acc, a[i]);
+                    a[i] = acc;
+                    acc = next;
+                }
+            } else {
+                int acc = b == 0 ? a[from] : op.applyAsInt(carries[b], a[from]);
+                a[from] = acc;
+                for (int i = from + 1; i < to; i++) {
+                    a[i] = acc = op.applyAsInt(acc, a[i]);
+                }
+            }
+        });
+    }
+
+    static void scan(long[] a, boolean exclusive, long identity, LongBinaryOperator op, int requestedBlocks) {
+        int n = a.length;
+        if (n == 0) {
+            return;
+        }
+        int blocks = Math.min(requestedBlocks, n);
+        long[] totals = new long[blocks];
+        IntStream.range(0, blocks - 1).parallel().forEach(b -> {
+            int from = start(n, blocks, b), to = start(n, blocks, b + 1);
+            long acc = a[from];
+            for (int i = from + 1; i < to; i++) {
+                acc = op.applyAsLong(acc, a[i]);
+            }
+            totals[b] = acc;
+        });
+        long[] carries = new long[blocks];
+        carries[0] = identity;
+        for (int b = 1; b < blocks; b++) {
+            carries[b] = b == 1 && !exclusive ? totals[0] : op.applyAsLong(carries[b - 1], totals[b - 1]);
+        }
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            int from = start(n, blocks, b), to = start(n, blocks, b + 1);
+            if (exclusive) {
+                long acc = carries[b];
+                for (int i = from; i < to; i++) {
+                    long next = op.applyAsLong(acc, a[i]);
+                    a[i] = acc;
+                    acc = next;
+                }
+            } else {
+                long acc = b == 0 ? a[from] : op.applyAsLong(carries[b], a[from]);
+                a[from] = acc;
+                for (int i = from + 1; i < to; i++) {
+                    a[i] = acc = op.applyAsLong(acc, a[i]);
+                }
+            }
+        });
+    }
+
+    static void scan(double[] a, boolean exclusive, double identity, DoubleBinaryOperator op, int requestedBlocks) {
+        int n = a.length;
+        if (n == 0) {
+            return;
+        }
+        int blocks = Math.min(requestedBlocks, n);
+        double[] totals = new double[blocks];
+        IntStream.range(0, blocks - 1).parallel().forEach(b -> {
+            int from = start(n, blocks, b), to = start(n, blocks, b + 1);
+            double acc = a[from];
+            for (int i = from + 1; i < to; i++) {
+                acc = op.applyAsDouble(acc, a[i]);
+            }
+            totals[b] = acc;
+        });
+        double[] carries = new double[blocks];
+        carries[0] = identity;
+        for (int b = 1; b < blocks; b++) {
+            carries[b] = b == 1 && !exclusive ? totals[0] : op.applyAsDouble(carries[b - 1], totals[b - 1]);
+        }
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            int from = start(n, blocks, b), to = start(n, blocks, b + 1);
+            if (exclusive) {
+                double acc = carries[b];
+                for (int i = from; i < to; i++) {
+                    double next = op.applyAsDouble(acc, a[i]);
+                    a[i] = acc;
+                    acc = next;
+                }
+            } else {
+                double acc = b == 0 ? a[from] : op.applyAsDouble(carries[b], a[from]);
+                a[from] = acc;
+                for (int i = from + 1; i < to; i++) {
+                    a[i] = acc = op.applyAsDouble(acc, a[i]);
+                }
+            }
+        });
+    }
+
+    static <T> void scan(T[] a, boolean exclusive, T identity, BinaryOperator<T> op, int requestedBlocks) {
+        int n = a.length;
+        if (n == 0) {
+            return;
+        }
+        int blocks = Math.min(requestedBlocks, n);
+        Object[] totals = new Object[blocks];
+        IntStream.range(0, blocks - 1).parallel().forEach(b -> {
+            int from = start(n, blocks, b), to = start(n, blocks, b + 1);
+            T acc = a[from];
+            for (int i = from + 1; i < to; i++) {
+                acc = op.apply(acc, a[i]);
+            }
+            totals[b] = acc;
+        });
+        Object[] carries = new Object[blocks];
+        carries[0] = identity;
+        for (int b = 1; b < blocks; b++) {
+            carries[b] = b == 1 && !exclusive ? totals[0] : op.apply(element(carries, b - 1), element(totals, b - 1));
+        }
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            int from = start(n, blocks, b), to = start(n, blocks, b + 1);
+            if (exclusive) {
+                T acc = element(carries, b);
+                for (int i = from; i < to; i++) {
+                    T next = op.apply(acc, a[i]);
+                    a[i] = acc;
+                    acc = next;
+                }
+            } else {
+                T acc = b == 0 ? a[from] : op.apply(element(carries, b), a[from]);
+                a[from] = acc;
+                for (int i = from + 1; i < to; i++) {
+                    a[i] = acc = op.apply(acc, a[i]);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T element(Object[] array, int index) {
+        return (T) array[index];
+    }
+}
@@ -0,0 +1,63 @@
+package com.mastering.lambdas.chapter4;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Page displacements of a large library from its page totals: the sequential running-sum loop,
+ * the JDK's {@code Arrays.parallelPrefix}, and the exclusive PrefixScan. Each invocation
+ * scans a fresh copy of the page totals.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class PrefixScanBenchmark {
+
+    @Param({"10000000"})
+    public int N;
+
+    private long[] pageTotals;
+    private long[] work;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pageTotals = new Random(42).longs(N, 50, 3_000).toArray();
+        work = new long[N];
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        System.arraycopy(pageTotals, 0, work, 0, N);
+    }
+
+    @Benchmark
+    public long[] sequentialLoop() {
+        long disp = 0;
+        for (int i = 0; i < work.length; i++) {
+            long length = work[i];
+            work[i] = disp;
+            disp += length;
+        }
+        return work;
+    }
+
+    @Benchmark
+    public long[] arraysParallelPrefix() {
+        // inclusive only: shifted afterwards to give displacements
+        Arrays.parallelPrefix(work, Long::sum);
+        System.arraycopy(work, 0, work, 1, N - 1);
+        work[0] = 0;
+        return work;
+    }
+
+    @Benchmark
+    public long[] prefixScan() {
+        PrefixScan.exclusive(work, 0L, Long::sum);
+        return work;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
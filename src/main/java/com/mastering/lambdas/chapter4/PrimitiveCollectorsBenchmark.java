@@ -0,0 +1,86 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import com.mastering.lambdas.chapter3.Topic;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * Demo4's per-topic downstream aggregations with the JDK collectors against their ports to
+ * IntCollector and DoubleCollector under {@link EnumCollectors#groupingBy}. Run with
+ * {@code -prof gc} to compare the bytes allocated per operation: the boxed {@code reducing}
+ * allocates an Integer for almost every book, and {@code groupingBy} a lambda for every book
+ * in its {@code computeIfAbsent}, while the ports allocate only their per-topic state.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class PrimitiveCollectorsBenchmark {
+
+    @Param({"1000000"})
+    public int N;
+
+    private List<Book> library;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryGenerator.generate(N);
+    }
+
+    @Benchmark
+    public Map<Topic, Integer> reducingBoxed() {
+        return library.stream().collect(groupingBy(Book::getTopic,
+                Collectors.reducing(0, b -> b.getPageCounts().length, Integer::sum)));
+    }
+
+    @Benchmark
+    public Map<Topic, Integer> reducingInt() {
+        return library.stream().collect(EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                IntCollector.reducing(0, Integer::sum).from(b -> b.getPageCounts().length)));
+    }
+
+    @Benchmark
+    public Map<Topic, Integer> summingInt() {
+        return library.stream().collect(groupingBy(Book::getTopic,
+                Collectors.summingInt(b -> b.getPageCounts().length)));
+    }
+
+    @Benchmark
+    public Map<Topic, Integer> intCollectorSumming() {
+        return library.stream().collect(EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                IntCollector.summing().from(b -> b.getPageCounts().length)));
+    }
+
+    @Benchmark
+    public Map<Topic, Double> averagingDouble() {
+        return library.stream().collect(groupingBy(Book::getTopic, Collectors.averagingDouble(Book::getHeight)));
+    }
+
+    @Benchmark
+    public Map<Topic, Double> doubleCollectorAveraging() {
+        return library.stream().collect(EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                DoubleCollector.averaging().from(Book::getHeight)));
+    }
+
+    @Benchmark
+    public Map<Topic, IntSummaryStatistics> summarizingInt() {
+        return library.stream().collect(groupingBy(Book::getTopic,
+                Collectors.summarizingInt(b -> b.getPageCounts().length)));
+    }
+
+    @Benchmark
+    public Map<Topic, IntSummaryStatistics> intCollectorSummarizing() {
+        return library.stream().collect(EnumCollectors.groupingBy(Topic.class, Book::getTopic,
+                IntCollector.summarizing().from(b -> b.getPageCounts().length)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
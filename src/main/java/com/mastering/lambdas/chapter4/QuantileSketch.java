@@ -0,0 +1,234 @@
+package com.mastering.lambdas.chapter4;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate quantiles of a stream of doubles in a KLL sketch (Karnin, Lang and Liberty):
+ * a stack of compactors, where level {@code h} holds items standing for {@code 2^h} values each.
+ * A full level is sorted and every other item, starting at random from the first or second,
+ * moves up a level, so memory stays at about {@code 3k} items however many values are added.
+ * The rank of a value is off by about {@code 1.7 / k} of the count, with high probability:
+ * about 1% at the default {@code k} of 200. Sketches of the same {@code k} merge by
+ * concatenating their levels and compacting.
+ */
+public final class QuantileSketch implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_K = 200;
+    private static final double SHRINK = 2.0 / 3;
+
+    private final int k;
+    private double[][] levels = new double[1][8];
+    private int[] sizes = new int[1];
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final AtomicLong SEEDS = new AtomicLong(SEED);
+
+    // xorshift state for the compaction coin, seeded apart for each sketch so that the leaves
+    // of a parallel reduction do not all toss the same coins
+    private long random = mix(SEEDS.addAndGet(GOLDEN_GAMMA));
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be at least 8: " + k);
+        }
+        this.k = k;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        append(0, value);
+        if (sizes[0] >= capacity(0)) {
+            compact();
+        }
+    }
+
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Cannot merge k=" + other.k + " into k=" + k);
+        }
+        while (levels.length < other.levels.length) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        random = mixState(random, other.random, count);
+        compact();
+        return this;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * The value at rank {@code fraction * count}, such as 0.5 for the median; NaN when empty.
+     */
+    public double quantile(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("fraction must be between 0 and 1: " + fraction);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (fraction == 0) {
+            return min;
+        }
+        if (fraction == 1) {
+            return max;
+        }
+        // each retained item with its weight, visited in order of value
+        int items = retained();
+        double[] values = new double[items];
+        long[] weights = new long[items];
+        Integer[] byValue = new Integer[items];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++, n++) {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                byValue[n] = n;
+            }
+        }
+        Arrays.sort(byValue, (a, b) -> Double.compare(values[a], values[b]));
+        double target = fraction * count;
+        long weight = 0;
+        for (int i : byValue) {
+            weight += weights[i];
+            if (weight >= target) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The approximate fraction of values at or below {@code value}.
+     */
+    public double rank(double value) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long weight = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                if (levels[h][i] <= value) {
+                    weight += 1L << h;
+                }
+            }
+        }
+        return (double) weight / count;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    /**
+     * The number of values retained, bounding the memory used.
+     */
+    public int retained() {
+        int items = 0;
+        for (int size : sizes) {
+            items += size;
+        }
+        return items;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{count=" + count + ", median=" + quantile(0.5) + ", p99=" + quantile(0.99) + '}';
+    }
+
+    /**
+     * The top level holds up to {@code k} items, and each level below two thirds as many as
+     * the one above, but at least two.
+     */
+    private int capacity(int level) {
+        int depth = levels.length - level - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(SHRINK, depth)));
+    }
+
+    private void compact() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] >= capacity(h)) {
+                if (h + 1 == levels.length) {
+                    addLevel();
+                }
+                double[] level = levels[h];
+                int size = sizes[h];
+                Arrays.sort(level, 0, size);
+                // an odd item out, the smallest, stays behind
+                int keep = size % 2;
+                int offset = keep + (coin() ? 1 : 0);
+                for (int i = offset; i < size; i += 2) {
+                    append(h + 1, level[i]);
+                }
+                sizes[h] = keep;
+            }
+        }
+    }
+
+    /**
+     * A state for the merged sketch. Two sketches fed alike have the same state, so it must not
+     * just be their xor, which would be 0, where xorshift stays for good and the coin then
+     * always keeps the lower item of each pair.
+     */
+    private static long mixState(long a, long b, long count) {
+        return mix(a ^ Long.rotateLeft(b, 29) ^ (count * GOLDEN_GAMMA));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return z == 0 ? SEED : z;
+    }
+
+    private boolean coin() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (random & 1) == 1;
+    }
+
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levels[levels.length - 1] = new double[8];
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+    }
+
+    private void append(int level, double value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], 2 * sizes[level]);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+}
@@ -0,0 +1,179 @@
+package com.mastering.lambdas.chapter4;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A terminal operation that hands the elements of a stream to worker threads while the stream
+ * is still producing them, instead of collecting them all into a queue first.
+ * <p>
+ * Elements pass through a bounded queue: when it is full the producing thread parks until a
+ * worker takes one, so the stream can run at most {@code capacity} elements ahead of the
+ * workers. The call returns once the stream is exhausted, with a future that completes with
+ * the number of elements processed when the workers have drained the queue.
+ * <p>
+ * If a worker's consumer throws, or the stream itself throws, the future completes
+ * exceptionally with that exception, the stream stops producing, the other workers are
+ * interrupted, and whatever is still queued is discarded. Elements must not be null.
+ */
+public final class QueueSink {
+
+    private static final Object END = new Object();
+    private static final AtomicInteger RUNS = new AtomicInteger();
+
+    private QueueSink() {
+    }
+
+    /**
+     * Queues the elements as the stream produces them, from as many threads as a parallel
+     * stream uses; the workers take them in queue order.
+     */
+    public static <T> CompletableFuture<Long> consume(Stream<T> stream, int capacity, int workers,
+                                                      Consumer<? super T> consumer) {
+        return run(stream, false, capacity, workers, consumer);
+    }
+
+    /**
+     * Queues the elements in encounter order, so that the workers start on them in that order;
+     * with one worker they are also processed in that order.
+     */
+    public static <T> CompletableFuture<Long> consumeOrdered(Stream<T> stream, int capacity, int workers,
+                                                             Consumer<? super T> consumer) {
+        return run(stream, true, capacity, workers, consumer);
+    }
+
+    private static <T> CompletableFuture<Long> run(Stream<T> stream, boolean ordered, int capacity, int workers,
+                                                   Consumer<? super T> consumer) {
+        if (capacity < 1 || workers < 1) {
+            throw new IllegalArgumentException("capacity and workers must be positive: " + capacity + ", " + workers);
+        }
+        Objects.requireNonNull(consumer);
+        Run<T> run = new Run<>(capacity, workers, consumer);
+        try {
+            Consumer<T> push = run::push;
+            if (ordered) {
+                stream.forEachOrdered(push);
+            } else {
+                stream.forEach(push);
+            }
+            for (int i = 0; i < workers; i++) {
+                run.push(END);
+            }
+        } catch (RuntimeException | Error e) {
+            // a Stopped thrown because a worker failed is ignored: the first failure is kept
+            run.fail(e);
+        }
+        return run.result;
+    }
+
+    private static final class Run<T> {
+        private final BlockingQueue<Object> queue;
+        private final Consumer<? super T> consumer;
+        private final Thread[] workers;
+        private final AtomicInteger running;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final LongAdder processed = new LongAdder();
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        Run(int capacity, int workers, Consumer<? super T> consumer) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.consumer = consumer;
+            this.workers = new Thread[workers];
+            this.running = new AtomicInteger(workers);
+            String prefix = "queue-sink-" + RUNS.incrementAndGet() + "-";
+            for (int i = 0; i < workers; i++) {
+                this.workers[i] = new Thread(this::work, prefix + (i + 1));
+                this.workers[i].setDaemon(true);
+            }
+            for (Thread worker : this.workers) {
+                worker.start();
+            }
+        }
+
+        /**
+         * Parks while the queue is full, waking now and then to give up if a worker failed.
+         */
+        void push(Object element) {
+            Objects.requireNonNull(element, "QueueSink elements must not be null");
+            try {
+                while (!queue.offer(element, 10, TimeUnit.MILLISECONDS)) {
+                    if (failure.get() != null) {
+                        throw new Stopped();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+                throw new Stopped();
+            }
+            if (failure.get() != null) {
+                throw new Stopped();
+            }
+        }
+
+        /**
+         * Takes elements until END, or until the run has failed: once it fails no END is
+         * queued, and the interrupt that follows may be swallowed by the consumer, so the
+         * worker polls and checks for failure rather than waiting on the queue for good.
+         */
+        @SuppressWarnings("unchecked")
+        void work() {
+            try {
+                while (failure.get() == null) {
+                    Object element;
+                    try {
+                        element = queue.poll(10, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        // interrupted because the run failed, or else from outside, which fails it
+                        fail(e);
+                        continue;
+                    }
+                    if (element == END) {
+                        break;
+                    }
+                    if (element != null && failure.get() == null) {
+                        consumer.accept((T) element);
+                        processed.increment();
+                    }
+                }
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                if (running.decrementAndGet() == 0) {
+                    Throwable cause = failure.get();
+                    if (cause != null) {
+                        result.completeExceptionally(cause);
+                    } else {
+                        result.complete(processed.sum());
+                    }
+                }
+            }
+        }
+
+        void fail(Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+                queue.clear();
+                for (Thread worker : workers) {
+                    worker.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Unwinds the stream once the run has failed.
+     */
+    private static final class Stopped extends RuntimeException {
+        Stopped() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.mastering.lambdas.chapter4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Any number of named aggregations computed in one pass over a stream. Each aggregation is
+ * added as a collector, returning a typed key for its result:
+ * <pre>{@code
+ * Report.Builder<Book> builder = Report.builder();
+ * Report.Key<Map<Topic, Long>> byTopic = builder.add("byTopic", groupingBy(Book::getTopic, counting()));
+ * Report.Key<Double> height = builder.add("height", averagingDouble(Book::getHeight));
+ * Report report = library.parallelStream().collect(builder.build());
+ * Map<Topic, Long> counts = report.get(byTopic);
+ * }</pre>
+ * The state of the fused collector is an array holding the state of every aggregation; each
+ * element is passed to every accumulator in turn, and the combiner merges the arrays slot by
+ * slot, so a parallel pass builds one combiner tree for all of them.
+ */
+public final class Report {
+
+    private final List<Key<?>> keys;
+    private final Object[] results;
+
+    private Report(List<Key<?>> keys, Object[] results) {
+        this.keys = keys;
+        this.results = results;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * The result of the aggregation added under {@code key}.
+     *
+     * @throws IllegalArgumentException if the key was added to the builder of another report
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(Key<R> key) {
+        if (key.index >= keys.size() || keys.get(key.index) != key) {
+            throw new IllegalArgumentException("Key " + key.name + " is not part of this report");
+        }
+        return (R) results[key.index];
+    }
+
+    /**
+     * The results by name, in the order the aggregations were added.
+     */
+    public Map<String, Object> asMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Key<?> key : keys) {
+            map.put(key.name, results[key.index]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    /**
+     * Identifies one aggregation of a report and the type of its result.
+     */
+    public static final class Key<R> {
+        private final String name;
+        private final int index;
+
+        private Key(String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static final class Builder<T> {
+        private final List<Key<?>> keys = new ArrayList<>();
+        private final List<Collector<? super T, Object, ?>> collectors = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        @SuppressWarnings("unchecked")
+        public <R> Key<R> add(String name, Collector<? super T, ?, R> collector) {
+            Objects.requireNonNull(collector);
+            if (keys.stream().anyMatch(k -> k.name.equals(name))) {
+                throw new IllegalArgumentException("Duplicate aggregation name: " + name);
+            }
+            Key<R> key = new Key<>(Objects.requireNonNull(name), keys.size());
+            keys.add(key);
+            collectors.add((Collector<? super T, Object, ?>) collector);
+            return key;
+        }
+
+        /**
+         * A collector of all the aggregations added so far; later additions do not change it.
+         */
+        @SuppressWarnings("unchecked")
+        public Collector<T, ?, Report> build() {
+            List<Key<?>> keys = List.copyOf(this.keys);
+            int n = keys.size();
+            Supplier<Object>[] suppliers = new Supplier[n];
+            BiConsumer<Object, ? super T>[] accumulators = new BiConsumer[n];
+            BinaryOperator<Object>[] combiners = new BinaryOperator[n];
+            Function<Object, ?>[] finishers = new Function[n];
+            Set<Collector.Characteristics> characteristics = EnumSet.of(Collector.Characteristics.UNORDERED);
+            for (int i = 0; i < n; i++) {
+                Collector<? super T, Object, ?> collector = collectors.get(i);
+                suppliers[i] = collector.supplier();
+                accumulators[i] = collector.accumulator();
+                combiners[i] = collector.combiner();
+                finishers[i] = collector.finisher();
+                characteristics.retainAll(collector.characteristics());
+            }
+            return Collector.of(
+                    () -> {
+                        Object[] states = new Object[n];
+                        for (int i = 0; i < n; i++) {
+                            states[i] = suppliers[i].get();
+                        }
+                        return states;
+                    },
+                    (states, t) -> {
+                        for (int i = 0; i < n; i++) {
+                            accumulators[i].accept(states[i], t);
+                        }
+                    },
+                    (left, right) -> {
+                        for (int i = 0; i < n; i++) {
+                            left[i] = combiners[i].apply(left[i], right[i]);
+                        }
+                        return left;
+                    },
+                    states -> {
+                        Object[] results = new Object[n];
+                        for (int i = 0; i < n; i++) {
+                            results[i] = finishers[i].apply(states[i]);
+                        }
+                        return new Report(keys, results);
+                    },
+                    characteristics.toArray(Collector.Characteristics[]::new));
+        }
+    }
+}
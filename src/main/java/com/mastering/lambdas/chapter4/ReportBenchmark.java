@@ -0,0 +1,75 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * The six topic aggregations of {@code Demo4.main}, computed by six passes over the library
+ * and by one fused {@link Report} pass, sequentially and in parallel. Both use the same
+ * {@code groupingBy} collectors, so the difference is the number of passes.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class ReportBenchmark {
+
+    @Param({"1000000", "5000000"})
+    public int N;
+
+    private List<Book> library;
+    private List<Collector<Book, ?, ?>> aggregations;
+    private Collector<Book, ?, Report> report;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryGenerator.generate(N);
+        aggregations = List.of(
+                groupingBy(Book::getTopic, Collectors.counting()),
+                groupingBy(Book::getTopic, Collectors.maxBy(Comparator.comparing(b -> b.getAuthors().size()))),
+                groupingBy(Book::getTopic, Collectors.summingInt(b -> b.getPageCounts().length)),
+                groupingBy(Book::getTopic, Collectors.averagingDouble(Book::getHeight)),
+                groupingBy(Book::getTopic, Collectors.summarizingInt(b -> b.getPageCounts().length)),
+                groupingBy(Book::getTopic, Collectors.mapping(Book::getTitle, Collectors.joining(";"))));
+        Report.Builder<Book> builder = Report.builder();
+        for (int i = 0; i < aggregations.size(); i++) {
+            builder.add("aggregation" + i, aggregations.get(i));
+        }
+        report = builder.build();
+    }
+
+    @Benchmark
+    public void multiPass(Blackhole bh) {
+        for (Collector<Book, ?, ?> aggregation : aggregations) {
+            bh.consume(library.stream().collect(aggregation));
+        }
+    }
+
+    @Benchmark
+    public void multiPassParallel(Blackhole bh) {
+        for (Collector<Book, ?, ?> aggregation : aggregations) {
+            bh.consume(library.parallelStream().collect(aggregation));
+        }
+    }
+
+    @Benchmark
+    public Report fused() {
+        return library.stream().collect(report);
+    }
+
+    @Benchmark
+    public Report fusedParallel() {
+        return library.parallelStream().collect(report);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
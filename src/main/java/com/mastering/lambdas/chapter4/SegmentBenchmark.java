@@ -0,0 +1,81 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter1.Point;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Segmenting a long run of sorted points wherever consecutive points are more than 10 apart:
+ * the segmenting collector over {@link Point} objects, sequentially and in parallel, and the
+ * primitive variant over coordinate arrays, which tests every position independently.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class SegmentBenchmark {
+
+    @Param({"10000000"})
+    public int N;
+
+    private List<Point> points;
+    private int[] xs;
+    private int[] ys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        points = new ArrayList<>(N);
+        xs = new int[N];
+        ys = new int[N];
+        int x = 0;
+        for (int i = 0; i < N; i++) {
+            // mostly close together, with a gap every few dozen points
+            x += random.nextInt(40) == 0 ? 20 + random.nextInt(20) : random.nextInt(4);
+            xs[i] = x;
+            ys[i] = random.nextInt(6);
+            points.add(new Point(xs[i], ys[i]));
+        }
+    }
+
+    private static boolean apart(Point p, Point q) {
+        return apart(p.getX(), p.getY(), q.getX(), q.getY());
+    }
+
+    private static boolean apart(int x1, int y1, int x2, int y2) {
+        long dx = x2 - x1, dy = y2 - y1;
+        return dx * dx + dy * dy > 100;
+    }
+
+    @Benchmark
+    public SegmentCollectors.Segments<Point> sequentialCollector() {
+        return points.stream().collect(SegmentCollectors.segmentBy(SegmentBenchmark::apart));
+    }
+
+    @Benchmark
+    public SegmentCollectors.Segments<Point> parallelCollector() {
+        return points.parallelStream().collect(SegmentCollectors.segmentBy(SegmentBenchmark::apart));
+    }
+
+    @Benchmark
+    public int[] sequentialLoop() {
+        int[] starts = new int[N];
+        int count = 0;
+        for (int i = 0; i < N; i++) {
+            if (i == 0 || apart(xs[i - 1], ys[i - 1], xs[i], ys[i])) {
+                starts[count++] = i;
+            }
+        }
+        return java.util.Arrays.copyOf(starts, count);
+    }
+
+    @Benchmark
+    public int[] parallelStarts() {
+        return SegmentCollectors.segmentStarts(N, (i, j) -> apart(xs[i], ys[i], xs[j], ys[j]));
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
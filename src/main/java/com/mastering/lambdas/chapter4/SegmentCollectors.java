@@ -0,0 +1,167 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.IntList;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Splits a sequence into runs of consecutive elements, starting a new run wherever a boundary
+ * predicate holds between an element and the one before it, as {@code Demo4.groupByProximity}
+ * does for points more than 10 apart.
+ * <p>
+ * The result is the elements in one list and the start index of every segment in an
+ * {@code int[]}, rather than a deque per segment. Under parallel combining the only segment
+ * that can span two chunks is the one at their junction, so the combiner tests the boundary
+ * predicate once, between the last element on the left and the first on the right.
+ * <p>
+ * Elements held in primitive arrays need no collector at all: whether a segment starts at
+ * {@code i} depends only on elements {@code i - 1} and {@code i}, so every position can be
+ * tested independently and in parallel, as {@link #segmentStarts(int, IndexPairPredicate)} does.
+ */
+public final class SegmentCollectors {
+
+    private SegmentCollectors() {
+    }
+
+    /**
+     * A boundary test between the elements at two consecutive indices, for elements held in
+     * one or more primitive arrays, such as the x and y coordinates of points.
+     */
+    @FunctionalInterface
+    public interface IndexPairPredicate {
+        boolean test(int previous, int next);
+    }
+
+    @FunctionalInterface
+    public interface IntPairPredicate {
+        boolean test(int previous, int next);
+    }
+
+    @FunctionalInterface
+    public interface DoublePairPredicate {
+        boolean test(double previous, double next);
+    }
+
+    /**
+     * Segments the elements in encounter order, starting a new segment before every element
+     * for which {@code boundary.test(previous, element)} holds.
+     */
+    public static <T> Collector<T, ?, Segments<T>> segmentBy(BiPredicate<? super T, ? super T> boundary) {
+        Objects.requireNonNull(boundary);
+        return Collector.of(
+                Segments<T>::new,
+                (segments, t) -> {
+                    int size = segments.elements.size();
+                    if (size == 0 || boundary.test(segments.elements.get(size - 1), t)) {
+                        segments.starts.add(size);
+                    }
+                    segments.elements.add(t);
+                },
+                (left, right) -> {
+                    int offset = left.elements.size();
+                    if (offset == 0) {
+                        return right;
+                    }
+                    if (right.elements.isEmpty()) {
+                        return left;
+                    }
+                    // right always starts a segment at 0; keep it only if the junction is a boundary
+                    boolean split = boundary.test(left.elements.get(offset - 1), right.elements.get(0));
+                    for (int i = split ? 0 : 1; i < right.starts.size(); i++) {
+                        left.starts.add(right.starts.get(i) + offset);
+                    }
+                    left.elements.addAll(right.elements);
+                    return left;
+                });
+    }
+
+    /**
+     * The start index of every segment of {@code length} elements, {@code 0} first (none if
+     * {@code length} is 0), testing all positions in parallel.
+     */
+    public static int[] segmentStarts(int length, IndexPairPredicate boundary) {
+        if (length == 0) {
+            return new int[0];
+        }
+        return IntStream.concat(IntStream.of(0),
+                        IntStream.range(1, length).parallel().filter(i -> boundary.test(i - 1, i)))
+                .toArray();
+    }
+
+    public static int[] segmentStarts(int[] values, IntPairPredicate boundary) {
+        return segmentStarts(values.length, (i, j) -> boundary.test(values[i], values[j]));
+    }
+
+    public static int[] segmentStarts(double[] values, DoublePairPredicate boundary) {
+        return segmentStarts(values.length, (i, j) -> boundary.test(values[i], values[j]));
+    }
+
+    /**
+     * Elements split into segments: segment {@code i} is the elements from {@code start(i)}
+     * up to {@code end(i)}.
+     */
+    public static final class Segments<T> {
+        private final List<T> elements = new ArrayList<>();
+        private final IntList starts = new IntList();
+
+        private Segments() {
+        }
+
+        public int size() {
+            return starts.size();
+        }
+
+        public int start(int segment) {
+            return starts.get(segment);
+        }
+
+        public int end(int segment) {
+            return segment + 1 < starts.size() ? starts.get(segment + 1) : elements.size();
+        }
+
+        /**
+         * A view of one segment.
+         */
+        public List<T> segment(int segment) {
+            return elements.subList(start(segment), end(segment));
+        }
+
+        public List<List<T>> segments() {
+            return new AbstractList<>() {
+                @Override
+                public List<T> get(int index) {
+                    return segment(index);
+                }
+
+                @Override
+                public int size() {
+                    return Segments.this.size();
+                }
+            };
+        }
+
+        public Stream<List<T>> stream() {
+            return segments().stream();
+        }
+
+        public List<T> elements() {
+            return elements;
+        }
+
+        public int[] starts() {
+            return starts.toArray();
+        }
+
+        @Override
+        public String toString() {
+            return segments().toString();
+        }
+    }
+}
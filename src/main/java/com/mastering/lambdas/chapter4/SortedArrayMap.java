@@ -0,0 +1,528 @@
+package com.mastering.lambdas.chapter4;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * An immutable NavigableMap held in two arrays, keys in sorted order and their values, and
+ * searched by binary search. It costs two references per entry where a TreeMap allocates a
+ * node of five references and a colour per entry, and builds in one sort rather than a
+ * tree insertion per element; {@link #toSortedArrayMap} collects straight into one.
+ * <p>
+ * Sub-maps, head and tail maps and descending maps are views sharing the arrays, as index
+ * ranges. Unlike a TreeMap's, they clamp ranges that reach outside them rather than throwing.
+ * Every mutator throws UnsupportedOperationException.
+ */
+public final class SortedArrayMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    private final Object[] keys;
+    private final Object[] values;
+    private final Comparator<? super K> comparator;
+    // the view covers keys[from] to keys[to - 1], in reverse if descending
+    private final int from;
+    private final int to;
+    private final boolean descending;
+
+    private SortedArrayMap(Object[] keys, Object[] values, Comparator<? super K> comparator,
+                           int from, int to, boolean descending) {
+        this.keys = keys;
+        this.values = values;
+        this.comparator = comparator;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    /**
+     * A collector like {@code toMap(keyMapper, valueMapper, mergeFunction, TreeMap::new)}: the
+     * pairs are gathered into arrays, sorted once with {@code Arrays.parallelSort}, which is
+     * stable, and the values of equal keys merged in encounter order.
+     */
+    public static <T, K extends Comparable<? super K>, V> Collector<T, ?, SortedArrayMap<K, V>> toSortedArrayMap(
+            Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends V> valueMapper,
+            BinaryOperator<V> mergeFunction) {
+        return toSortedArrayMap(keyMapper, valueMapper, mergeFunction, null);
+    }
+
+    /**
+     * The same ordered by {@code comparator}, or the natural order of the keys if it is null.
+     */
+    public static <T, K, V> Collector<T, ?, SortedArrayMap<K, V>> toSortedArrayMap(
+            Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends V> valueMapper,
+            BinaryOperator<V> mergeFunction, Comparator<? super K> comparator) {
+        Objects.requireNonNull(mergeFunction);
+        return Collector.<T, Pairs<K, V>, SortedArrayMap<K, V>>of(Pairs::new,
+                (pairs, t) -> pairs.add(keyMapper.apply(t), valueMapper.apply(t)),
+                Pairs::addAll,
+                pairs -> pairs.toMap(mergeFunction, comparator));
+    }
+
+    // ---- searching, in ascending index order
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object a, Object b) {
+        return comparator == null ? ((Comparable<Object>) a).compareTo(b) : comparator.compare((K) a, (K) b);
+    }
+
+    /**
+     * The index of {@code key} in the view's range, or {@code -(insertion point) - 1}.
+     */
+    private int search(Object key) {
+        Objects.requireNonNull(key);
+        int low = from, high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(keys[mid], key);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * The index of the greatest key below {@code key}, or at it if inclusive; {@code from - 1}
+     * if there is none.
+     */
+    private int below(Object key, boolean inclusive) {
+        int at = search(key);
+        return at >= 0 ? (inclusive ? at : at - 1) : -at - 2;
+    }
+
+    /**
+     * The index of the least key above {@code key}, or at it if inclusive; {@code to} if there
+     * is none.
+     */
+    private int above(Object key, boolean inclusive) {
+        int at = search(key);
+        return at >= 0 ? (inclusive ? at : at + 1) : -at - 1;
+    }
+
+    private boolean inRange(int index) {
+        return index >= from && index < to;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyAt(int index) {
+        return (K) keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    private Entry<K, V> entryAt(int index) {
+        return inRange(index) ? new SimpleImmutableEntry<>(keyAt(index), valueAt(index)) : null;
+    }
+
+    private K keyOrNull(int index) {
+        return inRange(index) ? keyAt(index) : null;
+    }
+
+    private SortedArrayMap<K, V> view(int from, int to, boolean descending) {
+        return new SortedArrayMap<>(keys, values, comparator, from, Math.max(from, to), descending);
+    }
+
+    // ---- Map
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return search(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        int at = search(key);
+        return at >= 0 ? valueAt(at) : null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new IndexIterator<>() {
+                    @Override
+                    Entry<K, V> at(int index) {
+                        return entryAt(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SortedArrayMap.this.size();
+            }
+        };
+    }
+
+    private Iterator<K> keyIterator() {
+        return new IndexIterator<>() {
+            @Override
+            K at(int index) {
+                return keyAt(index);
+            }
+        };
+    }
+
+    // ---- SortedMap and NavigableMap, mirrored when descending
+
+    @Override
+    public Comparator<? super K> comparator() {
+        if (!descending) {
+            return comparator;
+        }
+        return comparator == null ? Collections.reverseOrder() : Collections.reverseOrder(comparator);
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return entryAt(descending ? above(key, false) : below(key, false));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(descending ? above(key, false) : below(key, false));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return entryAt(descending ? above(key, true) : below(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(descending ? above(key, true) : below(key, true));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return entryAt(descending ? below(key, true) : above(key, true));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(descending ? below(key, true) : above(key, true));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return entryAt(descending ? below(key, false) : above(key, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(descending ? below(key, false) : above(key, false));
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return entryAt(descending ? to - 1 : from);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return entryAt(descending ? from : to - 1);
+    }
+
+    @Override
+    public K firstKey() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return keyAt(descending ? to - 1 : from);
+    }
+
+    @Override
+    public K lastKey() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return keyAt(descending ? from : to - 1);
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return view(from, to, !descending);
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet<>(this);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (compare(fromKey, toKey) * (descending ? -1 : 1) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return descending
+                ? view(above(toKey, toInclusive), below(fromKey, fromInclusive) + 1, true)
+                : view(above(fromKey, fromInclusive), below(toKey, toInclusive) + 1, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return descending
+                ? view(above(toKey, inclusive), to, true)
+                : view(from, below(toKey, inclusive) + 1, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return descending
+                ? view(from, below(fromKey, inclusive) + 1, true)
+                : view(above(fromKey, inclusive), to, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * Visits the indices of the view in its order.
+     */
+    private abstract class IndexIterator<E> implements Iterator<E> {
+        private int next = descending ? to - 1 : from;
+
+        abstract E at(int index);
+
+        @Override
+        public boolean hasNext() {
+            return inRange(next);
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E e = at(next);
+            next += descending ? -1 : 1;
+            return e;
+        }
+    }
+
+    private static final class KeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+        private final SortedArrayMap<K, ?> map;
+
+        KeySet(SortedArrayMap<K, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return map.keyIterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public K lower(K k) {
+            return map.lowerKey(k);
+        }
+
+        @Override
+        public K floor(K k) {
+            return map.floorKey(k);
+        }
+
+        @Override
+        public K ceiling(K k) {
+            return map.ceilingKey(k);
+        }
+
+        @Override
+        public K higher(K k) {
+            return map.higherKey(k);
+        }
+
+        @Override
+        public K first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public K pollFirst() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public K pollLast() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return map.descendingKeySet();
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return map.subMap(fromElement, fromInclusive, toElement, toInclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return map.headMap(toElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return map.tailMap(fromElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+
+    /**
+     * The key-value pairs of one container, in encounter order.
+     */
+    private static final class Pairs<K, V> {
+        private Object[] pairs = new Object[32];
+        private int size;
+
+        void add(K key, V value) {
+            if (size + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+            }
+            pairs[size++] = Objects.requireNonNull(key, "null key");
+            pairs[size++] = value;
+        }
+
+        Pairs<K, V> addAll(Pairs<K, V> other) {
+            if (size + other.size > pairs.length) {
+                pairs = Arrays.copyOf(pairs, Math.max(2 * pairs.length, size + other.size));
+            }
+            System.arraycopy(other.pairs, 0, pairs, size, other.size);
+            size += other.size;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        SortedArrayMap<K, V> toMap(BinaryOperator<V> mergeFunction, Comparator<? super K> comparator) {
+            int n = size / 2;
+            // one short-lived slot per pair, so that the sort moves keys and values together
+            Slot[] slots = new Slot[n];
+            for (int i = 0; i < n; i++) {
+                slots[i] = new Slot(pairs[2 * i], pairs[2 * i + 1]);
+            }
+            pairs = null;
+            Comparator<Object> order = comparator == null
+                    ? (a, b) -> ((Comparable<Object>) a).compareTo(b)
+                    : (Comparator<Object>) comparator;
+            Arrays.parallelSort(slots, (a, b) -> order.compare(a.key, b.key));
+            Object[] keys = new Object[n];
+            Object[] values = new Object[n];
+            int distinct = 0;
+            for (int i = 0; i < n; i++) {
+                if (distinct > 0 && order.compare(keys[distinct - 1], slots[i].key) == 0) {
+                    values[distinct - 1] = mergeFunction.apply((V) values[distinct - 1], (V) slots[i].value);
+                } else {
+                    keys[distinct] = slots[i].key;
+                    values[distinct] = slots[i].value;
+                    distinct++;
+                }
+            }
+            if (distinct < n) {
+                keys = Arrays.copyOf(keys, distinct);
+                values = Arrays.copyOf(values, distinct);
+            }
+            return new SortedArrayMap<>(keys, values, comparator, 0, distinct, false);
+        }
+    }
+
+    private record Slot(Object key, Object value) {
+    }
+}
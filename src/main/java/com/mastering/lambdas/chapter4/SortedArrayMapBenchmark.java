@@ -0,0 +1,84 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Year;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Demo4's title to latest publication date map, collected into a TreeMap and into a
+ * SortedArrayMap, sequentially and in parallel, and then searched for random titles.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class SortedArrayMapBenchmark {
+
+    private static final BinaryOperator<Year> LATEST = BinaryOperator.maxBy(Comparator.naturalOrder());
+
+    @Param({"1000000"})
+    public int N;
+
+    private List<Book> library;
+    private String[] probes;
+    private NavigableMap<String, Year> treeMap;
+    private NavigableMap<String, Year> arrayMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = LibraryGenerator.generate(N);
+        Random random = new Random(42);
+        probes = random.ints(1024, 0, N).mapToObj(i -> library.get(i).getTitle()).toArray(String[]::new);
+        treeMap = collectTreeMap();
+        arrayMap = collectSortedArrayMap();
+    }
+
+    @Benchmark
+    public NavigableMap<String, Year> collectTreeMap() {
+        return library.stream().collect(Collectors.toMap(Book::getTitle, Book::getPubDate, LATEST, TreeMap::new));
+    }
+
+    @Benchmark
+    public NavigableMap<String, Year> collectSortedArrayMap() {
+        return library.stream().collect(SortedArrayMap.toSortedArrayMap(Book::getTitle, Book::getPubDate, LATEST));
+    }
+
+    @Benchmark
+    public NavigableMap<String, Year> collectTreeMapParallel() {
+        return library.parallelStream().collect(Collectors.toMap(Book::getTitle, Book::getPubDate, LATEST, TreeMap::new));
+    }
+
+    @Benchmark
+    public NavigableMap<String, Year> collectSortedArrayMapParallel() {
+        return library.parallelStream().collect(SortedArrayMap.toSortedArrayMap(Book::getTitle, Book::getPubDate, LATEST));
+    }
+
+    @Benchmark
+    public int lookupTreeMap() {
+        int found = 0;
+        for (String title : probes) {
+            found += treeMap.get(title) != null ? 1 : 0;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int lookupSortedArrayMap() {
+        int found = 0;
+        for (String title : probes) {
+            found += arrayMap.get(title) != null ? 1 : 0;
+        }
+        return found;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
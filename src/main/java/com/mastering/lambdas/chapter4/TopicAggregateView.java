@@ -0,0 +1,323 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.CatalogListener;
+import com.mastering.lambdas.chapter3.Topic;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The per-topic aggregates of Demo4 - {@code booksByTopic()}, {@code volumeCountByTopic()},
+ * {@code mostPopularTopic()} and {@code concatenatedTitlesByTopic()} - maintained from catalog
+ * events rather than recomputed with {@code groupingBy} on every read.
+ * <p>
+ * The aggregates are owned by the single writer thread the catalog delivers events on. After
+ * each event, an update included, the writer publishes one immutable {@link State} through a
+ * volatile field: the per-topic counters, and per topic a shelf holding its books in catalog id
+ * order (which is insertion order, as in {@code groupingBy} over the library list). Every read
+ * takes one state, so it always sees a consistent set of counters and books, the count-based
+ * reads are O(1), and {@code booksByTopic()} hands out the shelves without copying them.
+ * <p>
+ * Adding a book, which takes a new and so the highest id, is amortized O(1): the shelves share
+ * their arrays and it fills the next slot. Removing or updating a book copies the shelves it
+ * touches, O(n) in their size. The joined titles of a shelf are built on the first read after
+ * it changed, and then kept until the next change of that topic.
+ */
+public class TopicAggregateView implements CatalogListener {
+
+    private static final Topic[] TOPICS = Topic.values();
+
+    private final Shelf[] shelves = new Shelf[TOPICS.length];
+    private final long[] bookCounts = new long[TOPICS.length];
+    private final int[] volumeCounts = new int[TOPICS.length];
+    private volatile State state;
+
+    public TopicAggregateView() {
+        for (int t = 0; t < shelves.length; t++) {
+            shelves[t] = Shelf.empty();
+        }
+        publish();
+    }
+
+    @Override
+    public void added(long id, Book book) {
+        add(id, book);
+        publish();
+    }
+
+    @Override
+    public void removed(long id, Book book) {
+        remove(id, book);
+        publish();
+    }
+
+    /**
+     * Applies the removal and the addition before publishing, so that no reader sees the book
+     * missing, or on two topics.
+     */
+    @Override
+    public void updated(long id, Book previous, Book book) {
+        remove(id, previous);
+        add(id, book);
+        publish();
+    }
+
+    private void add(long id, Book book) {
+        int t = book.getTopic().ordinal();
+        shelves[t] = shelves[t].with(id, book);
+        bookCounts[t]++;
+        volumeCounts[t] += book.getPageCounts().length;
+    }
+
+    private void remove(long id, Book book) {
+        int t = book.getTopic().ordinal();
+        shelves[t] = shelves[t].without(id);
+        bookCounts[t]--;
+        volumeCounts[t] -= book.getPageCounts().length;
+    }
+
+    private void publish() {
+        state = new State(shelves.clone(), new Counts(bookCounts.clone(), volumeCounts.clone()));
+    }
+
+    /**
+     * An immutable snapshot of the per-topic counters.
+     */
+    public Counts counts() {
+        return state.counts;
+    }
+
+    /**
+     * An immutable snapshot of the counters and the books.
+     */
+    public State state() {
+        return state;
+    }
+
+    /**
+     * A map associating each topic with the total number of volumes on that topic:
+     */
+    public Map<Topic, Integer> volumeCountByTopic() {
+        return counts().volumeCountByTopic();
+    }
+
+    public Map<Topic, Long> bookCountByTopic() {
+        return counts().bookCountByTopic();
+    }
+
+    /**
+     * The topic with the most books - most popular topic:
+     */
+    public Optional<Topic> mostPopularTopic() {
+        return counts().mostPopularTopic();
+    }
+
+    /**
+     * A map classifying books by topic:
+     */
+    public Map<Topic, List<Book>> booksByTopic() {
+        return state.booksByTopic();
+    }
+
+    /**
+     * A map from each topic to the concatenation of all the book titles on that topic:
+     */
+    public Map<Topic, String> concatenatedTitlesByTopic() {
+        return state.concatenatedTitlesByTopic();
+    }
+
+    public static final class State {
+        private final Shelf[] shelves;
+        private final Counts counts;
+
+        private State(Shelf[] shelves, Counts counts) {
+            this.shelves = shelves;
+            this.counts = counts;
+        }
+
+        public Counts counts() {
+            return counts;
+        }
+
+        /**
+         * Like the {@code groupingBy} result, only topics that have at least one book appear;
+         * the lists are unmodifiable.
+         */
+        public Map<Topic, List<Book>> booksByTopic() {
+            Map<Topic, List<Book>> result = new EnumMap<>(Topic.class);
+            for (Topic topic : TOPICS) {
+                Shelf shelf = shelves[topic.ordinal()];
+                if (!shelf.isEmpty()) {
+                    result.put(topic, shelf.books());
+                }
+            }
+            return result;
+        }
+
+        public Map<Topic, String> concatenatedTitlesByTopic() {
+            Map<Topic, String> result = new EnumMap<>(Topic.class);
+            for (Topic topic : TOPICS) {
+                Shelf shelf = shelves[topic.ordinal()];
+                if (!shelf.isEmpty()) {
+                    result.put(topic, shelf.titles());
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The books on one topic, ordered by id, in the first {@code size} slots of arrays that
+     * later shelves may share. A shelf never changes: a new id beyond the last is written to
+     * the slot after it, which no earlier shelf reads, if no other shelf has taken that slot
+     * yet; any other change copies the arrays.
+     */
+    private static final class Shelf {
+        private final Slots slots;
+        private final int size;
+        // built on demand; a race only builds an equal String twice
+        private String titles;
+
+        /**
+         * A new empty shelf, with arrays of its own.
+         */
+        static Shelf empty() {
+            return new Shelf(new Slots(new long[8], new Book[8], 0), 0);
+        }
+
+        Shelf(Slots slots, int size) {
+            this.slots = slots;
+            this.size = size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        Shelf with(long id, Book book) {
+            if (size == slots.used && (size == 0 || id > slots.ids[size - 1])) {
+                Slots target = slots;
+                if (size == target.ids.length) {
+                    target = new Slots(Arrays.copyOf(target.ids, 2 * size), Arrays.copyOf(target.books, 2 * size), size);
+                }
+                target.ids[size] = id;
+                target.books[size] = book;
+                target.used++;
+                return new Shelf(target, size + 1);
+            }
+            int at = Arrays.binarySearch(slots.ids, 0, size, id);
+            if (at >= 0) {
+                throw new IllegalStateException("Book " + id + " is already on the shelf");
+            }
+            at = -at - 1;
+            long[] ids = new long[size + 8];
+            Book[] books = new Book[size + 8];
+            System.arraycopy(slots.ids, 0, ids, 0, at);
+            System.arraycopy(slots.books, 0, books, 0, at);
+            ids[at] = id;
+            books[at] = book;
+            System.arraycopy(slots.ids, at, ids, at + 1, size - at);
+            System.arraycopy(slots.books, at, books, at + 1, size - at);
+            return new Shelf(new Slots(ids, books, size + 1), size + 1);
+        }
+
+        Shelf without(long id) {
+            int at = Arrays.binarySearch(slots.ids, 0, size, id);
+            if (at < 0) {
+                return this;
+            }
+            long[] ids = new long[size + 7];
+            Book[] books = new Book[size + 7];
+            System.arraycopy(slots.ids, 0, ids, 0, at);
+            System.arraycopy(slots.books, 0, books, 0, at);
+            System.arraycopy(slots.ids, at + 1, ids, at, size - at - 1);
+            System.arraycopy(slots.books, at + 1, books, at, size - at - 1);
+            return new Shelf(new Slots(ids, books, size - 1), size - 1);
+        }
+
+        List<Book> books() {
+            return Collections.unmodifiableList(Arrays.asList(slots.books).subList(0, size));
+        }
+
+        String titles() {
+            String joined = titles;
+            if (joined == null) {
+                joined = Arrays.stream(slots.books, 0, size).map(Book::getTitle).collect(Collectors.joining(";"));
+                titles = joined;
+            }
+            return joined;
+        }
+    }
+
+    /**
+     * Arrays shared by successive shelves, and how many of their slots have been filled. Only
+     * the writer thread changes them, before publishing the state that reads the new slots.
+     */
+    private static final class Slots {
+        final long[] ids;
+        final Book[] books;
+        int used;
+
+        Slots(long[] ids, Book[] books, int used) {
+            this.ids = ids;
+            this.books = books;
+            this.used = used;
+        }
+    }
+
+    public static final class Counts {
+        private final long[] bookCounts;
+        private final int[] volumeCounts;
+
+        private Counts(long[] bookCounts, int[] volumeCounts) {
+            this.bookCounts = bookCounts;
+            this.volumeCounts = volumeCounts;
+        }
+
+        public long bookCount(Topic topic) {
+            return bookCounts[topic.ordinal()];
+        }
+
+        public int volumeCount(Topic topic) {
+            return volumeCounts[topic.ordinal()];
+        }
+
+        /**
+         * Like the {@code groupingBy} result, only topics that have at least one book appear.
+         */
+        public Map<Topic, Integer> volumeCountByTopic() {
+            Map<Topic, Integer> result = new EnumMap<>(Topic.class);
+            for (Topic topic : TOPICS) {
+                if (bookCounts[topic.ordinal()] > 0) {
+                    result.put(topic, volumeCounts[topic.ordinal()]);
+                }
+            }
+            return result;
+        }
+
+        public Map<Topic, Long> bookCountByTopic() {
+            Map<Topic, Long> result = new EnumMap<>(Topic.class);
+            for (Topic topic : TOPICS) {
+                if (bookCounts[topic.ordinal()] > 0) {
+                    result.put(topic, bookCounts[topic.ordinal()]);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Ties between equally popular topics go to the topic declared first.
+         */
+        public Optional<Topic> mostPopularTopic() {
+            Topic best = null;
+            for (Topic topic : TOPICS) {
+                long count = bookCounts[topic.ordinal()];
+                if (count > 0 && (best == null || count > bookCounts[best.ordinal()])) {
+                    best = topic;
+                }
+            }
+            return Optional.ofNullable(best);
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package com.mastering.lambdas.chapter5;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A test on the raw UTF-8 bytes of a line that every line the regex can match passes, so
+ * that only the lines that pass need to be decoded and matched.
+ * <p>
+ * The regex is read for what every match must contain: a run of literal characters, such as
+ * {@code timeout} in {@code ERROR [0-9]+ .*timeout}, or a character of a class, such as a digit
+ * in {@code [-+]?[0-9]*\.?[0-9]+}. The longest literal is searched for, or, if there is none
+ * of two or more bytes, the smallest class. Anything the reader does not follow, such as
+ * alternation, flags or lookaround, gives {@link #NONE}, which passes every line, so the
+ * prefilter can only ever save work, never change the result.
+ * <p>
+ * A literal is searched for eight bytes at a time, by finding its first byte in a long with
+ * the usual has-zero-byte trick, and then comparing the rest.
+ */
+public final class BytePrefilter {
+
+    /**
+     * Passes every line.
+     */
+    public static final BytePrefilter NONE = new BytePrefilter(null, null);
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private final byte[] literal;
+    private final boolean[] set;
+
+    private BytePrefilter(byte[] literal, boolean[] set) {
+        this.literal = literal;
+        this.set = set;
+    }
+
+    public static BytePrefilter of(Pattern pattern) {
+        String regex = pattern.pattern();
+        int flags = pattern.flags();
+        if ((flags & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.CANON_EQ | Pattern.UNICODE_CHARACTER_CLASS)) != 0) {
+            return NONE;
+        }
+        if ((flags & Pattern.LITERAL) != 0) {
+            return regex.isEmpty() ? NONE : new BytePrefilter(regex.getBytes(StandardCharsets.UTF_8), null);
+        }
+        return new Reader(regex).read();
+    }
+
+    public boolean test(DispLine line) {
+        return mayMatch(line.window, line.offset, line.offset + line.length());
+    }
+
+    /**
+     * Whether the bytes between {@code from} and {@code to} may hold a match.
+     */
+    public boolean mayMatch(ByteBuffer bytes, int from, int to) {
+        if (literal != null) {
+            return contains(bytes, from, to);
+        }
+        if (set != null) {
+            for (int i = from; i < to; i++) {
+                if (set[bytes.get(i) & 0xFF]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private boolean contains(ByteBuffer bytes, int from, int to) {
+        int last = to - literal.length;
+        long firsts = (literal[0] & 0xFFL) * ONES;
+        int i = from;
+        while (i <= last) {
+            if (i + Long.BYTES <= to) {
+                long word = bytes.getLong(i) ^ firsts;
+                long zeros = (word - ONES) & ~word & HIGHS;
+                if (zeros == 0) {
+                    i += Long.BYTES;
+                    continue;
+                }
+                // the buffer is big-endian, so the earliest byte is the highest; a borrow may
+                // flag a byte before the first occurrence, but never skip past it
+                i += Long.numberOfLeadingZeros(zeros) >>> 3;
+                if (i > last) {
+                    return false;
+                }
+            }
+            if (startsAt(bytes, i)) {
+                return true;
+            }
+            i++;
+        }
+        return false;
+    }
+
+    private boolean startsAt(ByteBuffer bytes, int index) {
+        for (int j = 0; j < literal.length; j++) {
+            if (bytes.get(index + j) != literal[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        if (literal != null) {
+            return "BytePrefilter[literal " + new String(literal, StandardCharsets.UTF_8) + "]";
+        }
+        if (set != null) {
+            StringBuilder sb = new StringBuilder("BytePrefilter[one of ");
+            for (int b = 0; b < set.length; b++) {
+                if (set[b]) {
+                    sb.append((char) b);
+                }
+            }
+            return sb.append(']').toString();
+        }
+        return "BytePrefilter[none]";
+    }
+
+    /**
+     * Reads a regex one atom at a time, collecting the runs of literals and the classes that
+     * every match must contain; on anything it does not follow, {@link #read()} gives up.
+     */
+    private static final class Reader {
+        private final String regex;
+        private int pos;
+        private final List<byte[]> literals = new ArrayList<>();
+        private final List<boolean[]> sets = new ArrayList<>();
+        private final ByteArrayOutputStream run = new ByteArrayOutputStream();
+
+        Reader(String regex) {
+            this.regex = regex;
+        }
+
+        /**
+         * An atom: the UTF-8 bytes of a literal character, an ASCII class, or neither, for
+         * an atom that tells nothing, such as {@code .} or a group.
+         */
+        private record Atom(byte[] literal, boolean[] set) {
+            static final Atom UNKNOWN = new Atom(null, null);
+        }
+
+        private static final class Unsupported extends RuntimeException {
+            Unsupported() {
+                super(null, null, false, false);
+            }
+        }
+
+        BytePrefilter read() {
+            try {
+                while (pos < regex.length()) {
+                    char c = regex.charAt(pos);
+                    if (c == '^' || c == '$') {
+                        pos++;
+                        endRun();
+                        continue;
+                    }
+                    if (c == '\\' && pos + 1 < regex.length() && "bBAGzZ".indexOf(regex.charAt(pos + 1)) >= 0) {
+                        pos += 2;
+                        endRun();
+                        continue;
+                    }
+                    if (c == '\\' && pos + 1 < regex.length() && regex.charAt(pos + 1) == 'Q') {
+                        quoted();
+                        continue;
+                    }
+                    Atom atom = atom();
+                    quantified(atom);
+                }
+                endRun();
+            } catch (Unsupported e) {
+                return NONE;
+            }
+            return choose();
+        }
+
+        private Atom atom() {
+            char c = regex.charAt(pos);
+            switch (c) {
+                case '\\':
+                    return escape();
+                case '[':
+                    return characterClass();
+                case '.':
+                    pos++;
+                    return Atom.UNKNOWN;
+                case '(':
+                    group();
+                    return Atom.UNKNOWN;
+                case '|', ')', '*', '+', '?', '{':
+                    throw new Unsupported();
+                default:
+                    int cp = regex.codePointAt(pos);
+                    pos += Character.charCount(cp);
+                    return new Atom(utf8(cp), null);
+            }
+        }
+
+        private Atom escape() {
+            if (pos + 1 >= regex.length()) {
+                throw new Unsupported();
+            }
+            char c = regex.charAt(pos + 1);
+            pos += 2;
+            boolean[] set = namedClass(c);
+            if (set != null) {
+                return new Atom(null, set);
+            }
+            int control = "tnrfae".indexOf(c);
+            if (control >= 0) {
+                return new Atom(new byte[]{(byte) "\t\n\r\f\u0007\u001b".charAt(control)}, null);
+            }
+            if (Character.isLetterOrDigit(c) || c > 0x7F) {
+                throw new Unsupported();
+            }
+            return new Atom(new byte[]{(byte) c}, null);
+        }
+
+        /**
+         * The bytes of {@code \d}, {@code \w} or {@code \s}, which are ASCII unless
+         * UNICODE_CHARACTER_CLASS is set; the negated classes also match non-ASCII characters.
+         */
+        private static boolean[] namedClass(char c) {
+            boolean[] set = new boolean[256];
+            switch (c) {
+                case 'd' -> range(set, '0', '9');
+                case 'w' -> {
+                    range(set, '0', '9');
+                    range(set, 'a', 'z');
+                    range(set, 'A', 'Z');
+                    set['_'] = true;
+                }
+                case 's' -> {
+                    for (char s : " \t\n\u000B\f\r".toCharArray()) {
+                        set[s] = true;
+                    }
+                }
+                default -> {
+                    return null;
+                }
+            }
+            return set;
+        }
+
+        private static void range(boolean[] set, char from, char to) {
+            for (char c = from; c <= to; c++) {
+                set[c] = true;
+            }
+        }
+
+        /**
+         * A class of ASCII characters, ranges and {@code \d}, {@code \w}, {@code \s}; a negated
+         * class or one with non-ASCII characters tells nothing.
+         */
+        private Atom characterClass() {
+            pos++;
+            boolean negated = pos < regex.length() && regex.charAt(pos) == '^';
+            if (negated) {
+                pos++;
+            }
+            boolean[] set = new boolean[256];
+            boolean ascii = true;
+            boolean first = true;
+            while (true) {
+                if (pos >= regex.length()) {
+                    throw new Unsupported();
+                }
+                char c = regex.charAt(pos);
+                if (c == ']' && !first) {
+                    pos++;
+                    break;
+                }
+                first = false;
+                if (c == '[' || regex.startsWith("&&", pos)) {
+                    throw new Unsupported();
+                }
+                int from;
+                if (c == '\\') {
+                    if (pos + 1 >= regex.length()) {
+                        throw new Unsupported();
+                    }
+                    char e = regex.charAt(pos + 1);
+                    pos += 2;
+                    boolean[] named = namedClass(e);
+                    if (named != null) {
+                        for (int b = 0; b < 256; b++) {
+                            set[b] |= named[b];
+                        }
+                        continue;
+                    }
+                    if ("DWS".indexOf(e) >= 0) {
+                        ascii = false;
+                        continue;
+                    }
+                    if (Character.isLetterOrDigit(e)) {
+                        throw new Unsupported();
+                    }
+                    from = e;
+                } else {
+                    from = c;
+                    pos++;
+                }
+                int to = from;
+                if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+                    to = regex.charAt(pos + 1);
+                    if (to == '\\' || to == '[') {
+                        throw new Unsupported();
+                    }
+                    pos += 2;
+                }
+                if (to > 0x7F) {
+                    ascii = false;
+                    to = 0x7F;
+                }
+                for (int b = from; b <= to; b++) {
+                    set[b] = true;
+                }
+            }
+            return negated || !ascii ? Atom.UNKNOWN : new Atom(null, set);
+        }
+
+        /**
+         * Skips a plain group; one starting with {@code (?}, for flags or lookaround, is not
+         * followed.
+         */
+        private void group() {
+            if (regex.startsWith("(?", pos)) {
+                throw new Unsupported();
+            }
+            int depth = 0;
+            for (; pos < regex.length(); pos++) {
+                char c = regex.charAt(pos);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '[') {
+                    throw new Unsupported();
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    pos++;
+                    return;
+                }
+            }
+            throw new Unsupported();
+        }
+
+        private void quoted() {
+            int end = regex.indexOf("\\E", pos + 2);
+            String text = regex.substring(pos + 2, end < 0 ? regex.length() : end);
+            pos = end < 0 ? regex.length() : end + 2;
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0) {
+                return;
+            }
+            if (pos < regex.length() && "?*+{".indexOf(regex.charAt(pos)) >= 0) {
+                // the quantifier applies to the last character only
+                int cp = text.codePointBefore(text.length());
+                byte[] last = utf8(cp);
+                run.write(bytes, 0, bytes.length - last.length);
+                quantified(new Atom(last, null));
+            } else {
+                run.write(bytes, 0, bytes.length);
+            }
+        }
+
+        /**
+         * Reads the quantifier after an atom, if any, and records what the atom requires.
+         */
+        private void quantified(Atom atom) {
+            int min = 1;
+            boolean repeated = false;
+            if (pos < regex.length()) {
+                char q = regex.charAt(pos);
+                int start = pos;
+                if (q == '?' || q == '*') {
+                    min = 0;
+                    pos++;
+                } else if (q == '+') {
+                    repeated = true;
+                    pos++;
+                } else if (q == '{') {
+                    int close = regex.indexOf('}', pos);
+                    if (close < 0) {
+                        throw new Unsupported();
+                    }
+                    String[] bounds = regex.substring(pos + 1, close).split(",", -1);
+                    try {
+                        min = Integer.parseInt(bounds[0].trim());
+                        repeated = bounds.length > 1 || min > 1;
+                    } catch (NumberFormatException e) {
+                        throw new Unsupported();
+                    }
+                    pos = close + 1;
+                }
+                if (pos > start && pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+                    // lazy or possessive
+                    pos++;
+                }
+            }
+            if (min == 0) {
+                endRun();
+                return;
+            }
+            if (atom.literal != null) {
+                run.write(atom.literal, 0, atom.literal.length);
+                if (repeated) {
+                    endRun();
+                }
+            } else {
+                endRun();
+                if (atom.set != null) {
+                    sets.add(atom.set);
+                }
+            }
+        }
+
+        private void endRun() {
+            if (run.size() > 0) {
+                literals.add(run.toByteArray());
+                run.reset();
+            }
+        }
+
+        private BytePrefilter choose() {
+            byte[] longest = null;
+            for (byte[] literal : literals) {
+                if (longest == null || literal.length > longest.length) {
+                    longest = literal;
+                }
+            }
+            if (longest != null && longest.length > 1) {
+                return new BytePrefilter(longest, null);
+            }
+            boolean[] smallest = null;
+            int smallestSize = Integer.MAX_VALUE;
+            if (longest != null) {
+                smallest = new boolean[256];
+                smallest[longest[0] & 0xFF] = true;
+                smallestSize = 1;
+            }
+            for (boolean[] set : sets) {
+                int size = 0;
+                for (boolean b : set) {
+                    size += b ? 1 : 0;
+                }
+                if (size < smallestSize) {
+                    smallest = set;
+                    smallestSize = size;
+                }
+            }
+            return smallest == null ? NONE : new BytePrefilter(null, smallest);
+        }
+
+        private static byte[] utf8(int codePoint) {
+            return new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.mastering.lambdas.chapter5;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sequential grep over a mapped log, decoding and matching every line, against testing each
+ * line's bytes with a {@link BytePrefilter} first, and the prefilter alone. Each operation
+ * scans the whole file, so bytes per second are {@link #bytes()} times the operations per
+ * second.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BytePrefilterBenchmark {
+
+    @Param({"1000000"})
+    public int lines;
+
+    @Param({"WARN .* in [0-9]+ms after timeout", "[-+]?[0-9]*\\.?[0-9]+", "user=alice"})
+    public String regex;
+
+    private Path file;
+    private FileChannel channel;
+    private Pattern pattern;
+    private BytePrefilter prefilter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("byte-prefilter", ".log");
+        Random random = new Random(42);
+        String[] levels = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+        String[] users = {"bob", "carol", "dave", "erin", "frank", "grace", "heidi", "alice"};
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < lines; i++) {
+                boolean numeric = random.nextInt(3) == 0;
+                writer.write(levels[random.nextInt(levels.length)] + " request served for user="
+                        + users[random.nextInt(random.nextInt(50) == 0 ? users.length : users.length - 1)]
+                        + (numeric ? " in " + random.nextInt(500) + "ms" : " from cache")
+                        + (random.nextInt(4) == 0 ? " after timeout" : "") + "\n");
+            }
+        }
+        channel = FileChannel.open(file);
+        pattern = Pattern.compile(regex);
+        prefilter = BytePrefilter.of(pattern);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    public long bytes() throws IOException {
+        return channel.size();
+    }
+
+    @Benchmark
+    public long regexOnEveryLine() throws IOException {
+        Matcher matcher = pattern.matcher("");
+        return StreamSupport.stream(new LineSpliterator(channel), false)
+                .filter(dl -> matcher.reset(dl.line()).find())
+                .count();
+    }
+
+    @Benchmark
+    public long prefilteredRegex() throws IOException {
+        Matcher matcher = pattern.matcher("");
+        return StreamSupport.stream(new LineSpliterator(channel), false)
+                .filter(prefilter::test)
+                .filter(dl -> matcher.reset(dl.line()).find())
+                .count();
+    }
+
+    @Benchmark
+    public long prefilterOnly() throws IOException {
+        return StreamSupport.stream(new LineSpliterator(channel), false)
+                .filter(prefilter::test)
+                .count();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -8,19 +8,13 @@ import lombok.Setter;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.BitSet;
 import java.util.List;
-import java.util.Spliterator;
-import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 @Getter
 @Setter
@@ -96,41 +90,47 @@ public class Demo5 {
         linesResult.forEach(line -> {});
     }
 
-    private void showFilesAndLengths() {
-        try (Stream<Path> paths = Files.list(Paths.get("./src"))) {
-            paths
-                    .map(Path::toFile)
-                    .filter(File::isFile)
-                    .map(f -> f.getAbsolutePath() + " " + f.length())
-                    .forEachOrdered(System.out::println);
+    /**
+     * The lines of every entry of ./src, read a few files ahead with at most 8 open at a time;
+     * entries that cannot be read, such as directories, go to the error handler, not the lines.
+     */
+    private void handleIOExceptionV4() {
+        List<Path> paths;
+        try (Stream<Path> list = Files.list(Paths.get("./src"))) {
+            paths = list.sorted().toList();
         } catch (IOException e) {
-            e.printStackTrace();
             throw new UncheckedIOException(e);
         }
+        FileFanOut fanOut = new FileFanOut(8, (path, e) -> System.err.println("Unreadable file: " + path + " (" + e + ")"));
+        try (Stream<String> lines = fanOut.lines(paths)) {
+            System.out.println("Lines in ./src: " + lines.count());
+        }
     }
 
+    /**
+     * The files directly in ./src with their lengths, from attributes read once per entry.
+     */
+    private void showFilesAndLengths() {
+        try (Stream<TreeWalker.Entry> entries = TreeWalker.builder(Paths.get("./src")).maxDepth(1).build().stream()) {
+            entries
+                    .filter(TreeWalker.Entry::isRegularFile)
+                    .map(e -> e.path().toAbsolutePath() + " " + e.size())
+                    .sorted()
+                    .forEachOrdered(System.out::println);
+        }
+    }
+
+    /**
+     * Searches the test files of the tree for numbers, reading each file once, in parallel,
+     * and printing the matches in file and line order.
+     */
     private void grepH() {
         Path start = new File(".").toPath();
         Pattern pattern = Pattern.compile("[-+]?[0-9]*\\.?[0-9]+");
-        PathMatcher pathMatcher =
-                FileSystems.getDefault().getPathMatcher("glob:" + "**/test*.txt");
-
-        try (Stream<Path> pathStream = Files.walk(start)) {
-            pathStream
-                    .filter(Files::isRegularFile)
-                    .filter(pathMatcher::matches)
-                    .flatMap(path -> {
-                        try {
-                            return Files.readAllLines(path).stream()
-                                    .filter(line -> pattern.matcher(line).find())
-                                    .map(line -> path + ": " + line);
-                        } catch (IOException e) {
-                            return Stream.of("");
-                        }
-                    })
-                    .filter(line -> !line.isEmpty())
-                    .filter(line -> pattern.matcher(line).find())
-                    .forEach(System.out::println);
+
+        try {
+            new Grep(pattern, (path, e) -> System.err.println("Unreadable file: " + path + " (" + e + ")"))
+                    .search(start, "glob:" + "**/test*.txt", System.out::println);
         } catch (IOException e) {
             e.printStackTrace();
             throw new UncheckedIOException(e);
@@ -164,13 +164,12 @@ public class Demo5 {
         System.out.println();
 
         Path start = new File(".").toPath();
-        try (Stream<Path> pathStream = Files.walk(start)) {
-            pathStream
-                    .map(Path::toFile)
-                    .filter(File::isFile)
-                    .map(f -> f.getAbsolutePath() + " " + f.length())
-                    .forEachOrdered(System.out::println);
-        } catch (IOException e) {
+        try (Stream<TreeWalker.Entry> entries = TreeWalker.builder(start).build().stream()) {
+            entries
+                    .filter(TreeWalker.Entry::isRegularFile)
+                    .map(e -> e.path().toAbsolutePath() + " " + e.size())
+                    .forEach(System.out::println);
+        } catch (UncheckedIOException e) {
             e.printStackTrace();
         }
 
@@ -198,6 +197,7 @@ public class Demo5 {
                 .boxed().collect(Collectors.toList())); // prints [1, 3, 9, 12]
 
         demo5.showFilesAndLengths();
+        demo5.handleIOExceptionV4();
 
         System.out.println();
 
@@ -205,89 +205,3 @@ public class Demo5 {
         demo5.grepH();
     }
 }
-
-class DispLine {
-    final int disp;
-    final String line;
-
-    DispLine(int d, String l) {
-        disp = d;
-        line = l;
-    }
-
-    public String toString() {return disp + " " + line;}
-}
-
-class LineSpliterator implements Spliterator<DispLine> {
-    private static final int AVERAGE_LINE = 30;
-    private static final int LENGTH = 3;
-    private ByteBuffer bb;
-    private int lo, hi;
-
-    LineSpliterator(ByteBuffer bb, int lo, int hi) {
-        this.bb = bb;
-        this.lo = lo;
-        this.hi = hi;
-    }
-
-    LineSpliterator() {}
-
-    @Override
-    public boolean tryAdvance(Consumer<? super DispLine> action) {
-        int index = lo;
-        StringBuilder sb = new StringBuilder();
-        do {
-            sb.append((char) bb.get(index));
-        } while (bb.get(index++) != '\n');
-        action.accept(new DispLine(lo, sb.toString()));
-        lo = lo + sb.length();
-        return lo <= hi;
-    }
-
-    @Override
-    public Spliterator<DispLine> trySplit() {
-        int index = lo;
-        int mid = (lo + hi) >>> 1;
-        while (bb.get(index) != '\n') mid++;
-        LineSpliterator newSpliterator = null;
-        if (mid != hi) {
-            newSpliterator = new LineSpliterator(bb, lo, mid);
-            lo = mid + 1;
-        }
-        return newSpliterator;
-    }
-
-    @Override
-    public long estimateSize() {
-        return (((hi - lo) + 1) / AVERAGE_LINE) - LENGTH;
-    }
-
-    @Override
-    public int characteristics() {
-        return ORDERED | IMMUTABLE | NONNULL;
-    }
-
-    private void grepBSingleFile() {
-        Path start = new File(".\\src\\testGrepH.txt").toPath();
-        Pattern pattern = Pattern.compile("[-+]?[0-9]*\\.?[0-9]+");
-
-        try (FileChannel fc = FileChannel.open(start)) {
-            MappedByteBuffer bB =
-                    fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
-            Spliterator<DispLine> ls =
-                    new LineSpliterator(bB, 0, bB.limit() - 1);
-            StreamSupport.stream(ls, true)
-                    .filter(dl -> pattern.matcher(dl.line).find())
-                    .forEachOrdered(System.out::print);
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new UncheckedIOException(e);
-        }
-    }
-
-    public static void main(String[] args) {
-        //ByteBuffer buffer = ByteBuffer.allocate(1000);
-        new LineSpliterator().grepBSingleFile();
-    }
-}
-
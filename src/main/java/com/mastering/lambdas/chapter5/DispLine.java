@@ -0,0 +1,64 @@
+package com.mastering.lambdas.chapter5;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A line of a file and its displacement, the byte offset at which it starts. The line is
+ * kept as a range of the mapped window it was read from, without its terminator, and is only
+ * decoded from UTF-8 when {@link #line()} is first called, so lines that are filtered on their
+ * bytes are never decoded at all.
+ */
+public final class DispLine {
+    public final long disp;
+    final ByteBuffer window;
+    final int offset;
+    private final int length;
+    private String line;
+
+    DispLine(long disp, ByteBuffer window, int offset, int length) {
+        this.disp = disp;
+        this.window = window;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * The number of bytes in the line, without its terminator.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * The byte at {@code index} of the line.
+     */
+    public byte byteAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return window.get(offset + index);
+    }
+
+    /**
+     * A read-only view of the bytes of the line, sharing the mapped window.
+     */
+    public ByteBuffer bytes() {
+        return window.slice(offset, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * The line decoded from UTF-8, once.
+     */
+    public String line() {
+        String decoded = line;
+        if (decoded == null) {
+            byte[] bytes = new byte[length];
+            window.get(offset, bytes);
+            line = decoded = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return decoded;
+    }
+
+    public String toString() {return disp + " " + line();}
+}
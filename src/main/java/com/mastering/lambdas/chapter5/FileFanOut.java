@@ -0,0 +1,223 @@
+package com.mastering.lambdas.chapter5;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The lines of many files as one stream, in file order, instead of {@code flatMap} over
+ * {@code Files.lines}, which opens files on the stream's threads and turns I/O errors into
+ * lines or exceptions.
+ * <p>
+ * While the stream's consumer drains one file, the next files are opened and read ahead on
+ * virtual threads, into a bounded buffer of lines per file. A file is only opened once it
+ * is among the {@code maxOpen} files being read or waiting to be drained, a semaphore caps
+ * the files open at once at {@code maxOpen}, and each file is closed as soon as it has been
+ * read to the end. A file that cannot be read is passed, with its exception, to the error
+ * handler, on the consumer's thread and in file order, after whatever lines were read from
+ * it; the stream then goes on with the next file.
+ * <p>
+ * The stream must be closed if it is not drained, to stop the reads ahead and close their files.
+ */
+public final class FileFanOut {
+    private static final int BATCH = 256;
+    private static final int BUFFERED_BATCHES = 16;
+    private static final List<String> END = List.of();
+
+    private final int maxOpen;
+    private final Charset charset;
+    private final BiConsumer<? super Path, ? super IOException> errors;
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger peakOpen = new AtomicInteger();
+
+    public FileFanOut(int maxOpen, BiConsumer<? super Path, ? super IOException> errors) {
+        this(maxOpen, StandardCharsets.UTF_8, errors);
+    }
+
+    public FileFanOut(int maxOpen, Charset charset, BiConsumer<? super Path, ? super IOException> errors) {
+        if (maxOpen < 1) {
+            throw new IllegalArgumentException("maxOpen must be positive: " + maxOpen);
+        }
+        this.maxOpen = maxOpen;
+        this.charset = Objects.requireNonNull(charset);
+        this.errors = Objects.requireNonNull(errors);
+    }
+
+    /**
+     * The most files this fan-out has had open at once.
+     */
+    int peakOpen() {
+        return peakOpen.get();
+    }
+
+    public Stream<String> lines(List<Path> files) {
+        Run run = new Run(List.copyOf(files));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(run, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(run::close);
+    }
+
+    /**
+     * One pass over the files: the files being read ahead, in order, and the lines of the one
+     * being drained.
+     */
+    private final class Run implements Iterator<String> {
+        private final List<Path> files;
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final Semaphore permits = new Semaphore(maxOpen);
+        private final Deque<FileBuffer> ahead = new ArrayDeque<>();
+        private volatile boolean closed;
+        private int next;
+        private FileBuffer current;
+        private Iterator<String> batch = END.iterator();
+
+        Run(List<Path> files) {
+            this.files = files;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!batch.hasNext()) {
+                if (current == null) {
+                    readAhead();
+                    current = ahead.poll();
+                    if (current == null) {
+                        executor.shutdown();
+                        return false;
+                    }
+                    readAhead();
+                }
+                List<String> lines = current.take();
+                if (lines == END) {
+                    if (current.error != null) {
+                        errors.accept(current.path, current.error);
+                    }
+                    current = null;
+                } else {
+                    batch = lines.iterator();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+
+        private void readAhead() {
+            while (ahead.size() + (current == null ? 0 : 1) < maxOpen && next < files.size()) {
+                FileBuffer buffer = new FileBuffer(files.get(next++));
+                ahead.add(buffer);
+                executor.execute(() -> read(buffer));
+            }
+        }
+
+        private void read(FileBuffer buffer) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                opened();
+                try (BufferedReader reader = Files.newBufferedReader(buffer.path, charset)) {
+                    List<String> lines = new ArrayList<>(BATCH);
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        lines.add(line);
+                        if (lines.size() == BATCH) {
+                            if (!buffer.put(lines)) {
+                                return;
+                            }
+                            lines = new ArrayList<>(BATCH);
+                        }
+                    }
+                    if (!lines.isEmpty() && !buffer.put(lines)) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    buffer.error = e;
+                } finally {
+                    open.decrementAndGet();
+                }
+            } finally {
+                permits.release();
+            }
+            buffer.put(END);
+        }
+
+        private void opened() {
+            int now = open.incrementAndGet();
+            peakOpen.accumulateAndGet(now, Math::max);
+        }
+
+        void close() {
+            closed = true;
+            executor.shutdownNow();
+        }
+
+        /**
+         * The lines read from one file and not yet drained, and the error that ended the
+         * reading, if any, which is published to the consumer by putting END after it.
+         */
+        private final class FileBuffer {
+            final Path path;
+            final BlockingQueue<List<String>> lines = new ArrayBlockingQueue<>(BUFFERED_BATCHES);
+            IOException error;
+
+            FileBuffer(Path path) {
+                this.path = path;
+            }
+
+            /**
+             * Waits for room, giving up once the stream is closed.
+             */
+            boolean put(List<String> batch) {
+                try {
+                    while (!lines.offer(batch, 10, TimeUnit.MILLISECONDS)) {
+                        if (closed) {
+                            return false;
+                        }
+                    }
+                    return true;
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+
+            List<String> take() {
+                try {
+                    return lines.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new IllegalStateException("Interrupted while reading " + path, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.mastering.lambdas.chapter5;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Counting the lines of many small files: {@code flatMap} over {@code Files.lines}, sequential
+ * and parallel, against {@link FileFanOut}, which reads ahead with at most {@code maxOpen}
+ * files open.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class FileFanOutBenchmark {
+
+    @Param({"100000"})
+    public int files;
+
+    @Param({"64"})
+    public int maxOpen;
+
+    private Path root;
+    private List<Path> paths;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("file-fan-out");
+        paths = new ArrayList<>(files);
+        for (int f = 0; f < files; f++) {
+            Path dir = root.resolve("d" + f / 1000);
+            if (f % 1000 == 0) {
+                Files.createDirectories(dir);
+            }
+            int file = f;
+            paths.add(Files.write(dir.resolve("f" + f + ".log"),
+                    IntStream.range(0, 20 + f % 40).mapToObj(i -> file + " line " + i).toList()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static Stream<String> lines(Path path) {
+        try {
+            return Files.lines(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public long flatMapFilesLines() {
+        return paths.stream().flatMap(FileFanOutBenchmark::lines).count();
+    }
+
+    @Benchmark
+    public long parallelFlatMapFilesLines() {
+        return paths.parallelStream().flatMap(FileFanOutBenchmark::lines).count();
+    }
+
+    @Benchmark
+    public long fileFanOut() {
+        try (Stream<String> lines = new FileFanOut(maxOpen, (path, e) -> {}).lines(paths)) {
+            return lines.count();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,251 @@
+package com.mastering.lambdas.chapter5;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A recursive grep: the regular files of a tree are searched in parallel, large files in
+ * chunks of about {@code chunkSize} bytes split at line boundaries by {@link LineSpliterator},
+ * and the matches are reported in path order, then line order, with their line numbers and
+ * byte offsets, just as a sequential search would report them.
+ * <p>
+ * The chunks are searched as tasks on an executor, and the calling thread reports their
+ * results in order. At most {@code window} chunks are searched ahead of the one being
+ * reported, so however large the tree, only that many chunks' matches are held in memory,
+ * and only the files they belong to are open. Since a chunk does not know on which line it
+ * starts, it counts its lines, and the reporting thread adds up the counts of the chunks
+ * before it to number the lines of a match.
+ * <p>
+ * Lines are tested first with a {@link BytePrefilter} derived from the pattern, so only the
+ * lines that may match are decoded.
+ * <p>
+ * A file that cannot be opened or read is passed with its {@code IOException} to the
+ * {@code errors} callback, and the search goes on with the next file, as {@code grep -r}
+ * does; the matches found in a file before a read error have been reported already.
+ */
+public final class Grep {
+    static final long DEFAULT_CHUNK = 1 << 22;
+
+    private final Pattern pattern;
+    private final BytePrefilter prefilter;
+    private final long chunkSize;
+    private final int window;
+    private final Executor executor;
+    private final BiConsumer<? super Path, ? super IOException> errors;
+
+    public Grep(Pattern pattern, BiConsumer<? super Path, ? super IOException> errors) {
+        this(pattern, DEFAULT_CHUNK, 4 * ForkJoinPool.getCommonPoolParallelism(), ForkJoinPool.commonPool(), errors);
+    }
+
+    public Grep(Pattern pattern, long chunkSize, int window, Executor executor,
+                BiConsumer<? super Path, ? super IOException> errors) {
+        if (chunkSize < 1 || window < 1) {
+            throw new IllegalArgumentException("chunkSize and window must be positive: " + chunkSize + ", " + window);
+        }
+        this.pattern = Objects.requireNonNull(pattern);
+        this.prefilter = BytePrefilter.of(pattern);
+        this.chunkSize = chunkSize;
+        this.window = window;
+        this.executor = Objects.requireNonNull(executor);
+        this.errors = Objects.requireNonNull(errors);
+    }
+
+    /**
+     * A matching line: its file, its number counting from 1, the byte offset at which it
+     * starts, and its text.
+     */
+    public record Match(Path file, long lineNumber, long disp, String line) {
+        @Override
+        public String toString() {
+            return file + ":" + lineNumber + ":" + disp + ":" + line;
+        }
+    }
+
+    /**
+     * Searches the regular files under {@code root} whose paths match {@code glob}, such as
+     * {@code "glob:**}{@code /*.log"}, or all of them if it is null.
+     *
+     * @return the number of matching lines
+     */
+    public long search(Path root, String glob, Consumer<? super Match> out) throws IOException {
+        PathMatcher matcher = glob == null ? path -> true : FileSystems.getDefault().getPathMatcher(glob);
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(Files::isRegularFile).filter(matcher::matches).sorted().toList();
+        }
+        return search(files, out);
+    }
+
+    /**
+     * Searches the files in the order given.
+     *
+     * @return the number of matching lines
+     */
+    public long search(List<Path> files, Consumer<? super Match> out) throws IOException {
+        Deque<Pending> pending = new ArrayDeque<>();
+        long matches = 0;
+        try {
+            for (Path file : files) {
+                FileChannel channel;
+                try {
+                    channel = FileChannel.open(file);
+                } catch (IOException e) {
+                    errors.accept(file, e);
+                    continue;
+                }
+                OpenFile open = new OpenFile(file, channel);
+                List<Spliterator<DispLine>> chunks = new ArrayList<>();
+                try {
+                    split(new LineSpliterator(channel), chunks);
+                } catch (IOException | UncheckedIOException e) {
+                    chunks.clear();
+                    errors.accept(file, e instanceof UncheckedIOException u ? u.getCause() : (IOException) e);
+                } finally {
+                    if (chunks.isEmpty()) {
+                        channel.close();
+                    }
+                }
+                open.chunks = chunks.size();
+                for (Spliterator<DispLine> chunk : chunks) {
+                    if (pending.size() == window) {
+                        matches += report(pending.peekFirst(), out);
+                        pending.removeFirst();
+                    }
+                    pending.addLast(new Pending(open, CompletableFuture.supplyAsync(() -> search(chunk), executor)));
+                }
+            }
+            while (!pending.isEmpty()) {
+                matches += report(pending.peekFirst(), out);
+                pending.removeFirst();
+            }
+        } finally {
+            for (Pending p : pending) {
+                p.result.cancel(false);
+                p.file.channel.close();
+            }
+        }
+        return matches;
+    }
+
+    private void split(Spliterator<DispLine> spliterator, List<Spliterator<DispLine>> chunks) {
+        Spliterator<DispLine> prefix;
+        if (spliterator.estimateSize() > chunkSize / LineSpliterator.AVERAGE_LINE
+                && (prefix = spliterator.trySplit()) != null) {
+            split(prefix, chunks);
+            split(spliterator, chunks);
+        } else if (spliterator.estimateSize() > 0) {
+            chunks.add(spliterator);
+        }
+    }
+
+    private Chunk search(Spliterator<DispLine> lines) {
+        Chunk chunk = new Chunk();
+        Matcher matcher = pattern.matcher("");
+        lines.forEachRemaining(dl -> {
+            if (prefilter.test(dl)) {
+                String line = dl.line();
+                if (matcher.reset(line).find()) {
+                    chunk.hits.add(new Hit(chunk.count, dl.disp, line));
+                }
+            }
+            chunk.count++;
+        });
+        return chunk;
+    }
+
+    /**
+     * Reports the matches of a chunk, unless an earlier chunk of its file failed to read, and
+     * closes the file after its last chunk.
+     */
+    private long report(Pending pending, Consumer<? super Match> out) throws IOException {
+        OpenFile file = pending.file;
+        Chunk chunk = null;
+        try {
+            chunk = pending.result.join();
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof UncheckedIOException io)) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            if (!file.failed) {
+                file.failed = true;
+                errors.accept(file.path, io.getCause());
+            }
+        }
+        long reported = 0;
+        if (chunk != null && !file.failed) {
+            for (Hit hit : chunk.hits) {
+                out.accept(new Match(file.path, file.linesBefore + hit.index + 1, hit.disp, hit.line));
+            }
+            file.linesBefore += chunk.count;
+            reported = chunk.hits.size();
+        }
+        if (--file.chunks == 0) {
+            file.channel.close();
+        }
+        return reported;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: Grep <regex> <directory> [glob]");
+            return;
+        }
+        long count = new Grep(Pattern.compile(args[0]), (path, e) -> System.err.println("Unreadable file: " + path + " (" + e + ")"))
+                .search(Path.of(args[1]), args.length > 2 ? args[2] : null, System.out::println);
+        System.err.println(count + " matching lines");
+    }
+
+    /**
+     * A file with chunks still to report, the lines of those already reported, and whether
+     * one of them failed to read.
+     */
+    private static final class OpenFile {
+        final Path path;
+        final FileChannel channel;
+        int chunks;
+        long linesBefore;
+        boolean failed;
+
+        OpenFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private record Pending(OpenFile file, CompletableFuture<Chunk> result) {
+    }
+
+    /**
+     * The matches of a chunk, numbered by their index within it, and the number of lines it holds.
+     */
+    private static final class Chunk {
+        final List<Hit> hits = new ArrayList<>();
+        long count;
+    }
+
+    private record Hit(long index, long disp, String line) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.mastering.lambdas.chapter5;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Grepping a generated tree of logs, a few large and many small, printing every match:
+ * the walk-and-readAllLines pipeline {@code Demo5.grepH} used before, which tests the regex
+ * twice per match, against {@link Grep}, and against GNU {@code grep -rnb} in a process.
+ * Set {@code megabytes} to a few thousand for a multi-GB tree.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class GrepBenchmark {
+
+    @Param({"256"})
+    public int megabytes;
+
+    private Path root;
+    private Path gnuOutput;
+    private final String regex = "ERROR [0-9]+ .*timeout";
+    private final Pattern pattern = Pattern.compile(regex);
+    private final PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("grep-benchmark");
+        gnuOutput = Files.createTempFile("grep-benchmark", ".out");
+        Random random = new Random(42);
+        String[] levels = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+        long total = (long) megabytes << 20;
+        long written = 0;
+        for (int file = 0; written < total; file++) {
+            // every tenth file is large, the rest small
+            long size = file % 10 == 0 ? Math.max(1 << 20, total / 8) : 1 << 16;
+            Path path = root.resolve("dir" + file % 7).resolve("server" + file + ".log");
+            Files.createDirectories(path.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+                for (long bytes = 0; bytes < size; ) {
+                    String line = bytes + " " + levels[random.nextInt(levels.length)] + " " + random.nextInt(100_000)
+                            + " request served in " + random.nextInt(500) + "ms"
+                            + (random.nextInt(4) == 0 ? " after timeout" : "") + "\n";
+                    writer.write(line);
+                    bytes += line.length();
+                }
+            }
+            written += size;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(gnuOutput);
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public void grepH() throws IOException {
+        PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher("glob:" + "**/*.log");
+        try (Stream<Path> pathStream = Files.walk(root)) {
+            pathStream
+                    .filter(Files::isRegularFile)
+                    .filter(pathMatcher::matches)
+                    .flatMap(path -> {
+                        try {
+                            return Files.readAllLines(path).stream()
+                                    .filter(line -> pattern.matcher(line).find())
+                                    .map(line -> path + ": " + line);
+                        } catch (IOException e) {
+                            return Stream.of("");
+                        }
+                    })
+                    .filter(line -> !line.isEmpty())
+                    .filter(line -> pattern.matcher(line).find())
+                    .forEach(out::println);
+        }
+    }
+
+    @Benchmark
+    public long grep() throws IOException {
+        return new Grep(pattern, (path, e) -> {}).search(root, "glob:**/*.log", out::println);
+    }
+
+    /**
+     * Writes to a file: with its output going to /dev/null, GNU grep stops at the first match.
+     */
+    @Benchmark
+    public int gnuGrep() throws IOException, InterruptedException {
+        return new ProcessBuilder("grep", "-rnb", "-E", "--include=*.log", regex, root.toString())
+                .redirectOutput(gnuOutput.toFile())
+                .start()
+                .waitFor();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
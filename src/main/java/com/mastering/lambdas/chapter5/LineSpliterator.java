@@ -0,0 +1,205 @@
+package com.mastering.lambdas.chapter5;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The lines of a file, read through memory-mapped windows, with their byte offsets.
+ * <p>
+ * A spliterator covers a range of bytes that starts at the beginning of a line and ends just
+ * after a newline or at the end of the file. It maps a window of at most {@code windowSize}
+ * bytes at a time, starting at the line it is reading, and maps the next window when a line
+ * runs past the end of the current one, so files of any size can be read, and no line is ever
+ * split between two windows. A split reads a few bytes at the midpoint of the range, through
+ * the channel, to find the next newline, and hands off the lines before it.
+ * <p>
+ * Lines are terminated by {@code \n} or {@code \r\n} only, as for grep; unlike
+ * {@code Files.lines}, a lone {@code \r} does not end a line but stays in it. Since no byte of a
+ * multi-byte UTF-8 character is a newline, splitting at newlines never splits a character.
+ * Each line is returned as a {@link DispLine} over the mapped window, decoded only on demand.
+ */
+public final class LineSpliterator implements Spliterator<DispLine> {
+    static final int DEFAULT_WINDOW = 1 << 26;
+    private static final int MIN_SPLIT = 1 << 16;
+    private static final int SCAN = 1 << 13;
+    static final int AVERAGE_LINE = 64;
+
+    private final FileChannel channel;
+    private final int windowSize;
+    private long lo;
+    private final long hi;
+    private ByteBuffer window;
+    private long windowStart;
+
+    public LineSpliterator(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW);
+    }
+
+    LineSpliterator(FileChannel channel, int windowSize) throws IOException {
+        this(channel, windowSize, 0, channel.size(), null, 0);
+    }
+
+    private LineSpliterator(FileChannel channel, int windowSize, long lo, long hi, ByteBuffer window, long windowStart) {
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.lo = lo;
+        this.hi = hi;
+        this.window = window;
+        this.windowStart = windowStart;
+    }
+
+    /**
+     * The lines of a file; closing the stream closes the file.
+     */
+    public static Stream<DispLine> lines(Path path, boolean parallel) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return StreamSupport.stream(new LineSpliterator(channel), parallel).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super DispLine> action) {
+        if (lo >= hi) {
+            return false;
+        }
+        action.accept(next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super DispLine> action) {
+        while (lo < hi) {
+            action.accept(next());
+        }
+    }
+
+    /**
+     * Reads the line at {@code lo}, mapping a window from it if the current one does not hold
+     * the whole line.
+     */
+    private DispLine next() {
+        if (window == null || lo >= windowStart + window.limit()) {
+            map(lo);
+        }
+        int start = (int) (lo - windowStart);
+        int end = indexOfNewline(window, start, window.limit());
+        if (end < 0) {
+            if (windowStart + window.limit() == hi) {
+                end = window.limit();
+            } else if (start > 0) {
+                map(lo);
+                start = 0;
+                end = indexOfNewline(window, 0, window.limit());
+                if (end < 0 && window.limit() == hi - lo) {
+                    end = window.limit();
+                }
+            }
+            if (end < 0) {
+                throw new IllegalStateException("Line at " + lo + " is longer than the window of " + windowSize + " bytes");
+            }
+        }
+        lo = Math.min(windowStart + end + 1, hi);
+        // a last line with no newline keeps a trailing \r, which does not end it
+        boolean crlf = end < window.limit() && end > start && window.get(end - 1) == '\r';
+        int length = crlf ? end - 1 - start : end - start;
+        return new DispLine(windowStart + start, window, start, length);
+    }
+
+    private void map(long from) {
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(windowSize, hi - from));
+            windowStart = from;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Spliterator<DispLine> trySplit() {
+        if (hi - lo < MIN_SPLIT) {
+            return null;
+        }
+        long split = lineStartAfter(lo + (hi - lo) / 2);
+        if (split >= hi) {
+            return null;
+        }
+        LineSpliterator prefix = new LineSpliterator(channel, windowSize, lo, split, window, windowStart);
+        lo = split;
+        window = null;
+        return prefix;
+    }
+
+    /**
+     * The start of the first line beginning after {@code position}, or {@code hi} if none does.
+     */
+    private long lineStartAfter(long position) {
+        ByteBuffer scan = ByteBuffer.allocate(SCAN);
+        try {
+            while (position < hi) {
+                scan.clear().limit((int) Math.min(SCAN, hi - position));
+                int read = channel.read(scan, position);
+                if (read <= 0) {
+                    return hi;
+                }
+                int newline = indexOfNewline(scan, 0, read);
+                if (newline >= 0) {
+                    return position + newline + 1;
+                }
+                position += read;
+            }
+            return hi;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return (hi - lo + AVERAGE_LINE - 1) / AVERAGE_LINE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | IMMUTABLE | NONNULL;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path start = Path.of(args.length > 0 ? args[0] : "src/testGrepH.txt");
+        Pattern pattern = Pattern.compile("[-+]?[0-9]*\\.?[0-9]+");
+        BytePrefilter prefilter = BytePrefilter.of(pattern);
+
+        try (Stream<DispLine> lines = lines(start, true)) {
+            lines.filter(prefilter::test)
+                    .filter(dl -> pattern.matcher(dl.line()).find())
+                    .forEachOrdered(System.out::println);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mastering.lambdas.chapter5;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Grepping a generated log in parallel: {@code Files.lines}, which splits by reading batches of
+ * lines off a single reader, against the mapped {@link LineSpliterator}, which splits the byte
+ * range at newlines, decoding every line or, after a {@link BytePrefilter}, only the candidates.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class LineSpliteratorBenchmark {
+
+    @Param({"2000000"})
+    public int lines;
+
+    private Path file;
+    private final Pattern pattern = Pattern.compile("ERROR .* timeout=\\d+");
+    private final BytePrefilter prefilter = BytePrefilter.of(pattern);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("line-spliterator", ".log");
+        Random random = new Random(42);
+        String[] levels = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < lines; i++) {
+                writer.write(i + " " + levels[random.nextInt(levels.length)] + " request " + random.nextInt(100_000)
+                        + " served in " + random.nextInt(500) + "ms timeout=" + random.nextInt(60) + "\n");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long filesLines() throws IOException {
+        try (Stream<String> stream = Files.lines(file).parallel()) {
+            return stream.filter(line -> pattern.matcher(line).find()).count();
+        }
+    }
+
+    @Benchmark
+    public long lineSpliterator() throws IOException {
+        try (Stream<DispLine> stream = LineSpliterator.lines(file, true)) {
+            return stream.filter(dl -> pattern.matcher(dl.line()).find()).count();
+        }
+    }
+
+    @Benchmark
+    public long lineSpliteratorDecodingCandidates() throws IOException {
+        try (Stream<DispLine> stream = LineSpliterator.lines(file, true)) {
+            return stream.filter(prefilter::test)
+                    .filter(dl -> pattern.matcher(dl.line()).find())
+                    .count();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
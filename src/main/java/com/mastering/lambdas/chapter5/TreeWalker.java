@@ -0,0 +1,351 @@
+package com.mastering.lambdas.chapter5;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A parallel directory walker: each directory is listed by a fork-join task, which reads the
+ * {@link BasicFileAttributes} of every entry once, forks a task for every subdirectory, and
+ * passes on the entries it lists in batches, one or more per directory. Idle workers steal
+ * the subdirectory tasks, so wide and deep trees are both spread over the pool.
+ * <p>
+ * The attributes come with each {@link Entry}, so asking whether it is a file or how long it
+ * is costs no further system calls, where {@code Files.walk} followed by {@code toFile},
+ * {@code isFile} and {@code length} stats every entry three times.
+ * <p>
+ * {@link #stream()} returns the entries while the walk is still going, through a bounded
+ * queue of batches, in no particular order; a glob, when given, selects the entries returned
+ * but not the directories entered. As with {@code Files.walk}, the root is at depth 0 and
+ * directories at {@code maxDepth} are returned but not entered, and an entry that cannot be
+ * read ends the walk with an {@link UncheckedIOException}. Symbolic links are not followed
+ * unless {@code followLinks} is set, in which case a link back to a directory being walked
+ * is returned but not entered again.
+ */
+public final class TreeWalker {
+    private static final int BATCH = 512;
+    private static final int QUEUED_BATCHES = 256;
+    private static final Object END = new Object();
+
+    private final Path root;
+    private final PathMatcher matcher;
+    private final int maxDepth;
+    private final boolean followLinks;
+    private final ForkJoinPool pool;
+
+    private TreeWalker(Builder builder) {
+        this.root = builder.root;
+        this.matcher = builder.glob == null ? null : FileSystems.getDefault().getPathMatcher(builder.glob);
+        this.maxDepth = builder.maxDepth;
+        this.followLinks = builder.followLinks;
+        this.pool = builder.pool;
+    }
+
+    public static Builder builder(Path root) {
+        return new Builder(root);
+    }
+
+    /**
+     * A path, its attributes, read once, and its depth below the root.
+     */
+    public record Entry(Path path, BasicFileAttributes attributes, int depth) {
+        public boolean isRegularFile() {
+            return attributes.isRegularFile();
+        }
+
+        public boolean isDirectory() {
+            return attributes.isDirectory();
+        }
+
+        public long size() {
+            return attributes.size();
+        }
+    }
+
+    /**
+     * Walks the tree, passing each entry to {@code action} on the thread that read it, and
+     * returns when the walk is complete.
+     */
+    public void forEach(Consumer<? super Entry> action) {
+        Walk walk = new Walk();
+        walk.sink = batch -> batch.forEach(action);
+        pool.invoke(walk.task(root, 0, List.of()));
+        walk.rethrow();
+    }
+
+    /**
+     * The entries, returned as the walk finds them; closing the stream stops the walk.
+     */
+    public Stream<Entry> stream() {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        Walk walk = new Walk();
+        walk.sink = batch -> put(queue, batch, walk);
+        DirectoryTask task = walk.task(root, 0, List.of());
+        pool.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                try {
+                    task.invoke();
+                } catch (RuntimeException | Error e) {
+                    walk.fail(e);
+                } finally {
+                    put(queue, END, walk);
+                }
+            }
+        });
+        Iterator<Entry> entries = new Iterator<>() {
+            private Iterator<Entry> batch = List.<Entry>of().iterator();
+            private boolean done;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean hasNext() {
+                while (!batch.hasNext() && !done) {
+                    Object next;
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        walk.cancelled = true;
+                        throw new IllegalStateException("Interrupted while walking " + root, e);
+                    }
+                    if (next == END) {
+                        done = true;
+                        walk.rethrow();
+                    } else {
+                        batch = ((List<Entry>) next).iterator();
+                    }
+                }
+                return batch.hasNext();
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(entries, Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    walk.cancelled = true;
+                    queue.clear();
+                });
+    }
+
+    /**
+     * Puts into the queue, letting the pool make up for the blocked worker. Once the walk is
+     * cancelled, batches are dropped, and END is put after clearing the queue, so that it gets
+     * through even if nobody takes the entries before it.
+     */
+    private static void put(BlockingQueue<Object> queue, Object element, Walk walk) {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                private boolean done;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    while (!isReleasable()) {
+                        done = queue.offer(element, 10, TimeUnit.MILLISECONDS);
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    if (!done && walk.cancelled) {
+                        if (element != END) {
+                            return true;
+                        }
+                        queue.clear();
+                    }
+                    return done || (done = queue.offer(element));
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The state shared by the tasks of one walk.
+     */
+    private final class Walk {
+        Consumer<List<Entry>> sink;
+        volatile boolean cancelled;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        DirectoryTask task(Path directory, int depth, List<Object> ancestors) {
+            return new DirectoryTask(this, directory, depth, ancestors);
+        }
+
+        void fail(Throwable e) {
+            failure.compareAndSet(null, e);
+            cancelled = true;
+        }
+
+        void rethrow() {
+            Throwable e = failure.get();
+            if (e instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            if (e instanceof RuntimeException r) {
+                throw r;
+            }
+            if (e instanceof Error error) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Lists a directory, or, at depth 0, looks at the root, which may not be one.
+     */
+    private final class DirectoryTask extends RecursiveAction {
+        private final Walk walk;
+        private final Path directory;
+        private final int depth;
+        private final List<Object> ancestors;
+
+        DirectoryTask(Walk walk, Path directory, int depth, List<Object> ancestors) {
+            this.walk = walk;
+            this.directory = directory;
+            this.depth = depth;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected void compute() {
+            if (walk.cancelled) {
+                return;
+            }
+            List<Entry> batch = new ArrayList<>();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try {
+                if (depth == 0) {
+                    visit(directory, 0, batch, subdirectories);
+                } else {
+                    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                        for (Path path : entries) {
+                            if (walk.cancelled) {
+                                return;
+                            }
+                            visit(path, depth, batch, subdirectories);
+                            if (batch.size() == BATCH) {
+                                walk.sink.accept(batch);
+                                batch = new ArrayList<>();
+                            }
+                        }
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                walk.fail(e instanceof UncheckedIOException u ? u.getCause() : e);
+                return;
+            }
+            if (!batch.isEmpty()) {
+                walk.sink.accept(batch);
+            }
+            invokeAll(subdirectories);
+        }
+
+        private void visit(Path path, int depth, List<Entry> batch, List<DirectoryTask> subdirectories) throws IOException {
+            BasicFileAttributes attributes = followLinks
+                    ? readFollowing(path)
+                    : Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (matcher == null || matcher.matches(path)) {
+                batch.add(new Entry(path, attributes, depth));
+            }
+            if (attributes.isDirectory() && depth < maxDepth) {
+                Object key = attributes.fileKey();
+                if (key == null || !ancestors.contains(key)) {
+                    List<Object> chain = new ArrayList<>(ancestors.size() + 1);
+                    chain.addAll(ancestors);
+                    if (key != null) {
+                        chain.add(key);
+                    }
+                    subdirectories.add(walk.task(path, depth + 1, chain));
+                }
+            }
+        }
+
+        /**
+         * The attributes of the target of a link, or of the link itself if it is broken.
+         */
+        private BasicFileAttributes readFollowing(Path path) throws IOException {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                BasicFileAttributes link = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (link.isSymbolicLink()) {
+                    return link;
+                }
+                throw e;
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final Path root;
+        private String glob;
+        private int maxDepth = Integer.MAX_VALUE;
+        private boolean followLinks;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        private Builder(Path root) {
+            this.root = Objects.requireNonNull(root);
+        }
+
+        /**
+         * Selects the entries returned, such as {@code "glob:**}{@code /*.txt"}.
+         */
+        public Builder glob(String glob) {
+            this.glob = glob;
+            return this;
+        }
+
+        public Builder maxDepth(int maxDepth) {
+            if (maxDepth < 0) {
+                throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        public Builder followLinks(boolean followLinks) {
+            this.followLinks = followLinks;
+            return this;
+        }
+
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = Objects.requireNonNull(pool);
+            return this;
+        }
+
+        public TreeWalker build() {
+            return new TreeWalker(this);
+        }
+    }
+}
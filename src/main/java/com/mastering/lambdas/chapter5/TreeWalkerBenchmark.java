@@ -0,0 +1,82 @@
+package com.mastering.lambdas.chapter5;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Totalling the lengths of the files in a generated tree: {@code Files.walk} followed by
+ * {@code toFile}, {@code isFile} and {@code length}, as {@code Demo5} did, against
+ * {@link TreeWalker}, as a stream and with a callback on the pool.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class TreeWalkerBenchmark {
+
+    @Param({"1000000"})
+    public int files;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("tree-walker");
+        // 100 files to a directory, 20 directories to a parent
+        for (int f = 0; f < files; f++) {
+            Path dir = root.resolve("p" + f / 2000).resolve("d" + f / 100);
+            if (f % 100 == 0) {
+                Files.createDirectories(dir);
+            }
+            Files.write(dir.resolve("f" + f), new byte[f % 7]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public long filesWalk() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.map(Path::toFile)
+                    .filter(File::isFile)
+                    .mapToLong(File::length)
+                    .sum();
+        }
+    }
+
+    @Benchmark
+    public long treeWalkerStream() {
+        try (Stream<TreeWalker.Entry> entries = TreeWalker.builder(root).build().stream()) {
+            return entries.filter(TreeWalker.Entry::isRegularFile)
+                    .mapToLong(TreeWalker.Entry::size)
+                    .sum();
+        }
+    }
+
+    @Benchmark
+    public long treeWalkerForEach() {
+        LongAdder total = new LongAdder();
+        TreeWalker.builder(root).build().forEach(e -> {
+            if (e.isRegularFile()) {
+                total.add(e.size());
+            }
+        });
+        return total.sum();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
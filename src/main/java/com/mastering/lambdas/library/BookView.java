@@ -0,0 +1,31 @@
+package com.mastering.lambdas.library;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.Topic;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.Year;
+import java.util.List;
+
+/**
+ * The JSON form of a {@link Book}. Its constraints are checked on the books posted, so that
+ * {@link #toBook()} only sees complete ones.
+ */
+public record BookView(@NotNull String title,
+                       @NotNull List<@NotNull String> authors,
+                       @NotNull int[] pageCounts,
+                       @NotNull Topic topic,
+                       @NotNull @Min(Year.MIN_VALUE) @Max(Year.MAX_VALUE) Integer pubDate,
+                       double height) {
+
+    public static BookView of(Book book) {
+        return new BookView(book.getTitle(), List.copyOf(book.getAuthors()), book.getPageCounts().clone(), book.getTopic(),
+                book.getPubDate().getValue(), book.getHeight());
+    }
+
+    public Book toBook() {
+        return new Book(title, List.copyOf(authors), pageCounts.clone(), topic, Year.of(pubDate), height);
+    }
+}
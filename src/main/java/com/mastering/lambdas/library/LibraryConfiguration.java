@@ -0,0 +1,33 @@
+package com.mastering.lambdas.library;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.Catalog;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import com.mastering.lambdas.chapter3.LibraryInit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class LibraryConfiguration {
+
+    /**
+     * The library of {@link LibraryInit}, followed by {@code library.generated-books} generated
+     * books for trying the service on a larger catalog.
+     */
+    @Bean
+    public Catalog catalog(@Value("${library.generated-books:0}") int generatedBooks) {
+        List<Book> books = new ArrayList<>(new LibraryInit().getLibrary());
+        books.addAll(LibraryGenerator.generate(generatedBooks));
+        return new Catalog(books);
+    }
+
+    @Bean
+    public QueryCache queryCache(@Value("${library.cache.enabled:true}") boolean enabled,
+                                 @Value("${library.cache.max-weight:1000000}") long maxWeight) {
+        return new QueryCache(enabled, maxWeight);
+    }
+}
@@ -0,0 +1,64 @@
+package com.mastering.lambdas.library;
+
+import com.mastering.lambdas.chapter3.Topic;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/library")
+public class LibraryController {
+
+    static final int MAX_PAGE = 10_000;
+
+    private final LibraryService library;
+
+    public LibraryController(LibraryService library) {
+        this.library = library;
+    }
+
+    @GetMapping("/books")
+    public List<BookView> booksByTopic(@RequestParam Topic topic) {
+        return library.booksByTopic(topic);
+    }
+
+    @GetMapping("/books/first")
+    public List<BookView> firstByTitle(@RequestParam(defaultValue = "100") int n) {
+        if (n < 1 || n > MAX_PAGE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "n must be between 1 and " + MAX_PAGE);
+        }
+        return library.firstByTitle(n);
+    }
+
+    @GetMapping("/stats/pages")
+    public PageStatistics pageStatistics() {
+        return library.pageStatistics();
+    }
+
+    @GetMapping("/titles/latest")
+    public Map<String, Integer> titleToPubDateLatest() {
+        return library.titleToPubDateLatest();
+    }
+
+    @PostMapping("/books")
+    public ResponseEntity<Long> add(@Valid @RequestBody BookView book) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(library.add(book));
+    }
+
+    @DeleteMapping("/books/{id}")
+    public ResponseEntity<Void> remove(@PathVariable long id) {
+        return library.remove(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,113 @@
+package com.mastering.lambdas.library;
+
+import com.mastering.lambdas.MasteringLambdasApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Starts the application on a free local port, once with the query cache on and once with it
+ * off, and drives the library endpoints from several client threads, printing the median and
+ * 99th percentile latency and the throughput of each run.
+ * <p>
+ * Arguments, all optional: generated books (default 20000), client threads (8), measured
+ * requests per thread (2000), and the number of reads between catalog writes (0, no writes).
+ */
+public class LibraryLoadTest {
+
+    private static final String[] READS = {
+            "/library/books?topic=FICTION",
+            "/library/books?topic=HISTORY",
+            "/library/books/first?n=100",
+            "/library/stats/pages",
+            "/library/titles/latest",
+    };
+    private static final String NEW_BOOK = """
+            {"title":"Load Test","authors":["Tester"],"pageCounts":[100],"topic":"COMPUTING","pubDate":2024,"height":20.0}""";
+
+    public static void main(String[] args) throws Exception {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        int writeEvery = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        // a devtools restart would run this main again, without the arguments, in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        for (boolean cacheEnabled : new boolean[]{true, false}) {
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MasteringLambdasApplication.class)
+                    .run("--server.port=0",
+                            "--library.cache.enabled=" + cacheEnabled,
+                            "--library.generated-books=" + books,
+                            "--spring.main.banner-mode=off",
+                            "--logging.level.root=WARN")) {
+                String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                run(base, threads, requests / 10, writeEvery);
+                long start = System.nanoTime();
+                long[] latencies = run(base, threads, requests, writeEvery);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                Arrays.sort(latencies);
+                System.out.printf("cache %-3s  %d books  %d threads  p50 %.2f ms  p99 %.2f ms  %.0f requests/s%n",
+                        cacheEnabled ? "on" : "off", books, threads,
+                        percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                        latencies.length / seconds);
+            }
+        }
+    }
+
+    /**
+     * Each thread sends {@code requests} requests, cycling through the read endpoints from a
+     * different starting point, and returns the latency of every request in nanoseconds.
+     */
+    private static long[] run(String base, int threads, int requests, int writeEvery) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                results.add(pool.submit(() -> {
+                    long[] latencies = new long[requests];
+                    for (int i = 0; i < requests; i++) {
+                        HttpRequest request = writeEvery > 0 && i % writeEvery == writeEvery - 1
+                                ? HttpRequest.newBuilder(URI.create(base + "/library/books"))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(NEW_BOOK))
+                                .build()
+                                : HttpRequest.newBuilder(URI.create(base + READS[(i + offset) % READS.length])).build();
+                        long start = System.nanoTime();
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        latencies[i] = System.nanoTime() - start;
+                        if (response.statusCode() >= 300) {
+                            throw new IOException(request.uri() + " returned " + response.statusCode());
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+            long[] all = new long[0];
+            for (Future<long[]> result : results) {
+                long[] latencies = result.get();
+                int from = all.length;
+                all = Arrays.copyOf(all, from + latencies.length);
+                System.arraycopy(latencies, 0, all, from, latencies.length);
+            }
+            return all;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
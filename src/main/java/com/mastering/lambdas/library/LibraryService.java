@@ -0,0 +1,80 @@
+package com.mastering.lambdas.library;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.Catalog;
+import com.mastering.lambdas.chapter3.LatestEditionView;
+import com.mastering.lambdas.chapter3.TopK;
+import com.mastering.lambdas.chapter3.Topic;
+import com.mastering.lambdas.chapter4.TopicAggregateView;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * The chapter 3 and 4 queries over the catalog, answered through the query cache. The topic
+ * and latest-edition views are subscribed before the cache, so by the time a write clears the
+ * cache the views already reflect it.
+ */
+@Service
+public class LibraryService {
+
+    private final Catalog catalog;
+    private final QueryCache cache;
+    private final TopicAggregateView topics = new TopicAggregateView();
+    private final LatestEditionView latestEditions = new LatestEditionView();
+
+    public LibraryService(Catalog catalog, QueryCache cache) {
+        this.catalog = catalog;
+        this.cache = cache;
+        catalog.subscribe(topics);
+        catalog.subscribe(latestEditions);
+        catalog.subscribe(cache);
+    }
+
+    public List<BookView> booksByTopic(Topic topic) {
+        return cache.get("booksByTopic:" + topic, () -> topics.booksByTopic().getOrDefault(topic, List.of()).stream()
+                .map(BookView::of)
+                .toList());
+    }
+
+    /**
+     * The first {@code n} books in title order, as in {@code Demo3.readingList()}.
+     */
+    public List<BookView> firstByTitle(int n) {
+        return cache.get("firstByTitle:" + n, () -> catalog.books()
+                .collect(TopK.smallest(n, Comparator.comparing(Book::getTitle)))
+                .stream()
+                .map(BookView::of)
+                .toList());
+    }
+
+    public PageStatistics pageStatistics() {
+        return cache.get("pageStatistics", () -> PageStatistics.of(catalog.books()
+                .mapToInt(b -> IntStream.of(b.getPageCounts()).sum())
+                .summaryStatistics()));
+    }
+
+    /**
+     * Each title mapped to the publication year of its latest edition, in title order.
+     */
+    public Map<String, Integer> titleToPubDateLatest() {
+        return cache.get("titleToPubDateLatest", () -> {
+            Map<String, Integer> latest = new LinkedHashMap<>();
+            latestEditions.titleToPubDateLatest().forEach((title, year) -> latest.put(title, year.getValue()));
+            return Collections.unmodifiableMap(latest);
+        });
+    }
+
+    public long add(BookView book) {
+        return catalog.add(book.toBook());
+    }
+
+    public boolean remove(long id) {
+        return catalog.remove(id);
+    }
+}
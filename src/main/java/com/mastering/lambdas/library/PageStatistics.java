@@ -0,0 +1,14 @@
+package com.mastering.lambdas.library;
+
+import java.util.IntSummaryStatistics;
+
+/**
+ * The summary statistics of the page counts of the books, as in {@code Demo3.pageCountStatistics()}.
+ */
+public record PageStatistics(long count, long sum, int min, int max, double average) {
+
+    public static PageStatistics of(IntSummaryStatistics statistics) {
+        return new PageStatistics(statistics.getCount(), statistics.getSum(), statistics.getMin(),
+                statistics.getMax(), statistics.getAverage());
+    }
+}
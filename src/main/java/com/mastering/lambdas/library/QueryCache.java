@@ -0,0 +1,136 @@
+package com.mastering.lambdas.library;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.CatalogListener;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Query results keyed by a description of the query, evicting the least recently used entries
+ * while their total weight is over {@code maxWeight}, and cleared by every write to the
+ * catalog it listens to.
+ * <p>
+ * The weight of a result stands for its size: one, plus the number of elements of a collection
+ * or map, so that a list over the whole catalog counts for as much as it holds, and a few
+ * statistics count for one. A result heavier than the whole budget is not stored.
+ * <p>
+ * A result computed while a write happens is returned but not stored: each write advances a
+ * generation, and a result is only stored if the generation it started in is still current.
+ * Cached values are shared between callers, so they must be immutable.
+ */
+public class QueryCache implements CatalogListener {
+
+    private final boolean enabled;
+    private final long maxWeight;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long generation;
+    private long hits;
+    private long misses;
+
+    public QueryCache(boolean enabled, long maxWeight) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+        }
+        this.enabled = enabled;
+        this.maxWeight = maxWeight;
+    }
+
+    private record Entry(Object value, long weight) {
+    }
+
+    static long weigh(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return 1L + collection.size();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return 1L + map.size();
+        }
+        return 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> query) {
+        if (!enabled) {
+            return query.get();
+        }
+        long started;
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return (T) cached.value;
+            }
+            misses++;
+            started = generation;
+        }
+        T result = query.get();
+        synchronized (this) {
+            if (started == generation) {
+                store(key, result);
+            }
+        }
+        return result;
+    }
+
+    private void store(String key, Object value) {
+        long w = weigh(value);
+        if (w > maxWeight) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(value, w));
+        weight += w - (previous == null ? 0 : previous.weight);
+        for (Iterator<Entry> eldest = entries.values().iterator(); weight > maxWeight; ) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+        }
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+        entries.clear();
+        weight = 0;
+    }
+
+    @Override
+    public void added(long id, Book book) {
+        invalidate();
+    }
+
+    @Override
+    public void removed(long id, Book book) {
+        invalidate();
+    }
+
+    @Override
+    public void updated(long id, Book previous, Book book) {
+        invalidate();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The total weight of the entries held, at most {@code maxWeight}.
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+}
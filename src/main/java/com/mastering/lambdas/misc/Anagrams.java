@@ -1,5 +1,7 @@
 package com.mastering.lambdas.misc;
 
+import com.mastering.lambdas.chapter3.TopK;
+
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.math.BigInteger;
@@ -35,10 +37,11 @@ public class Anagrams {
                 .collect(groupingBy(String::toLowerCase, counting()));
         freq.entrySet().stream().sorted(comparing(Map.Entry::getKey)).forEach((e) -> System.out.println("Key: " + e.getKey() + " appears " + e.getValue() + " times."));
 
-        // Pipeline to get a top-ten list of words from a frequency table
-        List<String> topTwo = freq.keySet().stream()
-                .sorted(comparing(freq::get).reversed())
-                .limit(2)
+        // Pipeline to get a top-ten list of words from a frequency table, without sorting it all
+        List<String> topTwo = freq.entrySet().stream()
+                .collect(TopK.largest(2, Map.Entry.comparingByValue()))
+                .stream()
+                .map(Map.Entry::getKey)
                 .collect(toList());
         topTwo.stream().forEach(System.out::println);
 
@@ -88,6 +91,7 @@ class PowerSet {
         List<E> src = new ArrayList<>(s);
         if (src.size() > 30)
             throw new IllegalArgumentException("Set too big " + s);
+        PowerSetSpliterator<E> all = new PowerSetSpliterator<>(src);
         return new AbstractList<Set<E>>() {
             @Override
             public int size() {
@@ -99,13 +103,16 @@ class PowerSet {
                 return o instanceof Set && src.containsAll((Set) o);
             }
 
+            // A view over the index's bits, rather than a HashSet filled on every call
             @Override
             public Set<E> get(int index) {
-                Set<E> result = new HashSet<>();
-                for (int i = 0; index != 0; i++, index >>= 1)
-                    if ((index & 1) == 1)
-                        result.add(src.get(i));
-                return result;
+                return all.subset(index);
+            }
+
+            // Splits the masks evenly, where AbstractList's default splits off batches of an iterator
+            @Override
+            public Spliterator<Set<E>> spliterator() {
+                return new PowerSetSpliterator<>(src);
             }
         };
     }
@@ -123,13 +130,9 @@ class SubLists {
                 prefixes(list).flatMap(SubLists::suffixes));
     }*/
 
-    // Returns a stream of all the sublists of its input list
-    private static <E> Stream<List<E>> of(List<E> list) {
-        return IntStream.range(0, list.size())
-                .mapToObj(start ->
-                        IntStream.rangeClosed(start + 1, list.size())
-                                .mapToObj(end -> list.subList(start, end)))
-                .flatMap(x -> x);
+    // Returns a stream of all the sublists of its input list, evenly splittable when parallel
+    static <E> Stream<List<E>> of(List<E> list) {
+        return StreamSupport.stream(new SubListSpliterator<>(list), false);
     }
 
     private static <E> Stream<List<E>> prefixes(List<E> list) {
@@ -0,0 +1,76 @@
+package com.mastering.lambdas.misc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Enumerating sublists and subsets in parallel: the nested {@code flatMap} streams and the
+ * HashSet per subset that {@code SubLists} and {@code PowerSet} used before, against
+ * {@link SubListSpliterator} and {@link PowerSetSpliterator}, which split evenly and yield views.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class CombinatorialSpliteratorBenchmark {
+
+    @Param({"4000"})
+    public int listSize;
+
+    @Param({"22"})
+    public int setSize;
+
+    private List<Integer> list;
+    private List<Integer> set;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = IntStream.range(0, listSize).boxed().toList();
+        set = IntStream.range(0, setSize).boxed().toList();
+    }
+
+    @Benchmark
+    public long nestedSubLists() {
+        return IntStream.range(0, list.size()).parallel()
+                .mapToObj(start -> IntStream.rangeClosed(start + 1, list.size())
+                        .mapToObj(end -> list.subList(start, end)))
+                .flatMap(x -> x)
+                .filter(l -> l.size() % 7 == 0)
+                .count();
+    }
+
+    @Benchmark
+    public long subListSpliterator() {
+        return StreamSupport.stream(new SubListSpliterator<>(list), true)
+                .filter(l -> l.size() % 7 == 0)
+                .count();
+    }
+
+    @Benchmark
+    public long hashSetSubsets() {
+        return IntStream.range(0, 1 << set.size()).parallel()
+                .mapToObj(mask -> {
+                    Set<Integer> result = new HashSet<>();
+                    for (int i = 0; mask != 0; i++, mask >>= 1)
+                        if ((mask & 1) == 1)
+                            result.add(set.get(i));
+                    return result;
+                })
+                .filter(s -> s.contains(3) && s.size() == 5)
+                .count();
+    }
+
+    @Benchmark
+    public long powerSetSpliterator() {
+        return StreamSupport.stream(new PowerSetSpliterator<>(set), true)
+                .filter(s -> s.contains(3) && s.size() == 5)
+                .count();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,149 @@
+package com.mastering.lambdas.misc;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The subsets of a set of at most 30 elements, numbered by bitmask: bit {@code i} of a mask
+ * says whether the {@code i}-th element, in the set's iteration order, belongs to the subset.
+ * <p>
+ * A split halves the range of masks, so every chunk has an exact size, and each subset is a
+ * {@link Subset} view over the mask and the shared elements instead of a copied HashSet.
+ */
+public class PowerSetSpliterator<E> implements Spliterator<Set<E>> {
+
+    private final Object[] elements;
+    private final Map<Object, Integer> positions;
+    private int mask;
+    private final int fence;
+
+    public PowerSetSpliterator(Collection<? extends E> set) {
+        if (set.size() > 30) {
+            throw new IllegalArgumentException("Set too big " + set);
+        }
+        this.elements = set.toArray();
+        this.positions = new HashMap<>();
+        for (int i = 0; i < elements.length; i++) {
+            positions.put(elements[i], i);
+        }
+        this.mask = 0;
+        this.fence = 1 << elements.length;
+    }
+
+    private PowerSetSpliterator(PowerSetSpliterator<E> other, int mask, int fence) {
+        this.elements = other.elements;
+        this.positions = other.positions;
+        this.mask = mask;
+        this.fence = fence;
+    }
+
+    /**
+     * The subset numbered {@code mask}.
+     */
+    public Subset<E> subset(int mask) {
+        if (mask < 0 || mask >= 1 << elements.length) {
+            throw new IndexOutOfBoundsException("mask " + mask + " of " + elements.length + " elements");
+        }
+        return new Subset<>(elements, positions, mask);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Set<E>> action) {
+        if (mask >= fence) {
+            return false;
+        }
+        action.accept(new Subset<>(elements, positions, mask++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Set<E>> action) {
+        int m = mask;
+        mask = fence;
+        for (; m < fence; m++) {
+            action.accept(new Subset<>(elements, positions, m));
+        }
+    }
+
+    @Override
+    public Spliterator<Set<E>> trySplit() {
+        int mid = (mask + fence) >>> 1;
+        if (mid <= mask) {
+            return null;
+        }
+        PowerSetSpliterator<E> prefix = new PowerSetSpliterator<>(this, mask, mid);
+        mask = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - mask;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * An unmodifiable subset: its size is the bit count of the mask, and membership is a
+     * lookup of the element's position and a bit test.
+     */
+    public static final class Subset<E> extends AbstractSet<E> {
+        private final Object[] elements;
+        private final Map<Object, Integer> positions;
+        private final int mask;
+
+        private Subset(Object[] elements, Map<Object, Integer> positions, int mask) {
+            this.elements = elements;
+            this.positions = positions;
+            this.mask = mask;
+        }
+
+        public int mask() {
+            return mask;
+        }
+
+        @Override
+        public int size() {
+            return Integer.bitCount(mask);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer position = positions.get(o);
+            return position != null && (mask >>> position & 1) == 1;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<>() {
+                private int remaining = mask;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining != 0;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public E next() {
+                    if (remaining == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    int position = Integer.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    return (E) elements[position];
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.mastering.lambdas.misc;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The non-empty sublists of a list, as {@code subList(start, end)} views, ordered by start and
+ * then by end, as {@code SubLists.of} enumerates them.
+ * <p>
+ * The {@code n(n + 1) / 2} sublists are numbered, and a split halves the range of numbers, so
+ * every chunk has an exact size however the start rows fall; the first sublist of a chunk is
+ * found from its number by a binary search over the rows. The list should support random
+ * access, and must not be structurally modified while the sublists are in use.
+ */
+public class SubListSpliterator<E> implements Spliterator<List<E>> {
+
+    private final List<E> list;
+    private final int n;
+    private long index;
+    private final long fence;
+    private int start;
+    private int end;
+
+    public SubListSpliterator(List<E> list) {
+        this(Objects.requireNonNull(list), 0, count(list.size()), 0, 1);
+    }
+
+    private SubListSpliterator(List<E> list, long index, long fence, int start, int end) {
+        this.list = list;
+        this.n = list.size();
+        this.index = index;
+        this.fence = fence;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * The number of non-empty sublists of a list of {@code n} elements.
+     */
+    public static long count(int n) {
+        return (long) n * (n + 1) / 2;
+    }
+
+    /**
+     * The number of the first sublist starting at {@code start}.
+     */
+    private static long rowOffset(int n, int start) {
+        return (long) start * n - (long) start * (start - 1) / 2;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super List<E>> action) {
+        if (index >= fence) {
+            return false;
+        }
+        action.accept(list.subList(start, end));
+        index++;
+        if (++end > n) {
+            start++;
+            end = start + 1;
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super List<E>> action) {
+        long remaining = fence - index;
+        int s = start;
+        int e = end;
+        while (remaining > 0) {
+            int last = (int) Math.min(n, e - 1 + remaining);
+            remaining -= last - e + 1;
+            for (; e <= last; e++) {
+                action.accept(list.subList(s, e));
+            }
+            if (e > n) {
+                s++;
+                e = s + 1;
+            }
+        }
+        index = fence;
+        start = s;
+        end = e;
+    }
+
+    @Override
+    public Spliterator<List<E>> trySplit() {
+        long mid = (index + fence) >>> 1;
+        if (mid <= index) {
+            return null;
+        }
+        SubListSpliterator<E> prefix = new SubListSpliterator<>(list, index, mid, start, end);
+        int low = start;
+        int high = n - 1;
+        while (low < high) {
+            int row = (low + high + 1) >>> 1;
+            if (rowOffset(n, row) <= mid) {
+                low = row;
+            } else {
+                high = row - 1;
+            }
+        }
+        index = mid;
+        start = low;
+        end = low + 1 + (int) (mid - rowOffset(n, low));
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+}
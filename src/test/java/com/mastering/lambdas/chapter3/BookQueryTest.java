@@ -0,0 +1,110 @@
+package com.mastering.lambdas.chapter3;
+
+import com.mastering.lambdas.chapter4.Demo4;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookQueryTest {
+
+    private final Demo3 demo3 = new Demo3();
+    private final LibraryIndex demoIndex = new LibraryIndex(demo3.getLibrary());
+    private final List<Book> library = LibraryGenerator.generate(100_000);
+    private final LibraryIndex index = new LibraryIndex(library);
+
+    @Test
+    void matchesDemo3() {
+        assertThat(BookQuery.from(demoIndex).where(BookPredicate.topic(Topic.COMPUTING)).toList())
+                .containsExactlyElementsOf(demo3.getComputingBooks().toList());
+        assertThat(BookQuery.from(demoIndex)
+                .where(BookPredicate.topic(Topic.MEDICINE))
+                .where(BookPredicate.of("more than one author", b -> b.getAuthors().size() > 1))
+                .toList())
+                .containsExactlyElementsOf(demo3.getMultipleAuthoredHistories());
+        assertThat(BookQuery.from(demoIndex).where(BookPredicate.author("Sethi")).findFirst())
+                .isEqualTo(demo3.getAnyBook());
+        assertThat(BookQuery.from(demoIndex).orderBy(BookOrder.title()).limit(100).toList())
+                .containsExactlyElementsOf(demo3.getReadingList().toList());
+        assertThat(BookQuery.from(demoIndex).orderBy(BookOrder.title()).limit(0).toList()).isEmpty();
+        assertThat(BookQuery.from(demoIndex).orderBy(BookOrder.title().reversed()).toList())
+                .containsExactlyElementsOf(demo3.getBooksSortedByTitle().toList());
+        assertThat(BookQuery.from(demoIndex).sum(b -> IntStream.of(b.getPageCounts()).sum()))
+                .isEqualTo(demo3.getPages());
+    }
+
+    @Test
+    void matchesDemo4() {
+        Demo4 demo4 = new Demo4();
+        assertThat(BookQuery.from(demoIndex).groupByTopic(Collectors.toList())).isEqualTo(demo4.getBooksByTopic());
+        assertThat(BookQuery.from(demoIndex).groupByTopic(Collectors.summingInt(b -> b.getPageCounts().length)))
+                .isEqualTo(demo4.getVolumeCountByTopic());
+        assertThat(BookQuery.from(demoIndex).groupBy(b -> b.getTopic() == Topic.FICTION, Collectors.toList()))
+                .isEqualTo(demo4.getFictionOrNon());
+        assertThat(BookQuery.from(demoIndex).orderBy(BookOrder.title())
+                .groupByTopic(Collectors.maxBy(Comparator.comparing(b -> b.getAuthors().size()))))
+                .isEqualTo(demo4.getMostAuthorsByTopic());
+    }
+
+    @Test
+    void everyPlanMatchesThePlainPipeline() {
+        String author = library.get(17).getAuthors().get(0);
+        BookOrder byAuthorsThenTitle = BookOrder.of("authors, title",
+                Comparator.comparing((Book b) -> b.getAuthors().size()).thenComparing(Book::getTitle));
+        for (int threshold : new int[]{0, Integer.MAX_VALUE}) {
+            assertThat(BookQuery.from(index).where(BookPredicate.topic(Topic.HISTORY)).where(BookPredicate.author(author))
+                    .parallelThreshold(threshold).toList())
+                    .containsExactlyElementsOf(library.stream()
+                            .filter(b -> b.getTopic() == Topic.HISTORY && b.getAuthors().contains(author)).toList());
+            assertThat(BookQuery.from(index).where(BookPredicate.of("one volume", b -> b.getPageCounts().length == 1))
+                    .orderBy(byAuthorsThenTitle).limit(500).parallelThreshold(threshold).toList())
+                    .containsExactlyElementsOf(library.stream().filter(b -> b.getPageCounts().length == 1)
+                            .sorted(byAuthorsThenTitle).limit(500).toList());
+            assertThat(BookQuery.from(index).where(BookPredicate.titleStartsWith("A"))
+                    .orderBy(BookOrder.title().reversed()).parallelThreshold(threshold).select(Book::getTitle).toList())
+                    .containsExactlyElementsOf(library.stream().map(Book::getTitle).filter(t -> t.startsWith("A"))
+                            .sorted(Comparator.reverseOrder()).toList());
+            assertThat(BookQuery.from(index).where(BookPredicate.of("tall", b -> b.getHeight() > 25))
+                    .orderBy(BookOrder.title()).limit(1_000).parallelThreshold(threshold).toList())
+                    .containsExactlyElementsOf(library.stream().filter(b -> b.getHeight() > 25)
+                            .sorted(Comparator.comparing(Book::getTitle)).limit(1_000).toList());
+        }
+        Map<Topic, Long> counts = library.stream().collect(Collectors.groupingBy(Book::getTopic, Collectors.counting()));
+        assertThat(BookQuery.from(index).groupByTopic(Collectors.counting())).isEqualTo(counts);
+        assertThat(BookQuery.from(index).where(BookPredicate.topic(Topic.FICTION)).count()).isEqualTo(counts.get(Topic.FICTION));
+    }
+
+    @Test
+    void explainShowsTheRewrites() {
+        assertThat(BookQuery.from(index)
+                .where(BookPredicate.topic(Topic.MEDICINE))
+                .where(BookPredicate.of("more than one author", b -> b.getAuthors().size() > 1))
+                .orderBy(BookOrder.of("height", Comparator.comparingDouble(Book::getHeight)))
+                .limit(10)
+                .explain())
+                .startsWith("TopK 10 by height\n  Filter more than one author\n    IndexLookup topic = MEDICINE (")
+                .contains("rows < threshold");
+        assertThat(BookQuery.from(index).orderBy(BookOrder.title()).limit(100).select(Book::getTitle).explain())
+                .startsWith("Project\n  Limit 100 (pushed into title index walk)\n    TitleIndexScan (100000 rows)");
+        assertThat(BookQuery.from(index).where(BookPredicate.of("tall", b -> b.getHeight() > 25)).parallelThreshold(1).plan().isParallel())
+                .isTrue();
+    }
+
+    @Test
+    void calibratedThresholdIsADoublingOf1024OrNever() {
+        int threshold = BookQuery.calibrateParallelThreshold(library);
+        if (ForkJoinPool.getCommonPoolParallelism() < 2) {
+            assertThat(threshold).isEqualTo(Integer.MAX_VALUE);
+        } else if (threshold != Integer.MAX_VALUE) {
+            assertThat(threshold).isBetween(1024, library.size());
+            assertThat(Integer.bitCount(threshold / 1024)).isEqualTo(1);
+            assertThat(threshold % 1024).isZero();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.mastering.lambdas.chapter3;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Year;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookTest {
+
+    @Test
+    void equalBooksBuiltFromDifferentStringsShareIdsAndHash() {
+        Book a = new Book("Voss", List.of(new String("Patrick White")), new int[]{478}, Topic.FICTION, Year.of(1957), 19.8);
+        Book b = new Book("Voss", List.of(new String("Patrick White")), new int[]{1}, Topic.COMPUTING, Year.of(1957), 1.0);
+        assertThat(a).isEqualTo(b).hasSameHashCodeAs(b);
+        assertThat(a.getAuthorIds()).containsExactly(b.getAuthorIds());
+        assertThat(a.getAuthors()).isEqualTo(List.of("Patrick White"));
+        assertThat(a.getAuthors().get(0)).isSameAs(b.getAuthors().get(0));
+    }
+
+    @Test
+    void authorOrderAndYearMatter() {
+        Book ab = new Book("T", List.of("A", "B"), new int[]{1}, Topic.HISTORY, Year.of(2000), 1);
+        assertThat(ab).isNotEqualTo(new Book("T", List.of("B", "A"), new int[]{1}, Topic.HISTORY, Year.of(2000), 1));
+        assertThat(ab).isNotEqualTo(new Book("T", List.of("A", "B"), new int[]{1}, Topic.HISTORY, Year.of(2001), 1));
+        assertThat(ab).isNotEqualTo(new Book("T", List.of("A"), new int[]{1}, Topic.HISTORY, Year.of(2000), 1));
+    }
+
+    @Test
+    void toleratesAMissingTitleOrYear() {
+        Book untitled = new Book(null, List.of("A"), new int[]{1}, Topic.HISTORY, null, 1);
+        assertThat(untitled).isEqualTo(new Book(null, List.of("A"), new int[]{2}, Topic.FICTION, null, 2))
+                .isNotEqualTo(new Book("T", List.of("A"), new int[]{1}, Topic.HISTORY, null, 1));
+        assertThat(untitled.hashCode()).isEqualTo(new Book(null, List.of("A"), new int[]{1}, Topic.HISTORY, null, 1).hashCode());
+    }
+
+    @Test
+    void distinctAndToSetSeeCopiesAsDuplicates() {
+        List<Book> twice = Stream.concat(LibraryGenerator.generate(5_000, 7).stream(),
+                LibraryGenerator.generate(5_000, 7).stream()).toList();
+        assertThat(twice.stream().distinct().toList()).containsExactlyElementsOf(twice.subList(0, 5_000));
+        assertThat(twice.parallelStream().collect(Collectors.toSet())).hasSize(5_000);
+    }
+}
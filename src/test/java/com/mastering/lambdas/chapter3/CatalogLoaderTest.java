@@ -0,0 +1,111 @@
+package com.mastering.lambdas.chapter3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CatalogLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    private List<Book> library() {
+        List<Book> library = new ArrayList<>(new LibraryInit().getLibrary());
+        library.add(new Book("A \"quoted\", title", List.of("O'Brien", "Ünal"), new int[]{12, 34},
+                Topic.HISTORY, Year.of(1899), 21.05));
+        library.addAll(LibraryGenerator.generate(20_000));
+        return library;
+    }
+
+    @Test
+    void csvRoundTripsThroughSmallChunks() {
+        List<Book> library = library();
+        Path csv = dir.resolve("catalog.csv");
+        CatalogLoader.writeCsv(library, csv);
+
+        List<Book> loaded = new CatalogLoader(CatalogLoader.Format.CSV, 4096).load(csv);
+        assertThat(loaded).containsExactlyElementsOf(library);
+        assertThat(loaded).extracting(Book::getHeight).containsExactlyElementsOf(library.stream().map(Book::getHeight).toList());
+        assertThat(loaded.get(4).getAuthors()).containsExactly("O'Brien", "Ünal");
+        assertThat(loaded.get(4).getPageCounts()).containsExactly(12, 34);
+    }
+
+    @Test
+    void csvRoundTripsLineBreaksAndSemicolons() {
+        List<Book> library = new ArrayList<>(LibraryGenerator.generate(2_000));
+        library.add(1_000, new Book("Two\nlines, and\r\na \\ backslash; \\n", List.of("Smith; John", "a\\;b", "Lee\n"),
+                new int[]{7}, Topic.FICTION, Year.of(1901), 20.0));
+        library.add(new Book("C:\\", List.of("\\"), new int[]{1}, Topic.HISTORY, Year.of(2001), 9.5));
+        Path csv = dir.resolve("escaped.csv");
+        CatalogLoader.writeCsv(library, csv);
+
+        List<Book> loaded = new CatalogLoader(CatalogLoader.Format.CSV, 1024).load(csv);
+        assertThat(loaded).containsExactlyElementsOf(library);
+        assertThat(loaded.get(1_000).getTitle()).isEqualTo("Two\nlines, and\r\na \\ backslash; \\n");
+        assertThat(loaded.get(1_000).getAuthors()).containsExactly("Smith; John", "a\\;b", "Lee\n");
+        assertThat(loaded.get(2_001).getAuthors()).containsExactly("\\");
+    }
+
+    @Test
+    void jsonLinesRoundTrip() {
+        List<Book> library = library();
+        Path jsonl = dir.resolve("catalog.jsonl");
+        CatalogLoader.writeJsonLines(library, jsonl);
+
+        assertThat(CatalogLoader.loadBooks(jsonl)).containsExactlyElementsOf(library);
+        assertThat(new CatalogLoader(CatalogLoader.Format.JSON_LINES, 1000).load(jsonl))
+                .extracting(Book::getTopic)
+                .containsExactlyElementsOf(library.stream().map(Book::getTopic).toList());
+    }
+
+    @Test
+    void loadsTheColumnarForm() {
+        List<Book> library = library();
+        Path csv = dir.resolve("catalog.csv");
+        CatalogLoader.writeCsv(library, csv);
+
+        LibraryTable table = new CatalogLoader(CatalogLoader.Format.CSV, 8192).toTable(csv);
+        assertThat(table.books()).containsExactlyElementsOf(library);
+        assertThat(table.pages()).isEqualTo(LibraryTable.of(library).pages());
+    }
+
+    @Test
+    void authorsAreInterned() {
+        Path csv = dir.resolve("catalog.csv");
+        CatalogLoader.writeCsv(LibraryGenerator.generate(1_000), csv);
+        List<Book> loaded = CatalogLoader.loadBooks(csv);
+        String author = loaded.get(0).getAuthors().get(0);
+        loaded.stream()
+                .flatMap(b -> b.getAuthors().stream())
+                .filter(author::equals)
+                .forEach(a -> assertThat(a).isSameAs(author));
+    }
+
+    @Test
+    void jsonIgnoresUnknownKeysAndReportsBadLines() throws IOException {
+        Path jsonl = dir.resolve("odd.jsonl");
+        Files.writeString(jsonl, """
+                { "isbn": "0-00-000", "title": "Voss", "extra": {"a": [1, {"b": "]"}]}, "authors": ["Patrick White"], \
+                "pageCounts": [ 478 ], "topic": "FICTION", "pubDate": 1957, "height": 19.8 }
+                {"title": "Broken", "topic": "POETRY"}
+                """);
+        assertThatThrownBy(() -> CatalogLoader.loadBooks(jsonl))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Broken");
+
+        Files.writeString(jsonl, """
+                { "isbn": "0-00-000", "title": "Voss", "extra": {"a": [1, {"b": "]"}]}, "authors": ["Patrick White"], \
+                "pageCounts": [ 478 ], "topic": "FICTION", "pubDate": 1957, "height": 19.8 }
+                """);
+        assertThat(CatalogLoader.loadBooks(jsonl)).containsExactly(new LibraryInit().getLibrary().get(2));
+    }
+}
@@ -0,0 +1,75 @@
+package com.mastering.lambdas.chapter3;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Year;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LibraryIndexTest {
+
+    private final List<Book> library = LibraryGenerator.generate(20_000);
+    private final LibraryIndex index = new LibraryIndex(library);
+
+    @Test
+    void lookupsMatchScans() {
+        for (Topic topic : Topic.values()) {
+            assertThat(index.byTopic(topic))
+                    .containsExactlyElementsOf(library.stream().filter(b -> b.getTopic() == topic).toList());
+        }
+
+        String author = library.get(123).getAuthors().get(0);
+        assertThat(index.byAuthor(author))
+                .containsExactlyElementsOf(library.stream().filter(b -> b.getAuthors().contains(author)).toList());
+
+        assertThat(index.byTitlePrefix("Java S"))
+                .containsExactlyElementsOf(library.stream().filter(b -> b.getTitle().startsWith("Java S")).toList());
+
+        assertThat(index.byTopicAndAuthor(Topic.HISTORY, author))
+                .containsExactlyElementsOf(library.stream()
+                        .filter(b -> b.getTopic() == Topic.HISTORY && b.getAuthors().contains(author))
+                        .toList());
+    }
+
+    @Test
+    void missingKeysGiveEmptyResults() {
+        assertThat(index.byAuthor("Nobody")).isEmpty();
+        assertThat(index.byTitlePrefix("Zzz")).isEmpty();
+        assertThat(new LibraryIndex().byTopic(Topic.FICTION)).isEmpty();
+    }
+
+    @Test
+    void prefixesEndingInTheLastCharStayWithinThePrefix() {
+        String max = String.valueOf(Character.MAX_VALUE);
+        LibraryIndex small = new LibraryIndex(new LibraryInit().getLibrary());
+        for (String title : List.of("a" + max, "a" + max + max + "x", "b", "b" + max, max + max)) {
+            small.add(new Book(title, List.of("A"), new int[]{1}, Topic.HISTORY, Year.of(2000), 1));
+        }
+        assertThat(small.byTitlePrefix("a" + max)).extracting(Book::getTitle).containsExactly("a" + max, "a" + max + max + "x");
+        assertThat(small.byTitlePrefix("a" + max + max)).extracting(Book::getTitle).containsExactly("a" + max + max + "x");
+        assertThat(small.byTitlePrefix("b" + max)).extracting(Book::getTitle).containsExactly("b" + max);
+        assertThat(small.byTitlePrefix(max)).extracting(Book::getTitle).containsExactly(max + max);
+    }
+
+    @Test
+    void intersectHandlesSkewedPostingLists() {
+        int[] small = {3, 500, 999};
+        int[] large = IntStream.range(0, 1000).filter(i -> i % 3 == 0).toArray();
+        assertThat(LibraryIndex.intersect(large, small)).containsExactly(3, 999);
+        assertThat(LibraryIndex.intersect(small, new int[]{500}, large)).isEmpty();
+    }
+
+    @Test
+    void addKeepsTheIndexesCurrent() {
+        LibraryIndex small = new LibraryIndex(new LibraryInit().getLibrary());
+        assertThat(small.byAuthor("Sethi")).extracting(Book::getTitle)
+                .containsExactly("Compilers: Principles, Techniques and Tools");
+        assertThat(small.byAuthor("Li")).hasSize(1);
+        small.add(new Book("Compilers in Practice", List.of("Sethi"), new int[]{300}, Topic.COMPUTING,
+                Year.of(2010), 22.0));
+        assertThat(small.byTitlePrefix("Compilers")).hasSize(2);
+        assertThat(small.byTopicAndAuthor(Topic.COMPUTING, "Sethi")).hasSize(2);
+    }
+}
@@ -0,0 +1,92 @@
+package com.mastering.lambdas.chapter3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LibrarySnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsEveryField() {
+        List<Book> library = new ArrayList<>(new LibraryInit().getLibrary());
+        library.add(new Book("Ünal's \"Notes\"", List.of(), new int[]{-1, 0, 300_000}, Topic.HISTORY, Year.of(-300), 0.5));
+        library.addAll(LibraryGenerator.generate(10_000));
+        Path file = dir.resolve("library.snap");
+        LibrarySnapshot.write(library, file);
+
+        LibrarySnapshot snapshot = LibrarySnapshot.open(file);
+        assertThat(snapshot.size()).isEqualTo(library.size());
+        assertThat(snapshot.books()).containsExactlyElementsOf(library);
+        for (int i = 0; i < library.size(); i++) {
+            Book expected = library.get(i), actual = snapshot.book(i);
+            assertThat(actual.getPageCounts()).containsExactly(expected.getPageCounts());
+            assertThat(actual.getTopic()).isEqualTo(expected.getTopic());
+            assertThat(actual.getHeight()).isEqualTo(expected.getHeight());
+        }
+        assertThat(snapshot.title(4)).isEqualTo("Ünal's \"Notes\"");
+    }
+
+    @Test
+    void decodedAuthorsAreShared() {
+        Path file = dir.resolve("library.snap");
+        LibrarySnapshot.write(LibraryGenerator.generate(1_000), file);
+        List<Book> books = LibrarySnapshot.open(file).books();
+        String author = books.get(0).getAuthors().get(0);
+        books.stream()
+                .flatMap(b -> b.getAuthors().stream())
+                .filter(author::equals)
+                .forEach(a -> assertThat(a).isSameAs(author));
+    }
+
+    @Test
+    void rejectsDamagedFiles() throws IOException {
+        Path file = dir.resolve("library.snap");
+        LibrarySnapshot.write(LibraryGenerator.generate(1_000), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        bytes[bytes.length - 20] ^= 1;
+        Files.write(file, bytes);
+        assertThatThrownBy(() -> LibrarySnapshot.open(file))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("checksum");
+        assertThat(LibrarySnapshot.open(file, false).size()).isEqualTo(1_000);
+
+        bytes[bytes.length - 20] ^= 1;
+        bytes[20] ^= 0x10;  // the record table offset
+        Files.write(file, bytes);
+        assertThatThrownBy(() -> LibrarySnapshot.open(file)).hasMessageContaining("checksum");
+        bytes[20] ^= 0x10;
+        bytes[8] ^= 0x40;   // the book count
+        Files.write(file, bytes);
+        assertThatThrownBy(() -> LibrarySnapshot.open(file)).hasMessageContaining("checksum");
+        assertThatThrownBy(() -> LibrarySnapshot.open(file, false)).hasMessageContaining("do not fit");
+        bytes[8] ^= 0x40;
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThatThrownBy(() -> LibrarySnapshot.open(file)).hasMessageContaining("truncated");
+
+        bytes[0] = 'X';
+        Files.write(file, bytes);
+        assertThatThrownBy(() -> LibrarySnapshot.open(file)).hasMessageContaining("not a library snapshot");
+    }
+
+    @Test
+    void rejectsYearsOutsideAShort() {
+        List<Book> library = List.of(new Book("Far Future", List.of("Anon"), new int[]{1}, Topic.FICTION, Year.of(40_000), 20));
+        assertThatThrownBy(() -> LibrarySnapshot.write(library, dir.resolve("library.snap")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,54 @@
+package com.mastering.lambdas.chapter3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LibraryTableTest {
+
+    private final List<Book> library = LibraryGenerator.generate(10_000);
+    private final LibraryTable table = LibraryTable.of(library);
+
+    @Test
+    void aggregatesMatchTheStreamVersions() {
+        assertThat(table.pages()).isEqualTo(library.stream()
+                .flatMapToInt(b -> IntStream.of(b.getPageCounts()))
+                .sum());
+
+        IntSummaryStatistics expected = library.stream()
+                .mapToInt(b -> IntStream.of(b.getPageCounts()).sum())
+                .summaryStatistics();
+        assertThat(table.pageCountStatistics()).hasToString(expected.toString());
+
+        assertThat(table.withinShelfHeight()).isEqualTo(library.stream()
+                .filter(b -> b.getTopic() == Topic.FICTION)
+                .allMatch(b -> b.getHeight() < 24));
+
+        assertThat(table.oldest()).isEqualTo(library.stream()
+                .min(Comparator.comparing(Book::getPubDate)));
+
+        assertThat(table.totalAuthorships()).isEqualTo(library.stream()
+                .mapToInt(b -> b.getAuthors().size())
+                .sum());
+    }
+
+    @Test
+    void rowsRoundTripToBooks() {
+        assertThat(table.books()).containsExactlyElementsOf(library);
+        assertThat(table.rows(Topic.FICTION).mapToObj(table::book))
+                .containsExactlyElementsOf(library.stream().filter(b -> b.getTopic() == Topic.FICTION).toList());
+    }
+
+    @Test
+    void smallLibraryMatchesDemo3() {
+        LibraryTable small = LibraryTable.of(new LibraryInit().getLibrary());
+        assertThat(small.pages()).isEqualTo(256 + 1009 + 478 + 531 + 416 + 624);
+        assertThat(small.withinShelfHeight()).isTrue();
+        assertThat(small.oldest()).map(Book::getTitle).contains("Lord of the Rings");
+    }
+}
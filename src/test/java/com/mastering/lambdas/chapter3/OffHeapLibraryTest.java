@@ -0,0 +1,63 @@
+package com.mastering.lambdas.chapter3;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapLibraryTest {
+
+    private final List<Book> library = library();
+
+    private static List<Book> library() {
+        List<Book> library = new ArrayList<>(new LibraryInit().getLibrary());
+        library.add(new Book("Ünal's Notes", List.of(), new int[]{}, Topic.HISTORY, Year.of(-300), 0.5));
+        library.addAll(LibraryGenerator.generate(30_000));
+        return library;
+    }
+
+    private OffHeapLibrary store() {
+        // small segments, so that the records are spread over many of them
+        OffHeapLibrary store = new OffHeapLibrary(4096);
+        library.forEach(store::add);
+        return store;
+    }
+
+    @Test
+    void cursorReadsEveryField() {
+        OffHeapLibrary store = store();
+        OffHeapCursor cursor = store.cursor();
+        for (int row = 0; row < library.size(); row++) {
+            Book expected = library.get(row);
+            cursor.moveTo(row);
+            assertThat(cursor.getTitle()).isEqualTo(expected.getTitle());
+            assertThat(cursor.getAuthors()).isEqualTo(expected.getAuthors());
+            assertThat(cursor.getPageCounts()).containsExactly(expected.getPageCounts());
+            assertThat(cursor.pageTotal()).isEqualTo(IntStream.of(expected.getPageCounts()).sum());
+            assertThat(cursor.getTopic()).isEqualTo(expected.getTopic());
+            assertThat(cursor.getPubDate()).isEqualTo(expected.getPubDate());
+            assertThat(cursor.getHeight()).isEqualTo(expected.getHeight());
+            assertThat(cursor.toBook()).isEqualTo(expected).hasSameHashCodeAs(expected);
+        }
+        assertThat(store.book(4)).isEqualTo(library.get(4));
+        assertThat(store.cursor().moveTo(0).author(0)).isSameAs(library.get(0).getAuthors().get(0));
+    }
+
+    @Test
+    void streamsMatchTheHeapLibrary() {
+        OffHeapLibrary store = store();
+        assertThat(store.stream().toList()).containsExactlyElementsOf(library);
+        assertThat(store.parallelStream().filter(b -> b.getTopic() == Topic.FICTION).toList())
+                .containsExactlyElementsOf(library.stream().filter(b -> b.getTopic() == Topic.FICTION).toList());
+        assertThat(store.parallelStream().distinct().count()).isEqualTo(library.stream().distinct().count());
+        assertThat(store.parallelCursors().map(OffHeapCursor::toBook).toList()).containsExactlyElementsOf(library);
+        assertThat(store.parallelCursors().mapToLong(OffHeapCursor::pageTotal).sum())
+                .isEqualTo(library.stream().mapToLong(b -> IntStream.of(b.getPageCounts()).sum()).sum());
+        assertThat(store.parallelCursors().filter(c -> c.getTopic() == Topic.FICTION).count())
+                .isEqualTo(library.stream().filter(b -> b.getTopic() == Topic.FICTION).count());
+    }
+}
@@ -0,0 +1,61 @@
+package com.mastering.lambdas.chapter3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TopKTest {
+
+    private final List<Book> library = LibraryGenerator.generate(50_000);
+    private final Comparator<Book> byTitle = Comparator.comparing(Book::getTitle);
+
+    @Test
+    void matchesSortedLimitIncludingTies() {
+        List<Book> expected = library.stream().sorted(byTitle).limit(100).toList();
+        assertThat(library.stream().collect(TopK.smallest(100, byTitle))).containsExactlyElementsOf(expected);
+        assertThat(library.parallelStream().collect(TopK.smallest(100, byTitle))).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void tiesKeepEncounterOrderInParallel() {
+        List<Integer> values = IntStream.range(0, 100_000).boxed().toList();
+        Comparator<Integer> byTens = Comparator.comparingInt(i -> i % 10);
+        assertThat(values.parallelStream().collect(TopK.smallest(25, byTens)))
+                .containsExactlyElementsOf(values.stream().sorted(byTens).limit(25).toList());
+        assertThat(values.parallelStream().collect(TopK.largest(25, byTens)))
+                .containsExactlyElementsOf(values.stream().sorted(byTens.reversed()).limit(25).toList());
+    }
+
+    @Test
+    void smallInputsAndZero() {
+        assertThat(new LibraryInit().getLibrary().stream().collect(TopK.smallest(100, byTitle)))
+                .extracting(Book::getTitle)
+                .containsExactly("Compilers: Principles, Techniques and Tools", "Fundamentals of Chinese Fingernail Image",
+                        "Lord of the Rings", "Voss");
+        assertThat(library.stream().collect(TopK.smallest(0, byTitle))).isEmpty();
+    }
+
+    @Test
+    void cursorPagesWalkTheWholeLibraryInTitleOrder() {
+        LibraryIndex index = new LibraryIndex(library);
+        List<Book> paged = new ArrayList<>();
+        LibraryIndex.TitleCursor cursor = LibraryIndex.TitleCursor.START;
+        while (cursor != null) {
+            LibraryIndex.TitlePage page = index.titlePage(cursor, 777);
+            paged.addAll(page.getBooks());
+            cursor = page.getNext().orElse(null);
+        }
+        List<Book> sorted = library.stream().sorted(byTitle).toList();
+        assertThat(paged).containsExactlyElementsOf(sorted);
+
+        LibraryIndex.TitleCursor afterHundred = index.titlePage(LibraryIndex.TitleCursor.START, 100).getNext().orElseThrow();
+        assertThat(index.byTitleAfter(afterHundred)).containsExactlyElementsOf(sorted.subList(100, sorted.size()));
+        assertThatThrownBy(() -> index.titlePage(afterHundred, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,68 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import com.mastering.lambdas.chapter3.Topic;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNullPointerException;
+import static org.assertj.core.api.Assertions.within;
+
+class EnumCollectorsTest {
+
+    private final List<Book> library = LibraryGenerator.generate(50_000);
+
+    @Test
+    void countsAndSumsMatchGroupingByInParallel() {
+        assertThat(library.parallelStream().collect(EnumCollectors.countingBy(Topic.class, Book::getTopic)))
+                .isInstanceOf(EnumMap.class)
+                .isEqualTo(library.stream().collect(groupingBy(Book::getTopic, Collectors.counting())));
+        assertThat(library.parallelStream().collect(EnumCollectors.summingIntBy(Topic.class, Book::getTopic,
+                b -> b.getPageCounts().length)))
+                .isEqualTo(library.stream().collect(groupingBy(Book::getTopic,
+                        Collectors.summingInt(b -> b.getPageCounts().length))));
+        assertThat(library.parallelStream().collect(EnumCollectors.summingLongBy(Topic.class, Book::getTopic,
+                b -> b.getPubDate().getValue())))
+                .isEqualTo(library.stream().collect(groupingBy(Book::getTopic,
+                        Collectors.summingLong(b -> b.getPubDate().getValue()))));
+    }
+
+    @Test
+    void averagesAndSummariesMatchGroupingBy() {
+        Map<Topic, Double> averages = library.parallelStream()
+                .collect(EnumCollectors.averagingDoubleBy(Topic.class, Book::getTopic, Book::getHeight));
+        Map<Topic, Double> expected = library.stream()
+                .collect(groupingBy(Book::getTopic, Collectors.averagingDouble(Book::getHeight)));
+        assertThat(averages).containsOnlyKeys(expected.keySet());
+        expected.forEach((topic, average) -> assertThat(averages.get(topic)).isCloseTo(average, within(1e-9)));
+
+        Map<Topic, IntSummaryStatistics> stats = library.parallelStream()
+                .collect(EnumCollectors.summarizingIntBy(Topic.class, Book::getTopic, b -> b.getPageCounts().length));
+        library.stream()
+                .collect(groupingBy(Book::getTopic, Collectors.summarizingInt(b -> b.getPageCounts().length)))
+                .forEach((topic, s) -> assertThat(stats.get(topic)).hasToString(s.toString()));
+    }
+
+    @Test
+    void onlyKeysThatOccurAreReported() {
+        List<Book> fiction = library.stream().filter(b -> b.getTopic() == Topic.FICTION).limit(10).toList();
+
+        assertThat(fiction.stream().collect(EnumCollectors.summingDoubleBy(Topic.class, Book::getTopic, b -> 0.0)))
+                .containsOnlyKeys(Topic.FICTION);
+        assertThat(List.<Book>of().stream().collect(EnumCollectors.countingBy(Topic.class, Book::getTopic))).isEmpty();
+    }
+
+    @Test
+    void nullKeysAreRejected() {
+        assertThatNullPointerException().isThrownBy(() -> library.stream()
+                .collect(EnumCollectors.countingBy(Topic.class, b -> null)));
+    }
+}
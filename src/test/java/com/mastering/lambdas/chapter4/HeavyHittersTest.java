@@ -0,0 +1,117 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import com.mastering.lambdas.chapter3.Topic;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HeavyHittersTest {
+
+    @Test
+    void mostFrequentReturnsEveryTiedKey() {
+        assertThat(Stream.of("a", "b", "c", "b", "a").collect(HeavyHitters.mostFrequent(Function.identity())))
+                .containsExactlyInAnyOrder("a", "b");
+        assertThat(Stream.<String>empty().collect(HeavyHitters.mostFrequent(Function.identity()))).isEmpty();
+
+        List<Book> library = LibraryGenerator.generate(20_000);
+        Map<Topic, Long> counts = library.stream().collect(Collectors.groupingBy(Book::getTopic, Collectors.counting()));
+        long max = counts.values().stream().mapToLong(Long::longValue).max().orElseThrow();
+        assertThat(library.parallelStream().collect(HeavyHitters.mostFrequent(Book::getTopic)))
+                .isEqualTo(counts.entrySet().stream().filter(e -> e.getValue() == max)
+                        .map(Map.Entry::getKey).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void sequentialSummaryStaysWithinItsBound() {
+        List<Integer> stream = zipf(200_000, 5_000, 1);
+        Map<Integer, Long> exact = stream.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        HeavyHitters.Summary<Integer> summary = stream.stream().collect(HeavyHitters.summarizing(50));
+
+        assertWithinBounds(summary, exact, stream.size());
+    }
+
+    @Test
+    void mergedSummaryStaysWithinItsBound() {
+        List<Integer> stream = zipf(200_000, 5_000, 2);
+        Map<Integer, Long> exact = stream.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        Collector<Integer, HeavyHitters.Summary<Integer>, HeavyHitters.Summary<Integer>> collector = erase(HeavyHitters.summarizing(50));
+
+        // a lopsided merge tree of uneven chunks, then the stream's own parallel split
+        HeavyHitters.Summary<Integer> merged = collector.supplier().get();
+        Random random = new Random(3);
+        for (int from = 0; from < stream.size(); ) {
+            int to = Math.min(stream.size(), from + 1 + random.nextInt(20_000));
+            HeavyHitters.Summary<Integer> chunk = collector.supplier().get();
+            stream.subList(from, to).forEach(v -> collector.accumulator().accept(chunk, v));
+            merged = random.nextBoolean() ? collector.combiner().apply(merged, chunk) : collector.combiner().apply(chunk, merged);
+            from = to;
+        }
+        assertWithinBounds(merged, exact, stream.size());
+        assertWithinBounds(stream.parallelStream().collect(HeavyHitters.summarizing(50)), exact, stream.size());
+    }
+
+    @Test
+    void topFindsTheHeaviestItems() {
+        List<Integer> stream = zipf(100_000, 10_000, 4);
+
+        List<HeavyHitters.Estimate<Integer>> top = stream.parallelStream().collect(HeavyHitters.top(3, 100));
+
+        // the Zipf ranks are the items, and the top three are far apart
+        assertThat(top).extracting(HeavyHitters.Estimate::item).containsExactly(1, 2, 3);
+        assertThatThrownBy(() -> HeavyHitters.top(0, 100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HeavyHitters.top(3, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void assertWithinBounds(HeavyHitters.Summary<Integer> summary, Map<Integer, Long> exact, int n) {
+        assertThat(summary.total()).isEqualTo(n);
+        assertThat(summary.estimates()).hasSizeLessThanOrEqualTo(summary.capacity());
+        assertThat(summary.maxError()).isLessThanOrEqualTo(n / (summary.capacity() + 1));
+        exact.forEach((item, f) -> {
+            HeavyHitters.Estimate<Integer> estimate = summary.estimate(item);
+            assertThat(f).as("item %d", item).isBetween(estimate.lowerBound(), estimate.upperBound());
+        });
+        Set<Integer> candidates = Set.copyOf(summary.candidates(0.05).stream().map(HeavyHitters.Estimate::item).toList());
+        exact.forEach((item, f) -> {
+            if (f > 0.05 * n) {
+                assertThat(candidates).contains(item);
+            }
+        });
+    }
+
+    /**
+     * Items 1 to {@code items} drawn with probability proportional to 1 / rank.
+     */
+    private static List<Integer> zipf(int n, int items, long seed) {
+        double[] cumulative = new double[items];
+        double sum = 0;
+        for (int i = 0; i < items; i++) {
+            cumulative[i] = sum += 1.0 / (i + 1);
+        }
+        Random random = new Random(seed);
+        List<Integer> values = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int at = java.util.Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            values.add((at < 0 ? -at - 1 : at) + 1);
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, A, R> Collector<T, A, R> erase(Collector<T, ?, R> collector) {
+        return (Collector<T, A, R>) collector;
+    }
+}
@@ -0,0 +1,65 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import com.mastering.lambdas.chapter3.Topic;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.partitioningBy;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class IntCollectorTest {
+
+    private final List<Book> library = LibraryGenerator.generate(50_000);
+
+    @Test
+    void downstreamPortsMatchTheJdkCollectorsInParallel() {
+        assertThat(library.parallelStream().collect(groupingBy(Book::getTopic,
+                IntCollector.reducing(0, Integer::sum).from(b -> b.getPageCounts().length))))
+                .isEqualTo(library.stream().collect(groupingBy(Book::getTopic,
+                        Collectors.reducing(0, b -> b.getPageCounts().length, Integer::sum))));
+        assertThat(library.parallelStream().collect(partitioningBy(b -> b.getTopic() == Topic.FICTION,
+                IntCollector.counting().from(b -> 0))))
+                .isEqualTo(library.stream().collect(partitioningBy(b -> b.getTopic() == Topic.FICTION,
+                        Collectors.counting())));
+        assertThat(library.parallelStream().collect(groupingBy(Book::getTopic,
+                LongCollector.summing().from(b -> b.getPubDate().getValue()))))
+                .isEqualTo(library.stream().collect(groupingBy(Book::getTopic,
+                        Collectors.summingLong(b -> b.getPubDate().getValue()))));
+
+        Map<Topic, Double> heights = library.parallelStream()
+                .collect(groupingBy(Book::getTopic, DoubleCollector.averaging().from(Book::getHeight)));
+        library.stream().collect(groupingBy(Book::getTopic, Collectors.averagingDouble(Book::getHeight)))
+                .forEach((topic, average) -> assertThat(heights.get(topic)).isCloseTo(average, within(1e-9)));
+
+        library.parallelStream()
+                .collect(groupingBy(Book::getTopic, IntCollector.summarizing().from(b -> b.getPageCounts().length)))
+                .forEach((topic, stats) -> assertThat(stats).hasToString(library.stream()
+                        .filter(b -> b.getTopic() == topic)
+                        .mapToInt(b -> b.getPageCounts().length)
+                        .summaryStatistics().toString()));
+    }
+
+    @Test
+    void collectsPrimitiveStreamsDirectly() {
+        assertThat(IntCollector.summing().collect(IntStream.rangeClosed(1, 100_000).parallel()))
+                .isEqualTo(IntStream.rangeClosed(1, 100_000).sum());
+        assertThat(IntCollector.averaging().collect(IntStream.of(1, 2, 6))).isEqualTo(3.0);
+        assertThat(IntCollector.max().collect(IntStream.of(-4, -9).parallel())).isEqualTo(OptionalInt.of(-4));
+        assertThat(IntCollector.max().collect(IntStream.empty())).isEmpty();
+        assertThat(LongCollector.reducing(1, (a, b) -> a * b).collect(LongStream.rangeClosed(1, 20).parallel()))
+                .isEqualTo(2_432_902_008_176_640_000L);
+        assertThat(DoubleCollector.summarizing().collect(DoubleStream.of(1.5, 2.5)).getAverage()).isEqualTo(2.0);
+        assertThat(DoubleCollector.averaging().collect(DoubleStream.empty())).isZero();
+    }
+}
@@ -0,0 +1,102 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixScanTest {
+
+    private static final int[] SIZES = {0, 1, 2, 7, 1_000, 100_003};
+    private static final int[] BLOCKS = {1, 2, 3, 16, 64};
+
+    @Test
+    void intScansMatchTheSequentialLoop() {
+        for (int n : SIZES) {
+            int[] values = new Random(n).ints(n, -1_000, 1_000).toArray();
+            for (int blocks : BLOCKS) {
+                int[] inclusive = values.clone();
+                PrefixScan.scan(inclusive, false, 0, Integer::sum, blocks);
+                int[] expected = values.clone();
+                for (int i = 1; i < n; i++) {
+                    expected[i] += expected[i - 1];
+                }
+                assertThat(inclusive).isEqualTo(expected);
+
+                int[] exclusive = values.clone();
+                PrefixScan.scan(exclusive, true, 5, Integer::sum, blocks);
+                assertThat(exclusive).isEqualTo(IntStream.range(0, n).map(i -> i == 0 ? 5 : 5 + expected[i - 1]).toArray());
+
+                int[] max = values.clone();
+                PrefixScan.scan(max, false, 0, Math::max, blocks);
+                assertThat(max).isEqualTo(runningMax(values));
+            }
+        }
+    }
+
+    private static int[] runningMax(int[] values) {
+        int[] max = values.clone();
+        for (int i = 1; i < max.length; i++) {
+            max[i] = Math.max(max[i - 1], max[i]);
+        }
+        return max;
+    }
+
+    @Test
+    void nonCommutativeOperatorsKeepTheirOrder() {
+        String[] letters = IntStream.range(0, 300).mapToObj(i -> String.valueOf((char) ('a' + i % 26))).toArray(String[]::new);
+        for (int blocks : BLOCKS) {
+            String[] inclusive = letters.clone();
+            PrefixScan.scan(inclusive, false, null, String::concat, blocks);
+            String[] exclusive = letters.clone();
+            PrefixScan.scan(exclusive, true, ">", String::concat, blocks);
+            for (int i = 0; i < letters.length; i++) {
+                String prefix = String.join("", Arrays.copyOfRange(letters, 0, i + 1));
+                assertThat(inclusive[i]).isEqualTo(prefix);
+                assertThat(exclusive[i]).isEqualTo(">" + prefix.substring(0, i));
+            }
+        }
+    }
+
+    @Test
+    void longAndDoubleScans() {
+        long[] longs = new Random(1).longs(50_000, 0, 1L << 40).toArray();
+        double[] doubles = new Random(2).doubles(50_000).toArray();
+        long[] expectedLongs = longs.clone();
+        Arrays.parallelPrefix(expectedLongs, Long::sum);
+        double[] expectedDoubles = doubles.clone();
+        for (int i = 1; i < doubles.length; i++) {
+            expectedDoubles[i] = Math.max(expectedDoubles[i - 1], doubles[i]);
+        }
+        PrefixScan.scan(longs, false, 0, Long::sum, 7);
+        PrefixScan.scan(doubles, false, 0, Math::max, 7);
+        assertThat(longs).isEqualTo(expectedLongs);
+        assertThat(doubles).isEqualTo(expectedDoubles);
+    }
+
+    @Test
+    void displacementsMatchTheDispRecordCollector() {
+        DispRecord records = new DispRecord();
+        Map<String, Integer> byCollector = records.library.parallelStream()
+                .collect(Collector.of(records.supplier, records.accumulator, records.combiner, records.finisher));
+        long[] disps = DispRecord.displacements(records.library);
+        for (int i = 0; i < disps.length; i++) {
+            assertThat(disps[i]).isEqualTo(byCollector.get(records.library.get(i).getTitle()).longValue());
+        }
+
+        List<Book> library = LibraryGenerator.generate(100_000);
+        long[] expected = new long[library.size()];
+        for (int i = 1; i < expected.length; i++) {
+            expected[i] = expected[i - 1] + IntStream.of(library.get(i - 1).getPageCounts()).sum();
+        }
+        assertThat(DispRecord.displacements(library)).isEqualTo(expected);
+    }
+}
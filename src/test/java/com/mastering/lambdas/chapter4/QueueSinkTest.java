@@ -0,0 +1,93 @@
+package com.mastering.lambdas.chapter4;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueueSinkTest {
+
+    @Test
+    void everyElementIsProcessedOnce() {
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        CompletableFuture<Long> done = QueueSink.consume(IntStream.range(0, 10_000).boxed().parallel(), 2, 4, seen::add);
+        assertThat(done.join()).isEqualTo(10_000);
+        assertThat(seen).hasSize(10_000);
+    }
+
+    @Test
+    void orderedWithOneWorkerKeepsEncounterOrder() {
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        CompletableFuture<Long> done = QueueSink.consumeOrdered(
+                IntStream.range(0, 2_000).boxed().parallel().map(i -> i * 2), 3, 1, processed::add);
+        assertThat(done.join()).isEqualTo(2_000);
+        assertThat(processed).isEqualTo(IntStream.range(0, 2_000).map(i -> i * 2).boxed().toList());
+    }
+
+    @Test
+    void producerWaitsForSlowWorkers() {
+        int capacity = 2;
+        int workers = 2;
+        AtomicInteger produced = new AtomicInteger();
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger maxLag = new AtomicInteger();
+        CompletableFuture<Long> done = QueueSink.consume(
+                IntStream.range(0, 200).boxed().peek(i -> maxLag.accumulateAndGet(produced.incrementAndGet() - started.get(), Math::max)),
+                capacity, workers,
+                i -> {
+                    started.incrementAndGet();
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+                });
+        assertThat(done.join()).isEqualTo(200);
+        assertThat(maxLag.get()).isLessThanOrEqualTo(capacity + workers + 1);
+    }
+
+    @Test
+    void failingWorkerStopsAnInfiniteStream() {
+        CompletableFuture<Long> done = QueueSink.consume(Stream.iterate(0, i -> i + 1), 4, 2, i -> {
+            if (i == 100) {
+                throw new IllegalStateException("bad element " + i);
+            }
+        });
+        assertThatThrownBy(done::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("bad element 100");
+    }
+
+    @Test
+    void failureCompletesEvenIfAWorkerSwallowsTheInterrupt() {
+        CompletableFuture<Long> done = QueueSink.consumeOrdered(IntStream.range(0, 1_000).boxed(), 4, 2, i -> {
+            if (i == 0) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // swallowed, clearing the interrupt
+                }
+            } else if (i == 1) {
+                throw new IllegalStateException("bad element " + i);
+            }
+        });
+        assertThatThrownBy(() -> done.orTimeout(5, TimeUnit.SECONDS).join())
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void failingStreamCompletesExceptionally() {
+        CompletableFuture<Long> done = QueueSink.consumeOrdered(
+                IntStream.range(0, 50).boxed().map(i -> 10 / (i - 40)), 2, 2, i -> { });
+        assertThatThrownBy(done::join).hasCauseInstanceOf(ArithmeticException.class);
+    }
+}
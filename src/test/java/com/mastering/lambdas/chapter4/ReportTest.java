@@ -0,0 +1,50 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import com.mastering.lambdas.chapter3.Topic;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ReportTest {
+
+    private final List<Book> library = LibraryGenerator.generate(20_000);
+
+    @Test
+    void parallelReportMatchesSeparatePasses() {
+        Report.Builder<Book> builder = Report.builder();
+        Report.Key<Map<Topic, Long>> counts = builder.add("counts", groupingBy(Book::getTopic, Collectors.counting()));
+        Report.Key<Map<Topic, String>> titles = builder.add("titles",
+                groupingBy(Book::getTopic, Collectors.mapping(Book::getTitle, Collectors.joining(";"))));
+        Report.Key<Long> total = builder.add("total", Collectors.summingLong(b -> b.getPageCounts().length));
+
+        Report report = library.parallelStream().collect(builder.build());
+
+        assertThat(report.get(counts)).isEqualTo(library.stream().collect(groupingBy(Book::getTopic, Collectors.counting())));
+        // joining is ordered, so the combiner tree must keep encounter order
+        assertThat(report.get(titles)).isEqualTo(library.stream()
+                .collect(groupingBy(Book::getTopic, Collectors.mapping(Book::getTitle, Collectors.joining(";")))));
+        assertThat(report.get(total)).isEqualTo(library.stream().mapToLong(b -> b.getPageCounts().length).sum());
+        assertThat(report.asMap()).containsOnlyKeys("counts", "titles", "total");
+    }
+
+    @Test
+    void keysBelongToTheirReport() {
+        Report.Builder<Book> first = Report.builder();
+        first.add("count", Collectors.counting());
+        Report.Builder<Book> second = Report.builder();
+        Report.Key<Long> foreign = second.add("count", Collectors.counting());
+
+        Report report = library.stream().collect(first.build());
+
+        assertThatIllegalArgumentException().isThrownBy(() -> report.get(foreign));
+        assertThatIllegalArgumentException().isThrownBy(() -> first.add("count", Collectors.counting()));
+    }
+}
@@ -0,0 +1,99 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter1.Point;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiPredicate;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentCollectorsTest {
+
+    private static final BiPredicate<Integer, Integer> GAP = (a, b) -> b - a > 10;
+
+    @Test
+    void segmentsSequentially() {
+        SegmentCollectors.Segments<Integer> segments = List.of(1, 2, 3, 20, 25, 40, 41)
+                .stream().collect(SegmentCollectors.segmentBy(GAP));
+
+        assertThat(segments.size()).isEqualTo(3);
+        assertThat(segments.starts()).isEqualTo(new int[]{0, 3, 5});
+        assertThat(segments.segments()).containsExactly(List.of(1, 2, 3), List.of(20, 25), List.of(40, 41));
+        assertThat(segments.end(2)).isEqualTo(7);
+    }
+
+    @Test
+    void emptyInputHasNoSegments() {
+        SegmentCollectors.Segments<Integer> segments = List.<Integer>of().parallelStream()
+                .collect(SegmentCollectors.segmentBy(GAP));
+
+        assertThat(segments.size()).isZero();
+        assertThat(SegmentCollectors.segmentStarts(new int[0], (a, b) -> b - a > 10)).isEmpty();
+    }
+
+    @Test
+    void combiningAtEveryChunkBoundaryMatchesTheLoop() {
+        List<Integer> values = sortedWithGaps(200, 1);
+        int[] expected = loopStarts(values);
+        Collector<Integer, Object, SegmentCollectors.Segments<Integer>> collector = erase(SegmentCollectors.segmentBy(GAP));
+        // split at every position, including one where the junction is a boundary and where it is not
+        for (int cut = 0; cut <= values.size(); cut++) {
+            Object left = collector.supplier().get();
+            values.subList(0, cut).forEach(v -> collector.accumulator().accept(left, v));
+            Object right = collector.supplier().get();
+            values.subList(cut, values.size()).forEach(v -> collector.accumulator().accept(right, v));
+            SegmentCollectors.Segments<Integer> combined = collector.finisher().apply(collector.combiner().apply(left, right));
+
+            assertThat(combined.starts()).as("cut at %d", cut).isEqualTo(expected);
+            assertThat(combined.elements()).isEqualTo(values);
+        }
+    }
+
+    @Test
+    void parallelCollectorAndPrimitiveStartsMatchTheLoop() {
+        List<Integer> values = sortedWithGaps(100_000, 7);
+        int[] expected = loopStarts(values);
+
+        assertThat(values.parallelStream().collect(SegmentCollectors.segmentBy(GAP)).starts()).isEqualTo(expected);
+        int[] primitive = values.stream().mapToInt(Integer::intValue).toArray();
+        assertThat(SegmentCollectors.segmentStarts(primitive, (a, b) -> b - a > 10)).isEqualTo(expected);
+        double[] doubles = values.stream().mapToDouble(Integer::doubleValue).toArray();
+        assertThat(SegmentCollectors.segmentStarts(doubles, (a, b) -> b - a > 10)).isEqualTo(expected);
+    }
+
+    @Test
+    void segmentsPointsByProximity() {
+        SegmentCollectors.Segments<Point> segments = Demo4.segmentByProximity(List.of(
+                new Point(1, 2), new Point(2, 3), new Point(30, 4), new Point(35, 9), new Point(80, 0)));
+
+        assertThat(segments.starts()).isEqualTo(new int[]{0, 2, 4});
+        assertThat(segments.segment(1)).extracting(Point::getX).containsExactly(30, 35);
+    }
+
+    private static List<Integer> sortedWithGaps(int n, long seed) {
+        Random random = new Random(seed);
+        List<Integer> values = new ArrayList<>(n);
+        int v = 0;
+        for (int i = 0; i < n; i++) {
+            v += random.nextInt(5) == 0 ? 11 + random.nextInt(10) : random.nextInt(4);
+            values.add(v);
+        }
+        return values;
+    }
+
+    private static int[] loopStarts(List<Integer> values) {
+        return IntStream.range(0, values.size())
+                .filter(i -> i == 0 || GAP.test(values.get(i - 1), values.get(i)))
+                .toArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, R> Collector<T, Object, R> erase(Collector<T, ?, R> collector) {
+        return (Collector<T, Object, R>) collector;
+    }
+}
@@ -0,0 +1,154 @@
+package com.mastering.lambdas.chapter4;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SketchesTest {
+
+    @Test
+    void distinctCountIsWithinThreeStandardErrors() {
+        for (int precision : new int[]{10, 12, 14}) {
+            for (int distinct : new int[]{100, 5_000, 200_000}) {
+                // every name twice, so duplicates must not count
+                List<String> names = IntStream.range(0, 2 * distinct).mapToObj(i -> "author-" + i % distinct).toList();
+
+                HyperLogLog sketch = names.parallelStream().collect(Sketches.distinctCount(precision));
+
+                double standardError = 1.04 / Math.sqrt(1 << precision);
+                assertThat((double) sketch.estimate())
+                        .as("precision %d, %d distinct", precision, distinct)
+                        .isCloseTo(distinct, within(3 * standardError * distinct + 1));
+                assertThat(sketch.sizeInBytes()).isEqualTo(1 << precision);
+            }
+        }
+    }
+
+    @Test
+    void quantilesAreWithinTheirRankError() {
+        double[] values = new Random(7).doubles(300_000).map(d -> Math.exp(4 * d)).toArray();
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        QuantileSketch sketch = Arrays.stream(values).boxed().parallel().collect(Sketches.quantiles(Double::doubleValue));
+
+        assertThat(sketch.count()).isEqualTo(values.length);
+        assertThat(sketch.retained()).isLessThan(3 * QuantileSketch.DEFAULT_K + 64);
+        for (double q : new double[]{0.01, 0.25, 0.5, 0.9, 0.99}) {
+            double estimate = sketch.quantile(q);
+            double trueRank = (double) lowerBound(sorted, estimate) / sorted.length;
+            assertThat(trueRank).as("quantile %s", q).isCloseTo(q, within(0.02));
+            assertThat(sketch.rank(estimate)).isCloseTo(trueRank, within(0.02));
+        }
+        assertThat(sketch.quantile(0)).isEqualTo(sorted[0]);
+        assertThat(sketch.quantile(1)).isEqualTo(sorted[sorted.length - 1]);
+    }
+
+    @Test
+    void intQuantilesCollectAnIntStream() {
+        QuantileSketch sketch = Sketches.intQuantiles().collect(IntStream.range(0, 100_000).parallel());
+        assertThat(sketch.count()).isEqualTo(100_000);
+        assertThat(sketch.min()).isEqualTo(0);
+        assertThat(sketch.max()).isEqualTo(99_999);
+        assertThat(sketch.quantile(0.5)).isCloseTo(50_000, within(2_000.0));
+    }
+
+    @Test
+    void balancedMergesDoNotBiasTheMedian() {
+        double bias = 0;
+        int trials = 20;
+        for (int trial = 0; trial < trials; trial++) {
+            Random random = new Random(trial);
+            double[] values = new double[256 * 4_000];
+            List<QuantileSketch> sketches = new ArrayList<>();
+            for (int leaf = 0; leaf < 256; leaf++) {
+                QuantileSketch sketch = new QuantileSketch();
+                for (int i = leaf * 4_000; i < (leaf + 1) * 4_000; i++) {
+                    values[i] = random.nextDouble();
+                    sketch.add(values[i]);
+                }
+                sketches.add(sketch);
+            }
+            while (sketches.size() > 1) {
+                List<QuantileSketch> merged = new ArrayList<>();
+                for (int i = 0; i < sketches.size(); i += 2) {
+                    merged.add(sketches.get(i).merge(sketches.get(i + 1)));
+                }
+                sketches = merged;
+            }
+            double median = sketches.get(0).quantile(0.5);
+            bias += (double) Arrays.stream(values).filter(v -> v <= median).count() / values.length - 0.5;
+        }
+        assertThat(bias / trials).isCloseTo(0, within(0.003));
+    }
+
+    @Test
+    void frequenciesNeverUnderestimateAndRarelyExceedTheBound() {
+        Random random = new Random(11);
+        List<String> titles = IntStream.range(0, 200_000)
+                .mapToObj(i -> "title-" + (int) Math.floor(Math.pow(random.nextDouble(), 3) * 20_000))
+                .toList();
+        Map<String, Long> exact = titles.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        CountMinSketch sketch = titles.parallelStream().collect(Sketches.frequencies(1 << 11, 5));
+
+        assertThat(sketch.total()).isEqualTo(titles.size());
+        long beyondBound = exact.entrySet().stream()
+                .filter(e -> {
+                    long estimate = sketch.estimate(e.getKey());
+                    assertThat(estimate).isGreaterThanOrEqualTo(e.getValue());
+                    return estimate - e.getValue() > sketch.errorBound();
+                })
+                .count();
+        // each item exceeds the bound with probability at most e^-5, under 1%
+        assertThat(beyondBound).isLessThanOrEqualTo(exact.size() / 100);
+        assertThat(sketch.estimate("never seen")).isLessThanOrEqualTo((long) sketch.errorBound());
+    }
+
+    @Test
+    void sketchesSurviveSerializationAndMergeLikeAUnion() throws Exception {
+        HyperLogLog left = IntStream.range(0, 30_000).boxed().collect(Sketches.distinctCount(12));
+        HyperLogLog right = IntStream.range(20_000, 50_000).boxed().collect(Sketches.distinctCount(12));
+        HyperLogLog union = IntStream.range(0, 50_000).boxed().collect(Sketches.distinctCount(12));
+        assertThat(roundTrip(left).merge(roundTrip(right)).estimate()).isEqualTo(union.estimate());
+
+        QuantileSketch quantiles = IntStream.range(0, 10_000).boxed().collect(Sketches.quantiles(Integer::doubleValue));
+        QuantileSketch copy = roundTrip(quantiles);
+        assertThat(copy.quantile(0.5)).isEqualTo(quantiles.quantile(0.5));
+
+        CountMinSketch frequencies = List.of("a", "b", "a").stream().collect(Sketches.frequencies(64, 3));
+        CountMinSketch merged = roundTrip(frequencies).merge(frequencies);
+        assertThat(merged.estimate("a")).isGreaterThanOrEqualTo(4);
+        assertThat(merged.total()).isEqualTo(6);
+    }
+
+    private static int lowerBound(double[] sorted, double value) {
+        int at = Arrays.binarySearch(sorted, value);
+        return at < 0 ? -at - 1 : at;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T sketch) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(sketch);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+}
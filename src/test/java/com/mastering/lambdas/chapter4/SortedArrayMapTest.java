@@ -0,0 +1,109 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.Book;
+import com.mastering.lambdas.chapter3.LibraryGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SortedArrayMapTest {
+
+    @Test
+    void collectsLikeToMapIntoATreeMap() {
+        List<Book> library = LibraryGenerator.generate(30_000);
+        BinaryOperator<Year> latest = BinaryOperator.maxBy(Comparator.naturalOrder());
+
+        SortedArrayMap<String, Year> map = library.parallelStream()
+                .collect(SortedArrayMap.toSortedArrayMap(Book::getTitle, Book::getPubDate, latest));
+        TreeMap<String, Year> expected = library.stream()
+                .collect(Collectors.toMap(Book::getTitle, Book::getPubDate, latest, TreeMap::new));
+
+        assertThat(map).isEqualTo(expected);
+        assertThat(map.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(List.copyOf(map.keySet())).isEqualTo(List.copyOf(expected.keySet()));
+        assertThat(map.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    void mergesEqualKeysInEncounterOrder() {
+        List<String> words = List.of("b", "a", "b", "c", "a", "b");
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < words.size(); i++) {
+            positions.add(i);
+        }
+
+        SortedArrayMap<String, String> map = positions.parallelStream()
+                .collect(SortedArrayMap.toSortedArrayMap(words::get, String::valueOf, (x, y) -> x + y));
+
+        assertThat(map).containsExactly(Map.entry("a", "14"), Map.entry("b", "025"), Map.entry("c", "3"));
+    }
+
+    @Test
+    void navigatesLikeATreeMap() {
+        Random random = new Random(5);
+        List<Integer> keys = random.ints(2_000, 0, 10_000).boxed().toList();
+        TreeMap<Integer, Integer> tree = new TreeMap<>();
+        keys.forEach(k -> tree.merge(k, 1, Integer::sum));
+        SortedArrayMap<Integer, Integer> array = keys.stream()
+                .collect(SortedArrayMap.toSortedArrayMap(k -> k, k -> 1, Integer::sum));
+
+        assertNavigatesLike(array, tree, random);
+        assertNavigatesLike(array.descendingMap(), tree.descendingMap(), random);
+        assertNavigatesLike(array.subMap(2_000, true, 7_000, false), tree.subMap(2_000, true, 7_000, false), random);
+        assertNavigatesLike(array.descendingMap().headMap(5_000, true), tree.descendingMap().headMap(5_000, true), random);
+        assertNavigatesLike(array.tailMap(9_990, false), tree.tailMap(9_990, false), random);
+        assertNavigatesLike(array.subMap(4_000, true, 4_000, false), tree.subMap(4_000, true, 4_000, false), random);
+        assertNavigatesLike(array.descendingMap().subMap(8_000, false, 3_000, true).descendingMap(),
+                tree.descendingMap().subMap(8_000, false, 3_000, true).descendingMap(), random);
+    }
+
+    @Test
+    void isImmutableAndChecksRanges() {
+        SortedArrayMap<String, Integer> map = List.of("a", "b").stream()
+                .collect(SortedArrayMap.toSortedArrayMap(s -> s, String::length, Integer::sum));
+
+        assertThatThrownBy(() -> map.put("c", 1)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(map::pollFirstEntry).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> map.entrySet().iterator().remove()).isInstanceOf(UnsupportedOperationException.class);
+        assertThatIllegalArgumentException().isThrownBy(() -> map.subMap("b", "a"));
+        assertThatIllegalArgumentException().isThrownBy(() -> map.descendingMap().subMap("a", "b"));
+    }
+
+    private static void assertNavigatesLike(NavigableMap<Integer, Integer> actual, NavigableMap<Integer, Integer> expected,
+                                            Random random) {
+        assertThat(actual).isEqualTo(expected);
+        assertThat(List.copyOf(actual.entrySet())).isEqualTo(List.copyOf(expected.entrySet()));
+        assertThat(List.copyOf(actual.descendingKeySet())).isEqualTo(List.copyOf(expected.descendingKeySet()));
+        assertThat(actual.firstEntry()).isEqualTo(expected.firstEntry());
+        assertThat(actual.lastEntry()).isEqualTo(expected.lastEntry());
+        for (int i = 0; i < 500; i++) {
+            int key = random.nextInt(10_200) - 100;
+            assertThat(actual.get(key)).isEqualTo(expected.get(key));
+            assertThat(actual.lowerEntry(key)).as("lower %d", key).isEqualTo(expected.lowerEntry(key));
+            assertThat(actual.floorKey(key)).as("floor %d", key).isEqualTo(expected.floorKey(key));
+            assertThat(actual.ceilingEntry(key)).as("ceiling %d", key).isEqualTo(expected.ceilingEntry(key));
+            assertThat(actual.higherKey(key)).as("higher %d", key).isEqualTo(expected.higherKey(key));
+            assertThat(actual.navigableKeySet().floor(key)).isEqualTo(expected.navigableKeySet().floor(key));
+        }
+        if (!expected.isEmpty()) {
+            Integer from = expected.firstKey();
+            Integer to = expected.lastKey();
+            assertThat(actual.subMap(from, false, to, true)).isEqualTo(expected.subMap(from, false, to, true));
+            assertThat(actual.headMap(to)).isEqualTo(expected.headMap(to));
+            assertThat(actual.tailMap(from, false)).isEqualTo(expected.tailMap(from, false));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.mastering.lambdas.chapter4;
+
+import com.mastering.lambdas.chapter3.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.Year;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static java.util.stream.Collectors.groupingBy;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopicAggregateViewTest {
+
+    @Test
+    void viewsTrackAddsRemovesAndUpdates() {
+        List<Book> generated = LibraryGenerator.generate(5_000);
+        Catalog catalog = new Catalog(generated.subList(0, 2_000));
+        TopicAggregateView topicView = new TopicAggregateView();
+        LatestEditionView latestEditions = new LatestEditionView();
+        catalog.subscribe(topicView);
+        catalog.subscribe(latestEditions);
+
+        SplittableRandom random = new SplittableRandom(7);
+        for (Book b : generated.subList(2_000, 5_000)) {
+            catalog.add(b);
+            long id = random.nextLong(catalog.size() + 100L);
+            if (random.nextBoolean()) {
+                catalog.remove(id);
+            } else {
+                catalog.update(id, generated.get(random.nextInt(generated.size())));
+            }
+        }
+
+        List<Book> library = catalog.books().toList();
+        assertThat(topicView.booksByTopic()).isEqualTo(library.stream().collect(groupingBy(Book::getTopic)));
+        assertThat(topicView.volumeCountByTopic()).isEqualTo(library.stream()
+                .collect(groupingBy(Book::getTopic, Collectors.summingInt(b -> b.getPageCounts().length))));
+        assertThat(topicView.bookCountByTopic()).isEqualTo(library.stream()
+                .collect(groupingBy(Book::getTopic, Collectors.counting())));
+        assertThat(topicView.concatenatedTitlesByTopic()).isEqualTo(library.stream()
+                .collect(groupingBy(Book::getTopic, Collectors.mapping(Book::getTitle, Collectors.joining(";")))));
+        assertThat(latestEditions.titleToPubDateLatest()).isEqualTo(library.stream()
+                .collect(Collectors.toMap(Book::getTitle, Book::getPubDate, (x, y) -> x.isAfter(y) ? x : y)));
+
+        long maxCount = Collections.max(topicView.bookCountByTopic().values());
+        assertThat(topicView.mostPopularTopic())
+                .hasValueSatisfying(t -> assertThat(topicView.bookCountByTopic().get(t)).isEqualTo(maxCount));
+    }
+
+    @Test
+    void removingTheLatestEditionFallsBackToTheOneBefore() {
+        Catalog catalog = new Catalog(new LibraryInit().getLibrary());
+        LatestEditionView latestEditions = new LatestEditionView();
+        catalog.subscribe(latestEditions);
+        long reissue = catalog.add(new Book("Voss", List.of("Patrick White"), new int[]{448},
+                Topic.FICTION, Year.of(1994), 19.8));
+        assertThat(latestEditions.latestPubDate("Voss")).contains(Year.of(1994));
+        catalog.remove(reissue);
+        assertThat(latestEditions.latestPubDate("Voss")).contains(Year.of(1957));
+    }
+
+    @Test
+    void concurrentReadersNeverSeeHalfAppliedUpdates() throws InterruptedException {
+        Catalog catalog = new Catalog(LibraryGenerator.generate(1_000));
+        long voss = catalog.add(new Book("Voss", List.of("Patrick White"), new int[]{478}, Topic.FICTION, Year.of(1957), 19.8));
+        TopicAggregateView topicView = new TopicAggregateView();
+        LatestEditionView latestEditions = new LatestEditionView();
+        catalog.subscribe(topicView);
+        catalog.subscribe(latestEditions);
+        int size = catalog.size();
+
+        AtomicBoolean done = new AtomicBoolean();
+        List<String> failures = new CopyOnWriteArrayList<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                TopicAggregateView.State state = topicView.state();
+                long counted = state.counts().bookCountByTopic().values().stream().mapToLong(Long::longValue).sum();
+                int listed = state.booksByTopic().values().stream().mapToInt(List::size).sum();
+                if (counted != size || listed != size) {
+                    failures.add(counted + " counted, " + listed + " listed");
+                }
+                if (latestEditions.latestPubDate("Voss").isEmpty()) {
+                    failures.add("Voss missing");
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20_000; i++) {
+            catalog.update(voss, new Book("Voss", List.of("Patrick White"), new int[]{478},
+                    i % 2 == 0 ? Topic.HISTORY : Topic.FICTION, Year.of(1958 + i % 2), 19.8));
+        }
+        done.set(true);
+        reader.join();
+
+        assertThat(failures).isEmpty();
+        assertThat(latestEditions.latestPubDate("Voss")).contains(Year.of(1959));
+        assertThat(topicView.booksByTopic().get(Topic.FICTION)).last().extracting(Book::getTitle).isEqualTo("Voss");
+    }
+
+    @Test
+    void snapshotsAreNotAffectedByLaterWrites() {
+        Catalog catalog = new Catalog(new LibraryInit().getLibrary());
+        TopicAggregateView topicView = new TopicAggregateView();
+        catalog.subscribe(topicView);
+        TopicAggregateView.Counts before = topicView.counts();
+        catalog.add(new Book("Dune", List.of("Herbert"), new int[]{412}, Topic.SCIENCE_FICTION, Year.of(1965), 21.0));
+        assertThat(before.bookCount(Topic.SCIENCE_FICTION)).isZero();
+        assertThat(topicView.counts().bookCount(Topic.SCIENCE_FICTION)).isEqualTo(1);
+        assertThat(topicView.mostPopularTopic()).contains(Topic.FICTION);
+    }
+}
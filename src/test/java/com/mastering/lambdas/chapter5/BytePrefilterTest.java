@@ -0,0 +1,72 @@
+package com.mastering.lambdas.chapter5;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BytePrefilterTest {
+
+    private static String of(String regex) {
+        return BytePrefilter.of(Pattern.compile(regex)).toString();
+    }
+
+    @Test
+    void findsWhatEveryMatchContains() {
+        assertThat(of("[-+]?[0-9]*\\.?[0-9]+")).isEqualTo("BytePrefilter[one of 0123456789]");
+        assertThat(of("ERROR [0-9]+ .*timeout")).isEqualTo("BytePrefilter[literal timeout]");
+        assertThat(of("^ERROR (\\d+) request")).isEqualTo("BytePrefilter[literal  request]");
+        assertThat(of("foo\\.bar\\b")).isEqualTo("BytePrefilter[literal foo.bar]");
+        assertThat(of("colou?r")).isEqualTo("BytePrefilter[literal colo]");
+        assertThat(of("x+\\d{3}")).isEqualTo("BytePrefilter[one of x]");
+        assertThat(of("\\Qa.b\\E+c")).isEqualTo("BytePrefilter[literal a.b]");
+        assertThat(of("gr[^a]y")).isEqualTo("BytePrefilter[literal gr]");
+        assertThat(of("naïve")).isEqualTo("BytePrefilter[literal naïve]");
+        assertThat(BytePrefilter.of(Pattern.compile("a.b", Pattern.LITERAL)).toString()).isEqualTo("BytePrefilter[literal a.b]");
+    }
+
+    @Test
+    void givesUpOnWhatItDoesNotFollow() {
+        for (String regex : List.of("error|warn", "(?i)error", "(?<=a)b", "(a)\\1", "\\p{Lu}x", ".*", "[a-z&&[^e]]+")) {
+            assertThat(of(regex)).as(regex).isEqualTo("BytePrefilter[none]");
+        }
+        assertThat(BytePrefilter.of(Pattern.compile("error", Pattern.CASE_INSENSITIVE))).isSameAs(BytePrefilter.NONE);
+        assertThat(BytePrefilter.of(Pattern.compile("Error", Pattern.LITERAL | Pattern.CASE_INSENSITIVE))).isSameAs(BytePrefilter.NONE);
+    }
+
+    @Test
+    void neverRejectsAMatchingLine() {
+        List<String> regexes = List.of("[-+]?[0-9]*\\.?[0-9]+", "ab+c", "a{2,}b", "b[a-c]{2}d?", "\\.a\\+?",
+                "(ab)+cd", "cab*a", "\\w\\s\\d", "ba??c", "aab", "dcba", "a\\Qbc\\E?d", "é[ab]", "[^a]b");
+        String alphabet = "abcd .+-01é\t";
+        Random random = new Random(5);
+        for (String regex : regexes) {
+            Pattern pattern = Pattern.compile(regex);
+            BytePrefilter prefilter = BytePrefilter.of(pattern);
+            int rejected = 0;
+            for (int n = 0; n < 5_000; n++) {
+                StringBuilder sb = new StringBuilder();
+                int length = random.nextInt(30);
+                for (int i = 0; i < length; i++) {
+                    sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                String line = sb.toString();
+                byte[] bytes = ("xx" + line).getBytes(StandardCharsets.UTF_8);
+                boolean mayMatch = prefilter.mayMatch(ByteBuffer.wrap(bytes), 2, bytes.length);
+                if (pattern.matcher(line).find()) {
+                    assertThat(mayMatch).as(regex + " on " + line).isTrue();
+                } else if (!mayMatch) {
+                    rejected++;
+                }
+            }
+            if (prefilter != BytePrefilter.NONE) {
+                assertThat(rejected).as(regex).isPositive();
+            }
+        }
+    }
+}
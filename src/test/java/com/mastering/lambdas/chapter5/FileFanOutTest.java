@@ -0,0 +1,82 @@
+package com.mastering.lambdas.chapter5;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileFanOutTest {
+
+    @TempDir
+    Path root;
+
+    private List<Path> files(int count) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int f = 0; f < count; f++) {
+            int file = f;
+            files.add(Files.write(root.resolve("f" + f + ".txt"),
+                    IntStream.range(0, f * 37 % 1000).mapToObj(i -> file + ":" + i).toList()));
+        }
+        return files;
+    }
+
+    private static List<String> expected(List<Path> files) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Path file : files) {
+            if (Files.isRegularFile(file)) {
+                lines.addAll(Files.readAllLines(file));
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void streamsEveryLineInFileOrderWithFewFilesOpen() throws IOException {
+        List<Path> files = files(300);
+        FileFanOut fanOut = new FileFanOut(4, (path, e) -> {
+            throw new AssertionError("Unreadable " + path, e);
+        });
+        try (Stream<String> lines = fanOut.lines(files)) {
+            assertThat(lines.toList()).isEqualTo(expected(files));
+        }
+        assertThat(fanOut.peakOpen()).isBetween(1, 4);
+    }
+
+    @Test
+    void reportsUnreadableFilesInOrderAndGoesOn() throws IOException {
+        List<Path> files = new ArrayList<>(files(20));
+        files.add(5, root.resolve("missing.txt"));
+        files.add(12, Files.createDirectory(root.resolve("directory")));
+        List<Path> unreadable = new ArrayList<>();
+        List<IOException> errors = new ArrayList<>();
+        List<String> read;
+        try (Stream<String> lines = new FileFanOut(3, (path, e) -> {
+            unreadable.add(path);
+            errors.add(e);
+        }).lines(files)) {
+            read = lines.toList();
+        }
+        assertThat(read).isEqualTo(expected(files));
+        assertThat(unreadable).containsExactly(root.resolve("missing.txt"), root.resolve("directory"));
+        assertThat(errors.get(0)).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void closingEarlyStopsReadingAhead() throws IOException {
+        List<Path> files = files(50);
+        FileFanOut fanOut = new FileFanOut(8, (path, e) -> {});
+        try (Stream<String> lines = fanOut.lines(files)) {
+            assertThat(lines.skip(1000).findFirst()).isPresent();
+        }
+        assertThat(new FileFanOut(2, (path, e) -> {}).lines(List.of()).count()).isZero();
+    }
+}
@@ -0,0 +1,128 @@
+package com.mastering.lambdas.chapter5;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GrepTest {
+
+    @TempDir
+    Path root;
+
+    private final Pattern pattern = Pattern.compile("ERROR \\d+");
+
+    private void write(String name, int lines, long seed) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sb.append(random.nextInt(20) == 0 ? "ERROR " : "INFO ").append(random.nextInt(1000))
+                    .append(" ünïcödé ").append(i).append('\n');
+        }
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    private List<String> expected(String glob) throws IOException {
+        List<String> matches = new ArrayList<>();
+        var matcher = root.getFileSystem().getPathMatcher(glob);
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(Files::isRegularFile).filter(matcher::matches).sorted().toList();
+        }
+        for (Path file : files) {
+            List<String> lines = Files.readAllLines(file);
+            long disp = 0;
+            for (int i = 0; i < lines.size(); i++) {
+                if (pattern.matcher(lines.get(i)).find()) {
+                    matches.add(file + ":" + (i + 1) + ":" + disp + ":" + lines.get(i));
+                }
+                disp += lines.get(i).getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        }
+        return matches;
+    }
+
+    @Test
+    void reportsMatchesInFileAndLineOrder() throws IOException {
+        write("b/big.log", 60_000, 1);
+        write("a/small.log", 300, 2);
+        write("a/empty.log", 0, 3);
+        write("c/d/other.log", 5_000, 4);
+        write("c/skipped.txt", 1_000, 5);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<String> found = new ArrayList<>();
+            long count = new Grep(pattern, 8192, 3, executor, (path, e) -> {
+                throw new AssertionError("unreadable: " + path, e);
+            }).search(root, "glob:**/*.log", m -> found.add(m.toString()));
+            assertThat(found).isEqualTo(expected("glob:**/*.log"));
+            assertThat(count).isEqualTo(found.size()).isGreaterThan(3000);
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Grep.Match> all = new ArrayList<>();
+        new Grep(pattern, (path, e) -> {
+            throw new AssertionError("unreadable: " + path, e);
+        }).search(root, null, all::add);
+        assertThat(all).map(Grep.Match::toString).isEqualTo(expected("glob:**"));
+    }
+
+    @Test
+    void reportsUnreadableFilesAndGoesOn() throws IOException {
+        write("a.log", 2_000, 6);
+        write("c.log", 2_000, 7);
+        List<Path> files = List.of(root.resolve("a.log"), root.resolve("b.log"), root.resolve("c.log"));
+        List<Path> unreadable = new ArrayList<>();
+        List<IOException> errors = new ArrayList<>();
+        List<String> found = new ArrayList<>();
+        new Grep(pattern, 8192, 2, Runnable::run, (path, e) -> {
+            unreadable.add(path);
+            errors.add(e);
+        }).search(files, m -> found.add(m.toString()));
+        assertThat(found).isEqualTo(expected("glob:**"));
+        assertThat(unreadable).containsExactly(root.resolve("b.log"));
+        assertThat(errors.get(0)).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void closesEveryFileWhenTheConsumerThrows() throws IOException {
+        Path fds = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(fds));
+        write("a.log", 100, 8);
+        write("b.log", 2_000, 9);
+        Grep grep = new Grep(pattern, 8192, 2, Runnable::run, (path, e) -> {
+            throw new AssertionError("unreadable: " + path, e);
+        });
+        assertThatThrownBy(() -> grep.search(root, null, m -> {
+            throw new IllegalStateException("consumer failed");
+        })).hasMessage("consumer failed");
+        try (Stream<Path> open = Files.list(fds)) {
+            assertThat(open.map(fd -> {
+                try {
+                    return Files.readSymbolicLink(fd);
+                } catch (IOException e) {
+                    return fd;
+                }
+            })).noneMatch(target -> target.startsWith(root));
+        }
+    }
+}
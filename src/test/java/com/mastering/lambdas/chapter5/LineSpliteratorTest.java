@@ -0,0 +1,114 @@
+package com.mastering.lambdas.chapter5;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LineSpliteratorTest {
+
+    @TempDir
+    Path dir;
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(dir.resolve("lines.txt"), content, StandardCharsets.UTF_8);
+    }
+
+    private static String randomLines(int count, long seed) {
+        Random random = new Random(seed);
+        String[] words = {"error", "ok", "Грешка", "日本語", "€", "", "timeout=30"};
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            int n = random.nextInt(6);
+            for (int w = 0; w < n; w++) {
+                sb.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            sb.append(i).append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+        }
+        return sb.toString();
+    }
+
+    private static List<Long> displacements(String content) {
+        List<Long> disps = new ArrayList<>();
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            if (i == 0 || bytes[i - 1] == '\n') {
+                disps.add((long) i);
+            }
+        }
+        return disps;
+    }
+
+    @Test
+    void readsLinesAndOffsetsLikeFilesLines() throws IOException {
+        for (String content : new String[]{"", "one", "one\n", "one\r\ntwo", "\n\na\n\nb", "ünï\ncödé\n"}) {
+            Path file = write(content);
+            try (Stream<DispLine> lines = LineSpliterator.lines(file, false)) {
+                List<DispLine> read = lines.toList();
+                assertThat(read).map(DispLine::line).isEqualTo(content.lines().toList());
+                assertThat(read).map(dl -> dl.disp).isEqualTo(displacements(content).subList(0, read.size()));
+            }
+        }
+        try (Stream<DispLine> lines = LineSpliterator.lines(write("a\rb\r\nc\r"), false)) {
+            assertThat(lines.map(DispLine::line)).containsExactly("a\rb", "c\r");
+        }
+    }
+
+    @Test
+    void parallelReadThroughSmallWindowsKeepsEncounterOrder() throws IOException {
+        String content = randomLines(50_000, 7);
+        Path file = write(content);
+        try (FileChannel channel = FileChannel.open(file)) {
+            List<DispLine> read = StreamSupport.stream(new LineSpliterator(channel, 256), true).toList();
+            assertThat(read).map(DispLine::line).isEqualTo(content.lines().toList());
+            assertThat(read).map(dl -> dl.disp).isEqualTo(displacements(content));
+            assertThat(read.get(3).bytes()).isEqualTo(StandardCharsets.UTF_8.encode(read.get(3).line()));
+        }
+    }
+
+    @Test
+    void splitsOnlyAtLineStarts() throws IOException {
+        String content = randomLines(40_000, 11);
+        Path file = write(content);
+        List<Long> disps = displacements(content);
+        try (FileChannel channel = FileChannel.open(file)) {
+            List<DispLine> read = new ArrayList<>();
+            splitAll(new LineSpliterator(channel, 4096), read);
+            assertThat(read).map(dl -> dl.disp).isEqualTo(disps);
+            assertThat(read).map(DispLine::line).isEqualTo(content.lines().toList());
+        }
+    }
+
+    private static void splitAll(Spliterator<DispLine> spliterator, List<DispLine> read) {
+        Spliterator<DispLine> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            spliterator.forEachRemaining(read::add);
+        } else {
+            splitAll(prefix, read);
+            splitAll(spliterator, read);
+        }
+    }
+
+    @Test
+    void rejectsLinesLongerThanTheWindow() throws IOException {
+        Path file = write("short\n" + "x".repeat(100) + "\nshort\n");
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertThatThrownBy(() -> StreamSupport.stream(new LineSpliterator(channel, 64), false).count())
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("Line at 6");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.mastering.lambdas.chapter5;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TreeWalkerTest {
+
+    @TempDir
+    Path root;
+
+    private void tree(int directories, int files) throws IOException {
+        for (int d = 0; d < directories; d++) {
+            Path dir = root.resolve("d" + d % 5).resolve("e" + d);
+            Files.createDirectories(dir);
+            for (int f = 0; f < files; f++) {
+                Files.writeString(dir.resolve("f" + f + (f % 3 == 0 ? ".txt" : ".log")), "x".repeat(f));
+            }
+        }
+    }
+
+    private Set<Path> walk(int maxDepth) throws IOException {
+        try (Stream<Path> paths = Files.walk(root, maxDepth)) {
+            return paths.collect(Collectors.toSet());
+        }
+    }
+
+    @Test
+    void streamsWhatFilesWalkFinds() throws IOException {
+        tree(40, 30);
+        try (Stream<TreeWalker.Entry> entries = TreeWalker.builder(root).build().stream()) {
+            assertThat(entries.map(TreeWalker.Entry::path).toList())
+                    .doesNotHaveDuplicates()
+                    .containsExactlyInAnyOrderElementsOf(walk(Integer.MAX_VALUE));
+        }
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            Set<TreeWalker.Entry> seen = ConcurrentHashMap.newKeySet();
+            TreeWalker.builder(root).maxDepth(2).pool(pool).build().forEach(seen::add);
+            assertThat(seen).extracting(TreeWalker.Entry::path).containsExactlyInAnyOrderElementsOf(walk(2));
+            assertThat(seen).allMatch(e -> e.depth() == root.relativize(e.path()).getNameCount() - (e.path().equals(root) ? 1 : 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void filtersByGlobAndReadsAttributesOnce() throws IOException {
+        tree(6, 10);
+        try (Stream<TreeWalker.Entry> entries = TreeWalker.builder(root).glob("glob:**/*.txt").build().stream()) {
+            assertThat(entries.toList())
+                    .hasSize(6 * 4)
+                    .allMatch(TreeWalker.Entry::isRegularFile)
+                    .allMatch(e -> e.size() == Integer.parseInt(e.path().getFileName().toString().replaceAll("\\D", "")));
+        }
+    }
+
+    @Test
+    void followsLinksWithoutLooping() throws IOException {
+        tree(2, 2);
+        Path loop = Files.createSymbolicLink(root.resolve("d0/e0/up"), root.resolve("d0"));
+        try (Stream<TreeWalker.Entry> entries = TreeWalker.builder(root).build().stream()) {
+            assertThat(entries.filter(e -> e.path().equals(loop)).findFirst())
+                    .hasValueSatisfying(e -> assertThat(e.attributes().isSymbolicLink()).isTrue());
+        }
+        try (Stream<TreeWalker.Entry> entries = TreeWalker.builder(root).followLinks(true).build().stream()) {
+            assertThat(entries.map(TreeWalker.Entry::path).toList())
+                    .contains(loop)
+                    .doesNotContain(loop.resolve("e0"))
+                    .hasSize(walk(Integer.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void stopsWhenClosedEarlyAndReportsErrors() throws IOException {
+        tree(60, 60);
+        try (Stream<TreeWalker.Entry> entries = TreeWalker.builder(root).build().stream()) {
+            assertThat(entries.limit(5).count()).isEqualTo(5);
+        }
+        assertThatThrownBy(() -> TreeWalker.builder(root.resolve("missing")).build().stream().count())
+                .isInstanceOf(UncheckedIOException.class)
+                .hasCauseInstanceOf(NoSuchFileException.class);
+    }
+}
@@ -0,0 +1,84 @@
+package com.mastering.lambdas.library;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class LibraryControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    QueryCache cache;
+
+    @Test
+    void servesTheDemoQueries() throws Exception {
+        mvc.perform(get("/library/books").param("topic", "COMPUTING"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", contains("Compilers: Principles, Techniques and Tools")))
+                .andExpect(jsonPath("$[0].authors", contains("Aho", "Lam", "Sethi", "Ullman")));
+        mvc.perform(get("/library/books/first").param("n", "2"))
+                .andExpect(jsonPath("$[*].title", contains("Compilers: Principles, Techniques and Tools",
+                        "Fundamentals of Chinese Fingernail Image")));
+        mvc.perform(get("/library/stats/pages"))
+                .andExpect(jsonPath("$.count").value(4));
+        mvc.perform(get("/library/titles/latest"))
+                .andExpect(jsonPath("$.Voss").value(1957));
+        mvc.perform(get("/library/books/first").param("n", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void writesInvalidateCachedResults() throws Exception {
+        mvc.perform(get("/library/books").param("topic", "FICTION")).andExpect(jsonPath("$", hasSize(2)));
+        long misses = cache.misses();
+        mvc.perform(get("/library/books").param("topic", "FICTION")).andExpect(jsonPath("$", hasSize(2)));
+        assertThat(cache.misses()).isEqualTo(misses);
+
+        String id = mvc.perform(post("/library/books").contentType(MediaType.APPLICATION_JSON).content("""
+                        {"title":"Voss","authors":["Patrick White"],"pageCounts":[478],"topic":"FICTION","pubDate":1990,"height":19.8}"""))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(cache.size()).isZero();
+        mvc.perform(get("/library/books").param("topic", "FICTION")).andExpect(jsonPath("$", hasSize(3)));
+        mvc.perform(get("/library/titles/latest")).andExpect(jsonPath("$.Voss").value(1990));
+
+        mvc.perform(delete("/library/books/" + id)).andExpect(status().isNoContent());
+        mvc.perform(get("/library/titles/latest")).andExpect(jsonPath("$.Voss").value(1957));
+        mvc.perform(delete("/library/books/" + id)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void rejectsIncompleteBooks() throws Exception {
+        for (String body : new String[]{
+                """
+                {"title":"Voss","pageCounts":[478],"topic":"FICTION","pubDate":1990,"height":19.8}""",
+                """
+                {"title":"Voss","authors":["Patrick White"],"topic":"FICTION","pubDate":1990,"height":19.8}""",
+                """
+                {"title":"Voss","authors":["Patrick White"],"pageCounts":[478],"topic":"FICTION","height":19.8}""",
+                """
+                {"title":"Voss","authors":[null],"pageCounts":[478],"topic":"FICTION","pubDate":1990,"height":19.8}"""}) {
+            mvc.perform(post("/library/books").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isBadRequest());
+        }
+        mvc.perform(get("/library/books").param("topic", "FICTION")).andExpect(jsonPath("$", hasSize(2)));
+    }
+}
@@ -0,0 +1,41 @@
+package com.mastering.lambdas.library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryCacheTest {
+
+    @Test
+    void evictsByWeightNotByCount() {
+        QueryCache cache = new QueryCache(true, 1_000);
+        cache.get("stats", () -> "a few numbers");
+        cache.get("small", () -> List.of(1, 2, 3));
+        cache.get("half", () -> Collections.nCopies(499, 0));
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.weight()).isEqualTo(1 + 4 + 500);
+
+        // touching "stats" makes "small" the least recently used
+        cache.get("stats", () -> "recomputed");
+        cache.get("map", () -> Map.of("k", 1));
+        cache.get("big", () -> Collections.nCopies(495, 0));
+
+        assertThat(cache.weight()).isLessThanOrEqualTo(1_000);
+        assertThat(cache.get("stats", () -> "recomputed")).isEqualTo("a few numbers");
+        long misses = cache.misses();
+        cache.get("small", () -> List.of(1, 2, 3));
+        assertThat(cache.misses()).isEqualTo(misses + 1);
+
+        cache.get("huge", () -> Collections.nCopies(5_000, 0));
+        assertThat(cache.weight()).isLessThanOrEqualTo(1_000);
+        assertThat(cache.size()).isPositive();
+
+        cache.invalidate();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.weight()).isZero();
+    }
+}
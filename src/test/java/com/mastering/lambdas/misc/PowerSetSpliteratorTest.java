@@ -0,0 +1,74 @@
+package com.mastering.lambdas.misc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PowerSetSpliteratorTest {
+
+    private static Set<String> letters(int n) {
+        return IntStream.range(0, n).mapToObj(i -> String.valueOf((char) ('a' + i)))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    @Test
+    void subsetsFollowTheBitsOfTheirMask() {
+        Set<String> set = letters(10);
+        List<String> elements = new ArrayList<>(set);
+        List<Set<String>> expected = new ArrayList<>();
+        for (int mask = 0; mask < 1 << 10; mask++) {
+            Set<String> subset = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                if ((mask >>> i & 1) == 1) {
+                    subset.add(elements.get(i));
+                }
+            }
+            expected.add(subset);
+        }
+        Collection<Set<String>> powerSet = PowerSet.of(set);
+        assertThat(powerSet.stream().toList()).isEqualTo(expected);
+        assertThat(powerSet.parallelStream().toList()).isEqualTo(expected);
+        assertThat(new ArrayList<>(powerSet)).isEqualTo(expected);
+
+        PowerSetSpliterator.Subset<String> subset = new PowerSetSpliterator<String>(set).subset(0b1000000101);
+        assertThat(subset).containsExactly("a", "c", "j").hasSize(3).hasSameHashCodeAs(Set.of("a", "c", "j"));
+        assertThat(subset.contains("c")).isTrue();
+        assertThat(subset.contains("b")).isFalse();
+        assertThat(subset.contains("z")).isFalse();
+    }
+
+    @Test
+    void splitsThirtyElementsEvenly() {
+        Spliterator<Set<String>> spliterator = new PowerSetSpliterator<>(letters(30));
+        assertThat(spliterator.getExactSizeIfKnown()).isEqualTo(1L << 30);
+        assertThat(spliterator.hasCharacteristics(Spliterator.SUBSIZED)).isTrue();
+        for (int depth = 1; depth <= 20; depth++) {
+            Spliterator<Set<String>> prefix = spliterator.trySplit();
+            assertThat(prefix.estimateSize()).isEqualTo(spliterator.estimateSize()).isEqualTo(1L << (30 - depth));
+        }
+        List<Set<String>> first = new ArrayList<>();
+        spliterator.tryAdvance(first::add);
+        assertThat(((PowerSetSpliterator.Subset<String>) first.get(0)).mask()).isEqualTo((1 << 30) - (1 << 10));
+    }
+
+    @Test
+    void countsSubsetsInParallel() {
+        long size15 = StreamSupport.stream(new PowerSetSpliterator<>(letters(20)), true)
+                .filter(s -> s.size() == 15)
+                .count();
+        assertThat(size15).isEqualTo(15_504);
+        assertThatThrownBy(() -> new PowerSetSpliterator<>(letters(31))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
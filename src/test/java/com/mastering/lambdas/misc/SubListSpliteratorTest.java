@@ -0,0 +1,76 @@
+package com.mastering.lambdas.misc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubListSpliteratorTest {
+
+    private static List<List<Integer>> nested(List<Integer> list) {
+        return IntStream.range(0, list.size())
+                .mapToObj(start -> IntStream.rangeClosed(start + 1, list.size())
+                        .mapToObj(end -> list.subList(start, end)))
+                .flatMap(x -> x)
+                .toList();
+    }
+
+    @Test
+    void enumeratesLikeTheNestedStreams() {
+        for (int n : new int[]{0, 1, 2, 3, 17, 100}) {
+            List<Integer> list = IntStream.range(0, n).boxed().toList();
+            List<List<Integer>> expected = nested(list);
+            assertThat(SubLists.of(list).toList()).isEqualTo(expected);
+            assertThat(StreamSupport.stream(new SubListSpliterator<>(list), true).toList()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void splitsDownToSingleSublistsWithExactSizes() {
+        List<Integer> list = IntStream.range(0, 60).boxed().toList();
+        List<List<Integer>> visited = new ArrayList<>();
+        splitAll(new SubListSpliterator<>(list), visited);
+        assertThat(visited).isEqualTo(nested(list));
+    }
+
+    private static void splitAll(Spliterator<List<Integer>> spliterator, List<List<Integer>> visited) {
+        long size = spliterator.estimateSize();
+        Spliterator<List<Integer>> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            assertThat(size).isLessThanOrEqualTo(1);
+            spliterator.forEachRemaining(visited::add);
+            return;
+        }
+        assertThat(prefix.estimateSize() + spliterator.estimateSize()).isEqualTo(size);
+        assertThat(prefix.estimateSize()).isEqualTo(size / 2);
+        splitAll(prefix, visited);
+        splitAll(spliterator, visited);
+    }
+
+    @Test
+    void splitsLargeListsAtTheRightSublist() {
+        int n = 50_000;
+        List<Integer> list = IntStream.range(0, n).boxed().toList();
+        Spliterator<List<Integer>> spliterator = new SubListSpliterator<>(list);
+        assertThat(spliterator.getExactSizeIfKnown()).isEqualTo(SubListSpliterator.count(n)).isGreaterThan(1L << 30);
+        for (int i = 0; i < 5; i++) {
+            Spliterator<List<Integer>> prefix = spliterator.trySplit();
+            long index = SubListSpliterator.count(n) - spliterator.estimateSize();
+            assertThat(prefix.estimateSize()).isIn(spliterator.estimateSize(), spliterator.estimateSize() - 1);
+            int start = 0;
+            while (index >= n - start) {
+                index -= n - start;
+                start++;
+            }
+            List<List<Integer>> first = new ArrayList<>();
+            spliterator.tryAdvance(first::add);
+            assertThat(first.get(0).get(0)).isEqualTo(start);
+            assertThat(first.get(0)).hasSize((int) index + 1);
+        }
+    }
+}